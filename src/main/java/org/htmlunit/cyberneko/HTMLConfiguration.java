@@ -16,15 +16,18 @@
 package org.htmlunit.cyberneko;
 
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.Executor;
 
 import org.htmlunit.cyberneko.filters.NamespaceBinder;
 import org.htmlunit.cyberneko.xerces.xni.XMLDocumentHandler;
+import org.htmlunit.cyberneko.xerces.xni.XMLLocator;
 import org.htmlunit.cyberneko.xerces.xni.XNIException;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLConfigurationException;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
@@ -55,6 +58,8 @@
  * <li>http://cyberneko.org/html/properties/names/attrs
  * <li>http://cyberneko.org/html/properties/filters
  * <li>http://cyberneko.org/html/properties/error-reporter
+ * <li>http://cyberneko.org/html/properties/metrics-listener
+ * <li>http://cyberneko.org/html/properties/pipeline-executor
  * <li><i>and</i>
  * <li>the properties supported by the scanner and tag balancer.
  * </ul>
@@ -97,6 +102,28 @@ public class HTMLConfiguration implements XMLParserConfiguration {
     /** Error reporter. */
     protected static final String ERROR_REPORTER = "http://cyberneko.org/html/properties/error-reporter";
 
+    /**
+     * The {@link HTMLParseMetricsListener} receiving the metrics of every parsed
+     * document; null (the default) disables the collection of the metrics.
+     */
+    public static final String METRICS_LISTENER = "http://cyberneko.org/html/properties/metrics-listener";
+
+    /**
+     * The {@link Executor} running the scanner while the tag balancer, the
+     * filters and the document handler process the scanned events in batches
+     * on the parsing thread; null (the default) parses on one thread.
+     * Only complete parses are pipelined. The document handler must not push
+     * or evaluate input sources while pipelined and the locations of errors
+     * reported by the tag balancer refer to the (further) scanner position.
+     * The errors of the scanner are reported on the parsing thread too, in
+     * order with the events (see {@link #getErrorLocator()}).
+     * The executor has to run the scanner on a thread of its own; if it runs
+     * the task on the parsing thread or does not start it in time (e.g. a
+     * saturated pool) the document is parsed on the parsing thread alone.
+     * See {@link org.htmlunit.cyberneko.util.ParserThreads#executor()}.
+     */
+    public static final String PIPELINE_EXECUTOR = "http://cyberneko.org/html/properties/pipeline-executor";
+
     // other
 
     /** Recognized properties. */
@@ -129,6 +156,24 @@ public class HTMLConfiguration implements XMLParserConfiguration {
     /** Components. */
     private final List<HTMLComponent> htmlComponents_ = new ArrayList<>(2);
 
+    /** The metrics of the current document. */
+    private final HTMLParseMetrics metrics_ = new HTMLParseMetrics();
+
+    /** The metrics listener, null if no metrics are collected. */
+    private HTMLParseMetricsListener metricsListener_;
+
+    /** The JFR event of the current document, null if not recorded. */
+    private JfrEvents.DocumentParsed documentParsedEvent_;
+
+    /** The executor for the scanner, null if not pipelined. */
+    private Executor pipelineExecutor_;
+
+    /** Passes the scanned events to the parsing thread; created on first use. */
+    private HTMLTokenPipeline tokenPipeline_;
+
+    /** The location of the reported problems. */
+    private final XMLLocator errorLocator_ = new ErrorLocator();
+
     /** Document scanner. */
     final HTMLScanner documentScanner_ = createDocumentScanner();
 
@@ -185,6 +230,8 @@ public HTMLConfiguration(final HTMLElementsProvider htmlElements) {
             NAMES_ATTRS,
             FILTERS,
             ERROR_REPORTER,
+            METRICS_LISTENER,
+            PIPELINE_EXECUTOR,
         };
         addRecognizedProperties(recognizedProperties);
         setProperty(NAMES_ELEMS, "default");
@@ -336,6 +383,18 @@ public HTMLScanner getDocumentScanner() {
         return documentScanner_;
     }
 
+    /**
+     * The location for the error reporter: the location of the scanner or,
+     * while a problem found by the pipelined scanner is reported (see
+     * {@link #PIPELINE_EXECUTOR}), the location the scanner had when it found
+     * the problem.
+     *
+     * @return the location of the reported problem
+     */
+    public XMLLocator getErrorLocator() {
+        return errorLocator_;
+    }
+
     /**
      * @return the configured {@link HTMLTagBalancer}
      */
@@ -350,6 +409,13 @@ public NamespaceBinder getNamespaceBinder() {
         return namespaceBinder_;
     }
 
+    /**
+     * @return the metrics to be updated by the components or null if no metrics are collected
+     */
+    HTMLParseMetrics getMetrics() {
+        return metricsListener_ == null ? null : metrics_;
+    }
+
     /** Parses a document. */
     @Override
     public void parse(final XMLInputSource source) throws XNIException, IOException {
@@ -372,9 +438,14 @@ public void parse(final XMLInputSource source) throws XNIException, IOException
     @Override
     public void setInputSource(final XMLInputSource inputSource)
         throws XMLConfigurationException, IOException {
+        final long start = System.nanoTime();
+        documentParsedEvent_ = JfrEvents.AVAILABLE ? JfrEvents.beginDocument(inputSource.getSystemId()) : null;
         reset();
         closeStream_ = inputSource.getByteStream() == null && inputSource.getCharacterStream() == null;
         documentScanner_.setInputSource(inputSource);
+        if (metricsListener_ != null) {
+            metrics_.setupNanos_ = System.nanoTime() - start;
+        }
     }
 
     /**
@@ -395,8 +466,12 @@ public void setInputSource(final XMLInputSource inputSource)
      */
     @Override
     public boolean parse(final boolean complete) throws XNIException, IOException {
+        if (metricsListener_ != null || documentParsedEvent_ != null) {
+            return parseMonitored(complete);
+        }
+
         try {
-            final boolean more = documentScanner_.scanDocument(complete);
+            final boolean more = scanDocument(complete);
             if (!more) {
                 cleanup();
             }
@@ -408,6 +483,86 @@ public boolean parse(final boolean complete) throws XNIException, IOException {
         }
     }
 
+    private boolean parseMonitored(final boolean complete) throws XNIException, IOException {
+        final long start = System.nanoTime();
+        boolean more = false;
+        try {
+            more = scanDocument(complete);
+            if (!more) {
+                cleanup();
+            }
+            return more;
+        }
+        catch (final XNIException | IOException e) {
+            cleanup();
+            throw e;
+        }
+        finally {
+            if (metricsListener_ != null) {
+                metrics_.parseNanos_ += System.nanoTime() - start;
+                if (!more) {
+                    metricsListener_.parseFinished(metrics_);
+                }
+            }
+            if (!more && documentParsedEvent_ != null) {
+                JfrEvents.endDocument(documentParsedEvent_, documentScanner_);
+                documentParsedEvent_ = null;
+            }
+        }
+    }
+
+    private boolean scanDocument(final boolean complete) throws XNIException, IOException {
+        if (complete && pipelineExecutor_ != null) {
+            tokenPipeline_.scanDocument(pipelineExecutor_);
+            return false;
+        }
+        return documentScanner_.scanDocument(complete);
+    }
+
+    /**
+     * @return true if the tag balancer has an open svg element; while
+     *         pipelined the scanner waits until the balancer has caught up
+     */
+    boolean isSvgOpened() {
+        if (tokenPipeline_ != null) {
+            tokenPipeline_.sync();
+        }
+        return tagBalancer_.fOpenedSvg;
+    }
+
+    /**
+     * @param elementName the name of the element
+     * @return true if the tag balancer has the given element open as the innermost
+     *         one and its content can be skipped as long as it consists of text and
+     *         unknown elements; while pipelined the scanner waits until the balancer
+     *         has caught up
+     */
+    boolean isContentSkippable(final String elementName) {
+        if (tokenPipeline_ != null) {
+            tokenPipeline_.sync();
+        }
+        return tagBalancer_.isContentSkippable(elementName);
+    }
+
+    /**
+     * Stops the current parse. To be called from the pipeline while parsing
+     * (e.g. from a filter or a document handler that has seen everything it
+     * is interested in); the parse returns after the current event without
+     * reading the remaining input and the streams are cleaned up as usual.
+     *
+     * @param finishDocument if true the endDocument event is still sent and
+     *        the tag balancer closes all open elements; if false no more events
+     *        are sent at all
+     * @see HTMLScanner#stopScanning(boolean)
+     */
+    public void stopParsing(final boolean finishDocument) {
+        if (tokenPipeline_ != null && tokenPipeline_.isRunning()) {
+            tokenPipeline_.stop(finishDocument);
+            return;
+        }
+        documentScanner_.stopScanning(finishDocument);
+    }
+
     /**
      * If the application decides to terminate parsing before the xml document
      * is fully parsed, the application should call this method to free any
@@ -421,6 +576,11 @@ public void cleanup() {
     // Adds a component.
     protected void addComponent(final HTMLComponent component) {
 
+        // filters set again keep their state
+        if (htmlComponents_.contains(component)) {
+            return;
+        }
+
         // add component to list
         htmlComponents_.add(component);
 
@@ -452,6 +612,9 @@ protected void addComponent(final HTMLComponent component) {
     /** Resets the parser configuration. */
     protected void reset() throws XMLConfigurationException {
 
+        metricsListener_ = (HTMLParseMetricsListener) getProperty(METRICS_LISTENER);
+        metrics_.reset();
+
         // reset components
         for (final HTMLComponent component : htmlComponents_) {
             component.reset(this);
@@ -478,6 +641,19 @@ protected void reset() throws XMLConfigurationException {
             }
         }
         lastSource.setDocumentHandler(documentHandler_);
+
+        pipelineExecutor_ = (Executor) getProperty(PIPELINE_EXECUTOR);
+        if (pipelineExecutor_ != null) {
+            if (tokenPipeline_ == null) {
+                tokenPipeline_ = new HTMLTokenPipeline(documentScanner_);
+            }
+            tokenPipeline_.setDocumentHandler(documentScanner_.getDocumentHandler());
+            documentScanner_.setDocumentHandler(tokenPipeline_);
+
+            // the problems are reported on the parsing thread
+            tokenPipeline_.setErrorReporter((HTMLErrorReporter) getProperty(ERROR_REPORTER));
+            documentScanner_.setProperty(ERROR_REPORTER, tokenPipeline_);
+        }
     }
 
     /**
@@ -527,7 +703,12 @@ public String formatMessage(final String key, final Object[] args) {
         public void reportWarning(final String key, final Object[] args)
             throws XMLParseException {
             if (errorHandler_ != null) {
-                errorHandler_.warning(ERROR_DOMAIN, key, createException(key, args));
+                try {
+                    errorHandler_.warning(ERROR_DOMAIN, key, createException(key, args));
+                }
+                catch (final ReportedParseException e) {
+                    throw e.withStackTrace();
+                }
             }
         }
 
@@ -536,14 +717,22 @@ public void reportWarning(final String key, final Object[] args)
         public void reportError(final String key, final Object[] args)
             throws XMLParseException {
             if (errorHandler_ != null) {
-                errorHandler_.error(ERROR_DOMAIN, key, createException(key, args));
+                try {
+                    errorHandler_.error(ERROR_DOMAIN, key, createException(key, args));
+                }
+                catch (final ReportedParseException e) {
+                    throw e.withStackTrace();
+                }
             }
         }
 
-        // Creates parse exception.
+        /**
+         * Creates the parse exception passed to the error handler. Only the
+         * location, the key and the arguments are captured; the message is
+         * formatted when the handler asks for it.
+         */
         protected XMLParseException createException(final String key, final Object[] args) {
-            final String message = formatMessage(key, args);
-            return new XMLParseException(documentScanner_, message);
+            return new ReportedParseException(errorLocator_, this, key, args);
         }
 
         // Format simple message.
@@ -565,6 +754,137 @@ protected String formatSimpleMessage(final String key, final Object[] args) {
         }
     }
 
+    /**
+     * The location returned by {@link #getErrorLocator()}.
+     */
+    private final class ErrorLocator implements XMLLocator {
+
+        private XMLLocator locator() {
+            final HTMLTokenPipeline pipeline = tokenPipeline_;
+            if (pipeline != null) {
+                final XMLLocator location = pipeline.getErrorLocation();
+                if (location != null) {
+                    return location;
+                }
+            }
+            return documentScanner_;
+        }
+
+        @Override
+        public String getPublicId() {
+            return locator().getPublicId();
+        }
+
+        @Override
+        public String getLiteralSystemId() {
+            return locator().getLiteralSystemId();
+        }
+
+        @Override
+        public String getBaseSystemId() {
+            return locator().getBaseSystemId();
+        }
+
+        @Override
+        public String getSystemId() {
+            return locator().getSystemId();
+        }
+
+        @Override
+        public int getLineNumber() {
+            return locator().getLineNumber();
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return locator().getColumnNumber();
+        }
+
+        @Override
+        public int getCharacterOffset() {
+            return locator().getCharacterOffset();
+        }
+
+        @Override
+        public String getEncoding() {
+            return locator().getEncoding();
+        }
+
+        @Override
+        public String getXMLVersion() {
+            return locator().getXMLVersion();
+        }
+    }
+
+    /**
+     * The exception created by the {@link ErrorReporter} for the error handler;
+     * the message is formatted on first access (at the latest when serialized).
+     * The stack trace is only filled in if an error handler throws the exception
+     * (see {@link #withStackTrace()}).
+     */
+    private static final class ReportedParseException extends XMLParseException implements XMLLocator {
+
+        private final transient HTMLErrorReporter errorReporter_;
+        private final String key_;
+        private final transient Object[] args_;
+        private String message_;
+
+        ReportedParseException(final XMLLocator locator, final HTMLErrorReporter errorReporter,
+                final String key, final Object[] args) {
+            super(locator, null, false);
+            errorReporter_ = errorReporter;
+            key_ = key;
+            args_ = args;
+        }
+
+        private ReportedParseException(final ReportedParseException reported) {
+            super(reported, null, true);
+            errorReporter_ = reported.errorReporter_;
+            key_ = reported.key_;
+            args_ = reported.args_;
+            message_ = reported.message_;
+        }
+
+        /**
+         * @return a copy of this exception with a stack trace, thrown instead of
+         *         this exception if an error handler throws it
+         */
+        ReportedParseException withStackTrace() {
+            return new ReportedParseException(this);
+        }
+
+        @Override
+        public String getMessage() {
+            if (message_ == null) {
+                message_ = errorReporter_.formatMessage(key_, args_);
+            }
+            return message_;
+        }
+
+        /**
+         * The reporter and the arguments are not serialized, format the message before.
+         *
+         * @param out the stream to write to
+         * @throws IOException when a problem during writing occurs
+         */
+        private void writeObject(final ObjectOutputStream out) throws IOException {
+            getMessage();
+            out.defaultWriteObject();
+        }
+
+        // as XMLLocator this exception passes its location to the copy
+
+        @Override
+        public String getEncoding() {
+            return null;
+        }
+
+        @Override
+        public String getXMLVersion() {
+            return null;
+        }
+    }
+
     /**
      * Allows a parser to add parser specific features to be recognized and managed
      * by the parser configuration.
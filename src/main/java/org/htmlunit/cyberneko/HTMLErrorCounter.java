@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import java.util.Arrays;
+
+import org.htmlunit.cyberneko.xerces.xni.XMLLocator;
+
+/**
+ * An {@link HTMLErrorReporter} counting the reported problems by message key
+ * instead of passing them to an error handler, e.g. to score the quality of
+ * many documents. Nothing is allocated per reported problem; the counters
+ * are a primitive histogram over the keys HTML0000..HTML0099 (internal),
+ * HTML1000..HTML1099 (scanner) and HTML2000..HTML2099 (tag balancer),
+ * other keys are counted together. Optionally the location of the first
+ * problems is kept.
+ * <p>
+ * Usage:
+ * <pre>
+ * final HTMLConfiguration configuration = new HTMLConfiguration();
+ * final HTMLErrorCounter counter = new HTMLErrorCounter(configuration, 10);
+ * configuration.setFeature("http://cyberneko.org/html/features/report-errors", true);
+ * configuration.setProperty("http://cyberneko.org/html/properties/error-reporter", counter);
+ * </pre>
+ * The counters are not reset by the parser; call {@link #reset()} before
+ * parsing the next document.
+ *
+ * @author Ronald Brill
+ */
+public class HTMLErrorCounter implements HTMLErrorReporter {
+
+    /** The number of keys per group. */
+    private static final int GROUP_SIZE = 100;
+
+    /** The number of counted groups (HTML0xxx, HTML1xxx, HTML2xxx). */
+    private static final int GROUPS = 3;
+
+    private final HTMLErrorReporter formatter_;
+    private final XMLLocator locator_;
+
+    private final int[] counts_ = new int[GROUPS * GROUP_SIZE];
+    private int otherCount_;
+    private int warningCount_;
+    private int errorCount_;
+
+    private final int maxLocations_;
+    private int locationCount_;
+    private final String[] locationKeys_;
+    private final int[] locationLines_;
+    private final int[] locationColumns_;
+    private final int[] locationOffsets_;
+
+    /**
+     * Ctor.
+     *
+     * @param configuration the configuration; its current error reporter is used to
+     *        format messages and its error locator to determine the locations
+     * @param maxLocations the number of problems to keep the location for
+     */
+    public HTMLErrorCounter(final HTMLConfiguration configuration, final int maxLocations) {
+        formatter_ = (HTMLErrorReporter) configuration.getProperty(HTMLConfiguration.ERROR_REPORTER);
+        locator_ = configuration.getErrorLocator();
+
+        maxLocations_ = maxLocations;
+        locationKeys_ = new String[maxLocations];
+        locationLines_ = new int[maxLocations];
+        locationColumns_ = new int[maxLocations];
+        locationOffsets_ = new int[maxLocations];
+    }
+
+    /**
+     * Formats the message using the error reporter of the configuration.
+     * {@inheritDoc}
+     */
+    @Override
+    public String formatMessage(final String key, final Object[] args) {
+        return formatter_.formatMessage(key, args);
+    }
+
+    /**
+     * Counts the warning.
+     * {@inheritDoc}
+     */
+    @Override
+    public void reportWarning(final String key, final Object[] args) {
+        warningCount_++;
+        count(key);
+    }
+
+    /**
+     * Counts the error.
+     * {@inheritDoc}
+     */
+    @Override
+    public void reportError(final String key, final Object[] args) {
+        errorCount_++;
+        count(key);
+    }
+
+    private void count(final String key) {
+        final int index = indexOf(key);
+        if (index == -1) {
+            otherCount_++;
+        }
+        else {
+            counts_[index]++;
+        }
+
+        final int locationCount = locationCount_;
+        if (locationCount < maxLocations_) {
+            locationKeys_[locationCount] = key;
+            locationLines_[locationCount] = locator_.getLineNumber();
+            locationColumns_[locationCount] = locator_.getColumnNumber();
+            locationOffsets_[locationCount] = locator_.getCharacterOffset();
+            locationCount_ = locationCount + 1;
+        }
+    }
+
+    /**
+     * @return the histogram index of the key (HTMLgnnn with nnn less than 100) or -1
+     */
+    private static int indexOf(final String key) {
+        if (key == null || key.length() != 8 || !key.startsWith("HTML")) {
+            return -1;
+        }
+        final int group = key.charAt(4) - '0';
+        final int hundreds = key.charAt(5) - '0';
+        final int tens = key.charAt(6) - '0';
+        final int ones = key.charAt(7) - '0';
+        if (group < 0 || group >= GROUPS || hundreds != 0
+                || tens < 0 || tens > 9 || ones < 0 || ones > 9) {
+            return -1;
+        }
+        return group * GROUP_SIZE + tens * 10 + ones;
+    }
+
+    /**
+     * @param key the message key (e.g. HTML1007)
+     * @return the number of problems reported with this key
+     */
+    public int getCount(final String key) {
+        final int index = indexOf(key);
+        return index == -1 ? 0 : counts_[index];
+    }
+
+    /**
+     * @return the number of problems reported with a key outside the histogram
+     */
+    public int getOtherCount() {
+        return otherCount_;
+    }
+
+    /**
+     * @return the number of reported warnings
+     */
+    public int getWarningCount() {
+        return warningCount_;
+    }
+
+    /**
+     * @return the number of reported errors
+     */
+    public int getErrorCount() {
+        return errorCount_;
+    }
+
+    /**
+     * @return the number of kept locations
+     */
+    public int getLocationCount() {
+        return locationCount_;
+    }
+
+    /**
+     * @param index the index of the location, less than {@link #getLocationCount()}
+     * @return the message key of the problem
+     */
+    public String getLocationKey(final int index) {
+        return locationKeys_[index];
+    }
+
+    /**
+     * @param index the index of the location, less than {@link #getLocationCount()}
+     * @return the line number of the problem
+     */
+    public int getLocationLineNumber(final int index) {
+        return locationLines_[index];
+    }
+
+    /**
+     * @param index the index of the location, less than {@link #getLocationCount()}
+     * @return the column number of the problem
+     */
+    public int getLocationColumnNumber(final int index) {
+        return locationColumns_[index];
+    }
+
+    /**
+     * @param index the index of the location, less than {@link #getLocationCount()}
+     * @return the character offset of the problem
+     */
+    public int getLocationCharacterOffset(final int index) {
+        return locationOffsets_[index];
+    }
+
+    /**
+     * Resets all counters and the kept locations.
+     */
+    public void reset() {
+        Arrays.fill(counts_, 0);
+        otherCount_ = 0;
+        warningCount_ = 0;
+        errorCount_ = 0;
+        Arrays.fill(locationKeys_, 0, locationCount_, null);
+        locationCount_ = 0;
+    }
+}
@@ -0,0 +1,500 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.htmlunit.cyberneko.filters.DefaultFilter;
+import org.htmlunit.cyberneko.filters.EventRecorderFilter;
+import org.htmlunit.cyberneko.filters.EventReplayer;
+import org.htmlunit.cyberneko.util.ParserThreads;
+import org.htmlunit.cyberneko.xerces.util.NamespaceSupport;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLDocumentHandler;
+import org.htmlunit.cyberneko.xerces.xni.XMLLocator;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+
+/**
+ * Parses large documents with a speculative parallel scan.
+ * <p>
+ * The document is split into chunks at safe looking points (a line break
+ * followed by a start or end tag). The chunks are scanned in parallel, each
+ * by its own scanner starting in the content state; the scanner events are
+ * recorded with an {@link EventRecorderFilter}. The speculation for a split
+ * point is right if the scanner of the preceding chunk ended with plain
+ * content text (and not e.g. inside a script, a comment or a tag). If not,
+ * the preceding chunk is scanned again together with the next one; after
+ * {@value #MAX_EXTENSIONS} failed extensions the rest of the document is
+ * scanned in one piece. Finally the recordings are replayed sequentially
+ * into the tag balancer, the filters and the document handler of the given
+ * configuration.
+ * <p>
+ * A title inside svg is scanned depending on the state of the tag balancer;
+ * if the counted svg start and end tags show that a title may be inside an
+ * svg element, the whole document is parsed sequentially instead.
+ * <p>
+ * Limitations: the scanners report no errors, the events carry no
+ * augmentations and no locator is available, and the document is parsed
+ * from a char array (no encoding detection). Documents smaller than two
+ * chunks are simply parsed sequentially.
+ * <p>
+ * Usage:
+ * <pre>
+ * final HTMLParallelTokenizer tokenizer = new HTMLParallelTokenizer(HTMLConfiguration::new);
+ * final HTMLConfiguration configuration = new HTMLConfiguration();
+ * configuration.setDocumentHandler(handler);
+ * tokenizer.parse(configuration, systemId, text);
+ * </pre>
+ *
+ * @author Ronald Brill
+ */
+public class HTMLParallelTokenizer {
+
+    /** The default chunk size (1M chars). */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /** The number of times a segment is extended by the next chunk before the rest is scanned at once. */
+    static final int MAX_EXTENSIONS = 2;
+
+    private final Executor executor_;
+    private final Supplier<HTMLConfiguration> scannerConfigurations_;
+
+    private int chunkSize_ = DEFAULT_CHUNK_SIZE;
+
+    private int chunkCount_;
+    private int rescanCount_;
+    private boolean sequential_;
+
+    /**
+     * Ctor using the shared {@link ParserThreads#executor()}.
+     *
+     * @param scannerConfigurations creates the configurations used to scan the
+     *        chunks; the scanner features and properties should match the ones
+     *        of the configurations passed to {@link #parse(HTMLConfiguration, String, char[])}
+     */
+    public HTMLParallelTokenizer(final Supplier<HTMLConfiguration> scannerConfigurations) {
+        this(ParserThreads.executor(), scannerConfigurations);
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param executor the executor running the chunk scans
+     * @param scannerConfigurations creates the configurations used to scan the
+     *        chunks; the scanner features and properties should match the ones
+     *        of the configurations passed to {@link #parse(HTMLConfiguration, String, char[])}
+     */
+    public HTMLParallelTokenizer(final Executor executor, final Supplier<HTMLConfiguration> scannerConfigurations) {
+        executor_ = executor;
+        scannerConfigurations_ = scannerConfigurations;
+    }
+
+    /**
+     * @param chunkSize the number of chars scanned by one task
+     */
+    public void setChunkSize(final int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+        }
+        chunkSize_ = chunkSize;
+    }
+
+    /**
+     * @return the number of chunks scanned in parallel by the last parse
+     */
+    public int getChunkCount() {
+        return chunkCount_;
+    }
+
+    /**
+     * @return the number of segments scanned again by the last parse because the speculation was wrong
+     */
+    public int getRescanCount() {
+        return rescanCount_;
+    }
+
+    /**
+     * @return true if the last parse was done sequentially
+     */
+    public boolean isSequential() {
+        return sequential_;
+    }
+
+    /**
+     * Parses the document.
+     *
+     * @param configuration the configuration providing the tag balancer, the
+     *        filters and the document handler
+     * @param systemId the system id of the document
+     * @param text the document
+     * @throws XNIException in case of a parse problem
+     * @throws IOException in case of io problems
+     */
+    public void parse(final HTMLConfiguration configuration, final String systemId, final char[] text)
+            throws XNIException, IOException {
+        chunkCount_ = 0;
+        rescanCount_ = 0;
+        sequential_ = false;
+
+        final int[] bounds = splitPoints(text, chunkSize_);
+        if (bounds.length <= 2) {
+            parseSequential(configuration, systemId, text);
+            return;
+        }
+        chunkCount_ = bounds.length - 1;
+
+        final List<CompletableFuture<Segment>> futures = new ArrayList<>(chunkCount_);
+        for (int i = 0; i < chunkCount_; i++) {
+            final int start = bounds[i];
+            final int end = bounds[i + 1];
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return scan(text, start, end);
+                }
+                catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor_));
+        }
+
+        final List<Segment> segments = new ArrayList<>();
+        Segment current = join(futures.get(0));
+        int extensions = 0;
+        int i = 1;
+        while (i < chunkCount_) {
+            if (current.clean_) {
+                segments.add(current);
+                current = join(futures.get(i));
+                extensions = 0;
+                i++;
+                continue;
+            }
+
+            // wrong speculation, the next chunk does not start in the content state
+            rescanCount_++;
+            if (extensions == MAX_EXTENSIONS) {
+                futures.get(i).cancel(false);
+                current = scan(text, current.start_, text.length);
+                break;
+            }
+            extensions++;
+            current = scan(text, current.start_, bounds[i + 1]);
+            i++;
+        }
+        for (int j = i + 1; j < chunkCount_; j++) {
+            futures.get(j).cancel(false);
+        }
+        segments.add(current);
+
+        if (mayContainSvgTitle(segments)) {
+            parseSequential(configuration, systemId, text);
+            return;
+        }
+
+        configuration.setInputSource(new XMLInputSource(null, systemId, null, new CharArrayReader(new char[0]), null));
+        try {
+            final XMLDocumentHandler handler = configuration.getDocumentScanner().getDocumentHandler();
+            for (int s = 0; s < segments.size(); s++) {
+                final EventReplayer replayer = new EventReplayer(segments.get(s).recording_);
+                replayer.setDocumentHandler(new Stitcher(handler, s == 0, s == segments.size() - 1));
+                replayer.replay();
+            }
+        }
+        finally {
+            configuration.cleanup();
+        }
+    }
+
+    private void parseSequential(final HTMLConfiguration configuration, final String systemId, final char[] text)
+            throws XNIException, IOException {
+        sequential_ = true;
+        configuration.parse(new XMLInputSource(null, systemId, null, new CharArrayReader(text), null));
+    }
+
+    /**
+     * Finds the chunk bounds: every chunk (but the last) ends after a line
+     * break followed by '&lt;' and a letter or '/'. The first bound is 0, the
+     * last the length of the text.
+     */
+    static int[] splitPoints(final char[] text, final int chunkSize) {
+        final List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+
+        int pos = chunkSize;
+        while (pos < text.length - 2) {
+            final int split = nextSplitPoint(text, pos);
+            if (split == -1) {
+                break;
+            }
+            bounds.add(split);
+            pos = split + chunkSize;
+        }
+        bounds.add(text.length);
+
+        final int[] result = new int[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    private static int nextSplitPoint(final char[] text, final int from) {
+        for (int i = from; i < text.length - 2; i++) {
+            if (text[i] == '\n' && text[i + 1] == '<') {
+                final char c = text[i + 2];
+                if (c == '/' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                    return i + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private Segment scan(final char[] text, final int start, final int end) throws IOException {
+        final HTMLConfiguration configuration = scannerConfigurations_.get();
+        configuration.setFeature(HTMLScanner.REPORT_ERRORS, false);
+        if (start > 0) {
+            configuration.setFeature(HTMLScanner.INSERT_DOCTYPE, false);
+        }
+
+        final HTMLScanner scanner = configuration.getDocumentScanner();
+        final EventRecorderFilter recorder = new EventRecorderFilter();
+        final Segment segment = new Segment(scanner, start);
+        segment.setDocumentHandler(recorder);
+
+        configuration.setInputSource(new XMLInputSource(null, null, null,
+                new CharArrayReader(text, start, end - start), null));
+        // only the scanner, the balancer runs later over the merged events
+        scanner.setDocumentHandler(segment);
+        configuration.parse(true);
+
+        segment.finish(recorder.getRecording());
+        return segment;
+    }
+
+    private static Segment join(final CompletableFuture<Segment> future) throws IOException {
+        try {
+            return future.join();
+        }
+        catch (final CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException ioe) {
+                throw ioe.getCause();
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Follows the svg depth over all segments, the depth at the start of a
+     * segment is unknown to its scanner.
+     */
+    private static boolean mayContainSvgTitle(final List<Segment> segments) {
+        int svgDepth = 0;
+        for (final Segment segment : segments) {
+            if (segment.titleInLocalSvg_
+                    || (segment.maxTitleSvgDelta_ != Integer.MIN_VALUE && svgDepth + segment.maxTitleSvgDelta_ > 0)) {
+                return true;
+            }
+            svgDepth = Math.max(svgDepth + segment.svgDelta_, segment.svgDelta_ - segment.minSvgDelta_);
+        }
+        return false;
+    }
+
+    /**
+     * The result of scanning one segment; collects the state needed to check
+     * the speculation while passing the events to the recorder.
+     */
+    private static final class Segment extends DefaultFilter {
+        private final HTMLScanner scanner_;
+        final int start_;
+
+        byte[] recording_;
+        boolean clean_;
+
+        private boolean lastIsText_;
+        /** The scanner position after the last text. */
+        private int textEnd_ = -1;
+        private boolean textEndsWithNewline_;
+        private boolean textFromContent_;
+        private boolean inCDATA_;
+        private boolean inUntilEndTag_;
+
+        /** The svg start tags minus the svg end tags. */
+        int svgDelta_;
+        /** The minimum of svgDelta_ so far. */
+        int minSvgDelta_;
+        /** The maximum svgDelta_ at a title start tag. */
+        int maxTitleSvgDelta_ = Integer.MIN_VALUE;
+        /** True if a title was found inside a svg started in this segment. */
+        boolean titleInLocalSvg_;
+
+        Segment(final HTMLScanner scanner, final int start) {
+            scanner_ = scanner;
+            start_ = start;
+        }
+
+        void finish(final byte[] recording) {
+            recording_ = recording;
+            clean_ = lastIsText_ && textEndsWithNewline_ && textFromContent_ && !inCDATA_ && !inUntilEndTag_
+                    && !endsInMarkup();
+        }
+
+        /**
+         * @return true if the scanner hit the end of the segment inside some markup
+         *         (e.g. a start tag, a doctype or a processing instruction); the
+         *         scanner drops such incomplete markup without any event
+         */
+        private boolean endsInMarkup() {
+            return scanner_.getCharacterOffset() != textEnd_;
+        }
+
+        @Override
+        public void startDocument(final XMLLocator locator, final String encoding, final NamespaceContext nscontext,
+                final Augmentations augs) throws XNIException {
+            lastIsText_ = false;
+            super.startDocument(locator, encoding, nscontext, augs);
+        }
+
+        @Override
+        public void doctypeDecl(final String root, final String publicId, final String systemId,
+                final Augmentations augs) throws XNIException {
+            lastIsText_ = false;
+            super.doctypeDecl(root, publicId, systemId, augs);
+        }
+
+        @Override
+        public void comment(final XMLString text, final Augmentations augs) throws XNIException {
+            lastIsText_ = false;
+            super.comment(text, augs);
+        }
+
+        @Override
+        public void processingInstruction(final String target, final XMLString data, final Augmentations augs)
+                throws XNIException {
+            lastIsText_ = false;
+            super.processingInstruction(target, data, augs);
+        }
+
+        @Override
+        public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+                throws XNIException {
+            lastIsText_ = false;
+            final String name = element.getRawname();
+            inUntilEndTag_ = "iframe".equalsIgnoreCase(name)
+                    || "noscript".equalsIgnoreCase(name)
+                    || "noframes".equalsIgnoreCase(name)
+                    || "noembed".equalsIgnoreCase(name);
+            if ("svg".equalsIgnoreCase(name)) {
+                svgDelta_++;
+            }
+            else if ("title".equalsIgnoreCase(name)) {
+                maxTitleSvgDelta_ = Math.max(maxTitleSvgDelta_, svgDelta_);
+                if (svgDelta_ > minSvgDelta_) {
+                    titleInLocalSvg_ = true;
+                }
+            }
+            super.startElement(element, attributes, augs);
+        }
+
+        @Override
+        public void emptyElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+                throws XNIException {
+            lastIsText_ = false;
+            inUntilEndTag_ = false;
+            super.emptyElement(element, attributes, augs);
+        }
+
+        @Override
+        public void characters(final XMLString text, final Augmentations augs) throws XNIException {
+            lastIsText_ = true;
+            textEnd_ = scanner_.getCharacterOffset();
+            textEndsWithNewline_ = text.length() > 0 && text.charAt(text.length() - 1) == '\n';
+            textFromContent_ = scanner_.fScanner == scanner_.fContentScanner;
+            super.characters(text, augs);
+        }
+
+        @Override
+        public void startCDATA(final Augmentations augs) throws XNIException {
+            lastIsText_ = false;
+            inCDATA_ = true;
+            super.startCDATA(augs);
+        }
+
+        @Override
+        public void endCDATA(final Augmentations augs) throws XNIException {
+            lastIsText_ = false;
+            inCDATA_ = false;
+            super.endCDATA(augs);
+        }
+
+        @Override
+        public void endElement(final QName element, final Augmentations augs) throws XNIException {
+            lastIsText_ = false;
+            inUntilEndTag_ = false;
+            if ("svg".equalsIgnoreCase(element.getRawname())) {
+                svgDelta_--;
+                minSvgDelta_ = Math.min(minSvgDelta_, svgDelta_);
+            }
+            super.endElement(element, augs);
+        }
+    }
+
+    /**
+     * Passes the replayed events to the pipeline; only the first segment
+     * starts and only the last one ends the document.
+     */
+    private static final class Stitcher extends DefaultFilter {
+        private final boolean first_;
+        private final boolean last_;
+
+        Stitcher(final XMLDocumentHandler handler, final boolean first, final boolean last) {
+            setDocumentHandler(handler);
+            first_ = first;
+            last_ = last;
+        }
+
+        @Override
+        public void startDocument(final XMLLocator locator, final String encoding, final NamespaceContext nscontext,
+                final Augmentations augs) throws XNIException {
+            if (first_) {
+                super.startDocument(locator, encoding, nscontext == null ? new NamespaceSupport() : nscontext, augs);
+            }
+        }
+
+        @Override
+        public void endDocument(final Augmentations augs) throws XNIException {
+            if (last_) {
+                super.endDocument(augs);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+/**
+ * The counters collected while parsing one document, reported to a
+ * {@link HTMLParseMetricsListener}. The counters are plain fields updated by
+ * the scanner and the tag balancer of the configuration; they are only
+ * updated if a listener is set.
+ *
+ * @author Ronald Brill
+ */
+public final class HTMLParseMetrics {
+
+    long bytesRead_;
+    long charsRead_;
+    int encodingChanges_;
+    long playbackBytes_;
+    int elements_;
+    int attributes_;
+    int entities_;
+    int synthesizedElements_;
+    int discardedElements_;
+    int lostTextRefeeds_;
+    long setupNanos_;
+    long parseNanos_;
+
+    HTMLParseMetrics() {
+    }
+
+    void reset() {
+        bytesRead_ = 0;
+        charsRead_ = 0;
+        encodingChanges_ = 0;
+        playbackBytes_ = 0;
+        elements_ = 0;
+        attributes_ = 0;
+        entities_ = 0;
+        synthesizedElements_ = 0;
+        discardedElements_ = 0;
+        lostTextRefeeds_ = 0;
+        setupNanos_ = 0;
+        parseNanos_ = 0;
+    }
+
+    /**
+     * @return the number of bytes read from the byte stream of the document,
+     *         0 if the document was read from a character stream
+     */
+    public long getBytesRead() {
+        return bytesRead_;
+    }
+
+    /**
+     * @return the number of characters read, including the characters read
+     *         again after an encoding change and the ones of inserted input sources
+     */
+    public long getCharsRead() {
+        return charsRead_;
+    }
+
+    /**
+     * @return the number of encoding changes caused by a meta tag or an xml declaration
+     */
+    public int getEncodingChanges() {
+        return encodingChanges_;
+    }
+
+    /**
+     * @return the number of bytes played back (read again) because of encoding changes
+     */
+    public long getPlaybackBytes() {
+        return playbackBytes_;
+    }
+
+    /**
+     * @return the number of start tags scanned (including empty elements)
+     */
+    public int getElements() {
+        return elements_;
+    }
+
+    /**
+     * @return the number of attributes of the scanned start tags
+     */
+    public int getAttributes() {
+        return attributes_;
+    }
+
+    /**
+     * @return the number of recognized named and numeric character references
+     */
+    public int getEntities() {
+        return entities_;
+    }
+
+    /**
+     * @return the number of elements inserted by the tag balancer
+     *         (missing parents, re-opened formatting elements)
+     */
+    public int getSynthesizedElements() {
+        return synthesizedElements_;
+    }
+
+    /**
+     * @return the number of start and end tags ignored by the tag balancer
+     */
+    public int getDiscardedElements() {
+        return discardedElements_;
+    }
+
+    /**
+     * @return the number of times text found before the body was moved into the body
+     */
+    public int getLostTextRefeeds() {
+        return lostTextRefeeds_;
+    }
+
+    /**
+     * @return the nanoseconds spent to set up the input source
+     *         (opening the stream and detecting the encoding)
+     */
+    public long getSetupNanos() {
+        return setupNanos_;
+    }
+
+    /**
+     * @return the nanoseconds spent parsing, that is scanning and processing the
+     *         events in the pipeline up to the document handler; for pull parsing
+     *         the sum of all parse calls
+     */
+    public long getParseNanos() {
+        return parseNanos_;
+    }
+
+    @Override
+    public String toString() {
+        return "HTMLParseMetrics[bytesRead=" + bytesRead_
+                + ", charsRead=" + charsRead_
+                + ", encodingChanges=" + encodingChanges_
+                + ", playbackBytes=" + playbackBytes_
+                + ", elements=" + elements_
+                + ", attributes=" + attributes_
+                + ", entities=" + entities_
+                + ", synthesizedElements=" + synthesizedElements_
+                + ", discardedElements=" + discardedElements_
+                + ", lostTextRefeeds=" + lostTextRefeeds_
+                + ", setupNanos=" + setupNanos_
+                + ", parseNanos=" + parseNanos_
+                + ']';
+    }
+}
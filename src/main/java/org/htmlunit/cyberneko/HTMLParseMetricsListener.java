@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+/**
+ * Receives the {@link HTMLParseMetrics} of every document parsed by a
+ * configuration, e.g. to export them to a metrics library. The listener is
+ * set as property {@link HTMLConfiguration#METRICS_LISTENER}; without a
+ * listener no metrics are collected.
+ *
+ * @author Ronald Brill
+ */
+@FunctionalInterface
+public interface HTMLParseMetricsListener {
+
+    /**
+     * Called when the parse of a document has finished, also if the parse
+     * failed or was stopped. The metrics object is reused for the next
+     * document; copy the values you want to keep.
+     *
+     * @param metrics the metrics of the document
+     */
+    void parseFinished(HTMLParseMetrics metrics);
+}
@@ -15,6 +15,8 @@
  */
 package org.htmlunit.cyberneko;
 
+import java.io.FilterInputStream;
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -23,7 +25,9 @@
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Locale;
+import java.util.function.BooleanSupplier;
 
 import org.htmlunit.cyberneko.HTMLElements.Element;
 import org.htmlunit.cyberneko.io.PlaybackInputStream;
@@ -43,6 +47,7 @@
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLConfigurationException;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentSource;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLParseException;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLParserConfiguration;
 
 /**
@@ -79,6 +84,13 @@
  * <li>http://cyberneko.org/html/properties/encoding-translator
  * <li>http://cyberneko.org/html/properties/doctype/pubid
  * <li>http://cyberneko.org/html/properties/doctype/sysid
+ * <li>http://cyberneko.org/html/properties/text-chunk-size
+ * <li>http://cyberneko.org/html/properties/max-text-length
+ * <li>http://cyberneko.org/html/properties/max-attributes
+ * <li>http://cyberneko.org/html/properties/max-attribute-value-length
+ * <li>http://cyberneko.org/html/properties/max-input-length
+ * <li>http://cyberneko.org/html/properties/cancellation
+ * <li>http://cyberneko.org/html/properties/parse-timeout
  * </ul>
  *
  * @see HTMLElements
@@ -271,6 +283,59 @@ public class HTMLScanner implements XMLDocumentSource, XMLLocator, HTMLComponent
     /** Reader buffer size. */
     public static final String READER_BUFFER_SIZE = "http://cyberneko.org/html/properties/reader-buffer-size";
 
+    /**
+     * Text chunk size; text, comment, CDATA and script content longer than this
+     * is delivered in several consecutive events of at most about this size
+     * (characters or comment events). The content of style and script elements
+     * is not split if the delimiters have to be stripped. 0 (the default)
+     * delivers every content in one event.
+     */
+    public static final String TEXT_CHUNK_SIZE = "http://cyberneko.org/html/properties/text-chunk-size";
+
+    /**
+     * Maximum length of a single text, comment, CDATA or script content;
+     * if the content is longer, the parse fails with an {@link XMLParseException}.
+     * 0 (the default) means no limit.
+     */
+    public static final String MAX_TEXT_LENGTH = "http://cyberneko.org/html/properties/max-text-length";
+
+    /**
+     * Maximum number of attributes of a single tag; additional attributes are
+     * scanned but dropped. 0 (the default) means no limit.
+     */
+    public static final String MAX_ATTRIBUTES = "http://cyberneko.org/html/properties/max-attributes";
+
+    /**
+     * Maximum length of a single attribute value; longer values are truncated.
+     * 0 (the default) means no limit.
+     */
+    public static final String MAX_ATTRIBUTE_VALUE_LENGTH
+                                    = "http://cyberneko.org/html/properties/max-attribute-value-length";
+
+    /**
+     * Maximum number of characters read from an input source; the input is
+     * truncated at this length and the document ends there as if the input
+     * was at its end. 0 (the default) means no limit.
+     */
+    public static final String MAX_INPUT_LENGTH = "http://cyberneko.org/html/properties/max-input-length";
+
+    /**
+     * Cancellation token, a {@link BooleanSupplier} returning true if the parse
+     * should be aborted (e.g. {@code () -> Thread.currentThread().isInterrupted()}).
+     * The token is checked each time a block of characters is read from the
+     * input and periodically while scanning the characters already read;
+     * if canceled the parse fails with an {@link XMLParseException} and the
+     * streams are cleaned up. null (the default) means no cancellation.
+     */
+    public static final String CANCELLATION = "http://cyberneko.org/html/properties/cancellation";
+
+    /**
+     * Parse time limit in milliseconds, counted from setting the input source.
+     * Checked like the {@link #CANCELLATION} token; if exceeded the parse fails
+     * with an {@link XMLParseException}. 0 (the default) means no limit.
+     */
+    public static final String PARSE_TIMEOUT = "http://cyberneko.org/html/properties/parse-timeout";
+
     /** Recognized properties. */
     private static final String[] RECOGNIZED_PROPERTIES = {
         NAMES_ELEMS,
@@ -280,7 +345,14 @@ public class HTMLScanner implements XMLDocumentSource, XMLLocator, HTMLComponent
         ENCODING_TRANSLATOR,
         DOCTYPE_PUBID,
         DOCTYPE_SYSID,
-        READER_BUFFER_SIZE};
+        READER_BUFFER_SIZE,
+        TEXT_CHUNK_SIZE,
+        MAX_TEXT_LENGTH,
+        MAX_ATTRIBUTES,
+        MAX_ATTRIBUTE_VALUE_LENGTH,
+        MAX_INPUT_LENGTH,
+        CANCELLATION,
+        PARSE_TIMEOUT};
 
     /** Recognized properties defaults. */
     private static final Object[] RECOGNIZED_PROPERTIES_DEFAULTS = {
@@ -297,7 +369,14 @@ public class HTMLScanner implements XMLDocumentSource, XMLLocator, HTMLComponent
          * to 2048 bytes or more.
          * Xerces org: (10 * 64) - 24
          */
-        (10 * 64) - 24};
+        (10 * 64) - 24,
+        0,
+        0,
+        0,
+        0,
+        0,
+        null,
+        0};
 
     // states
 
@@ -335,6 +414,35 @@ public class HTMLScanner implements XMLDocumentSource, XMLLocator, HTMLComponent
     /** Scan return code: continue scanning (state transition). */
     private static final int SCAN_FALSE = 2;
 
+    /** The number of scanning loop iterations between two cancellation checks. */
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    /** The lookahead used to check the tags while skipping element content. */
+    private static final int SKIP_LOOKAHEAD = 32;
+
+    // character classes for CurrentEntity.skipUntil, indexed by the ASCII chars
+
+    /** The chars ending a run of plain text. */
+    private static final boolean[] TEXT_STOPS = charClass("<&\n\r");
+
+    /** The chars ending a run of plain text while skipping element content. */
+    private static final boolean[] SKIPPED_TEXT_STOPS = charClass("<\n\r");
+
+    /** The chars ending a run of plain chars in a double quoted attribute value. */
+    private static final boolean[] DOUBLE_QUOTED_VALUE_STOPS = charClass(" \t\n\r&\"");
+
+    /** The chars ending a run of plain chars in a single quoted attribute value. */
+    private static final boolean[] SINGLE_QUOTED_VALUE_STOPS = charClass(" \t\n\r&'");
+
+    /** Builds a character class table, true for the given ASCII chars. */
+    private static boolean[] charClass(final String chars) {
+        final boolean[] table = new boolean[128];
+        for (int i = 0; i < chars.length(); i++) {
+            table[chars.charAt(i)] = true;
+        }
+        return table;
+    }
+
     // debugging
 
     /** Set to true to debug changes in the scanner. */
@@ -430,6 +538,51 @@ public class HTMLScanner implements XMLDocumentSource, XMLLocator, HTMLComponent
 
     private int fReaderBufferSize;
 
+    /** Text chunk size, 0 if not used. */
+    private int fTextChunkSize_;
+
+    /** Maximum text length, 0 if not used. */
+    private int fMaxTextLength_;
+
+    /** Maximum number of attributes per tag, 0 if not used. */
+    private int fMaxAttributes_;
+
+    /** Maximum attribute value length, 0 if not used. */
+    private int fMaxAttributeValueLength_;
+
+    /** True if chars of the attribute value scanned last were dropped because of the maximum length. */
+    private boolean fAttributeValueDropped_;
+
+    /** Maximum number of characters read from an input source, 0 if not used. */
+    private int fMaxInputLength_;
+
+    /** The metrics of the current document, null if not collected. */
+    private HTMLParseMetrics fMetrics_;
+
+    /** Cancellation token, null if not used. */
+    private BooleanSupplier fCancellation_;
+
+    /** Parse time limit in milliseconds, 0 if not used. */
+    private int fParseTimeout_;
+
+    /** The deadline of the current parse ({@link System#nanoTime()}), only used with a parse time limit. */
+    private long fDeadline_;
+
+    /** True if the cancellation token or the parse time limit is used. */
+    private boolean fCheckCanceled_;
+
+    /** The number of calls to {@link #pollCanceled()} until the next check. */
+    private int fCancelCountdown_;
+
+    /** True if one of the text limits is used. */
+    private boolean fTextLimits_;
+
+    /** Length of the current text already delivered in chunks. */
+    private int fDeliveredTextLength_;
+
+    /** The chars kept in the buffer when delivering a chunk. */
+    private final char[] fTextChunkTail_ = new char[3];
+
     // boundary locator information
 
     /** Beginning line number. */
@@ -476,6 +629,21 @@ public class HTMLScanner implements XMLDocumentSource, XMLLocator, HTMLComponent
     /** if not empty this is the name of the tag, that requires the special scanner. */
     private String fFragmentSpecialScannerTag_;
 
+    /** Set if the scanning has to be stopped (see {@link #stopScanning(boolean)}). */
+    private boolean fStopRequested_;
+
+    /** Finish the document (endDocument) when stopping. */
+    private boolean fStopFinishDocument_;
+
+    /** The name of the element whose content has to be skipped (see {@link #skipElementContent(String)}). */
+    private String fSkipElementContent_;
+
+    /** The names of the nested elements open while skipping element content. */
+    private final ArrayList<String> fSkipOpenElements_ = new ArrayList<>();
+
+    /** True while scanning the content of {@link #evaluateInputSource(XMLInputSource)}. */
+    private boolean fEvaluatingInputSource_;
+
     // scanners
 
     /** Content scanner. */
@@ -563,7 +731,7 @@ public void pushInputSource(final XMLInputSource inputSource) {
         final String baseSystemId = inputSource.getBaseSystemId();
         final String literalSystemId = inputSource.getSystemId();
         final String systemId = systemId(literalSystemId, baseSystemId);
-        fCurrentEntity = new CurrentEntity(reader, fReaderBufferSize, encoding,
+        fCurrentEntity = new CurrentEntity(reader, fReaderBufferSize, fMaxInputLength_, encoding,
                                     publicId, baseSystemId, literalSystemId, systemId);
     }
 
@@ -574,13 +742,98 @@ private Reader getReader(final XMLInputSource inputSource) {
                 if (StandardEncodingTranslator.REPLACEMENT.equalsIgnoreCase(fJavaEncoding)) {
                     return new StringReader("\uFFFD");
                 }
-                return new InputStreamReader(inputSource.getByteStream(), fJavaEncoding);
+                return wrapReader(new InputStreamReader(inputSource.getByteStream(), fJavaEncoding));
             }
             catch (final UnsupportedEncodingException e) {
                 // should not happen as this encoding is already used to parse the "main" source
             }
         }
-        return reader;
+        return wrapReader(reader);
+    }
+
+    /**
+     * Wraps the reader to check for cancellation and to count the characters
+     * on every block read, if cancellation, a parse time limit or metrics are used.
+     */
+    private Reader wrapReader(final Reader reader) {
+        if (reader == null || fCancellation_ == null && fParseTimeout_ <= 0 && fMetrics_ == null) {
+            return reader;
+        }
+        return new FilterReader(reader) {
+            @Override
+            public int read(final char[] cbuf, final int off, final int len) throws IOException {
+                checkCanceled();
+                final int count = super.read(cbuf, off, len);
+                if (count > 0 && fMetrics_ != null) {
+                    fMetrics_.charsRead_ += count;
+                }
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Wraps the byte stream to count the bytes read, if metrics are used.
+     */
+    private InputStream wrapByteStream(final InputStream inputStream) {
+        if (fMetrics_ == null) {
+            return inputStream;
+        }
+        return new FilterInputStream(inputStream) {
+            @Override
+            public int read() throws IOException {
+                final int b = super.read();
+                if (b != -1) {
+                    fMetrics_.bytesRead_++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                final int count = super.read(b, off, len);
+                if (count > 0) {
+                    fMetrics_.bytesRead_ += count;
+                }
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Checks for cancellation on every {@link #CANCEL_CHECK_INTERVAL}th call;
+     * cheap enough for the scanning loops, which may run a long time on input
+     * already read.
+     *
+     * @throws XMLParseException if the parse has to be aborted
+     */
+    void pollCanceled() {
+        if (fCheckCanceled_ && --fCancelCountdown_ == 0) {
+            fCancelCountdown_ = CANCEL_CHECK_INTERVAL;
+            checkCanceled();
+        }
+    }
+
+    /**
+     * Aborts the parse if the cancellation token is set or the parse time limit
+     * is exceeded.
+     *
+     * @throws XMLParseException if the parse has to be aborted
+     */
+    void checkCanceled() {
+        if (fCancellation_ != null && fCancellation_.getAsBoolean()) {
+            final String message = fErrorReporter == null
+                    ? "Parsing canceled."
+                    : fErrorReporter.formatMessage("HTML1021", null);
+            throw new XMLParseException(this, message);
+        }
+        if (fParseTimeout_ > 0 && System.nanoTime() - fDeadline_ > 0) {
+            final Object[] args = {fParseTimeout_};
+            final String message = fErrorReporter == null
+                    ? "Parse time limit of " + fParseTimeout_ + " ms exceeded."
+                    : fErrorReporter.formatMessage("HTML1022", args);
+            throw new XMLParseException(this, message);
+        }
     }
 
     /**
@@ -601,20 +854,25 @@ public void evaluateInputSource(final XMLInputSource inputSource) {
         final String baseSystemId = inputSource.getBaseSystemId();
         final String literalSystemId = inputSource.getSystemId();
         final String systemId = systemId(literalSystemId, baseSystemId);
-        fCurrentEntity = new CurrentEntity(reader, fReaderBufferSize, encoding,
+        fCurrentEntity = new CurrentEntity(reader, fReaderBufferSize, fMaxInputLength_, encoding,
                                             publicId, baseSystemId, literalSystemId, systemId);
         setScanner(fContentScanner);
         setScannerState(STATE_CONTENT);
+        final boolean previousEvaluating = fEvaluatingInputSource_;
+        fEvaluatingInputSource_ = true;
         try {
             int scan;
             do {
                 scan = fScanner.scan(false);
             }
-            while (SCAN_TRUE == scan);
+            while (SCAN_TRUE == scan && !fStopRequested_);
         }
         catch (final IOException e) {
             // ignore
         }
+        finally {
+            fEvaluatingInputSource_ = previousEvaluating;
+        }
 
         // preserve the plaintext scanning process
         setScanner(fScanner == fPlainTextScanner ? fPlainTextScanner : previousScanner);
@@ -770,6 +1028,17 @@ public void reset(final XMLParserConfiguration xmlParserConfiguration) throws XM
         fDoctypePubid = String.valueOf(xmlParserConfiguration.getProperty(DOCTYPE_PUBID));
         fDoctypeSysid = String.valueOf(xmlParserConfiguration.getProperty(DOCTYPE_SYSID));
         fReaderBufferSize = Integer.parseInt(String.valueOf(xmlParserConfiguration.getProperty(READER_BUFFER_SIZE)));
+        fTextChunkSize_ = Integer.parseInt(String.valueOf(xmlParserConfiguration.getProperty(TEXT_CHUNK_SIZE)));
+        fMaxTextLength_ = Integer.parseInt(String.valueOf(xmlParserConfiguration.getProperty(MAX_TEXT_LENGTH)));
+        fTextLimits_ = fTextChunkSize_ > 0 || fMaxTextLength_ > 0;
+        fMaxAttributes_ = Integer.parseInt(String.valueOf(xmlParserConfiguration.getProperty(MAX_ATTRIBUTES)));
+        fMaxAttributeValueLength_ = Integer.parseInt(
+                String.valueOf(xmlParserConfiguration.getProperty(MAX_ATTRIBUTE_VALUE_LENGTH)));
+        fMaxInputLength_ = Integer.parseInt(String.valueOf(xmlParserConfiguration.getProperty(MAX_INPUT_LENGTH)));
+        fCancellation_ = (BooleanSupplier) xmlParserConfiguration.getProperty(CANCELLATION);
+        fParseTimeout_ = Integer.parseInt(String.valueOf(xmlParserConfiguration.getProperty(PARSE_TIMEOUT)));
+        fCheckCanceled_ = fCancellation_ != null || fParseTimeout_ > 0;
+        fMetrics_ = htmlConfiguration_.getMetrics();
 
         final QName[] fragmentContextStack = (QName[]) xmlParserConfiguration.getProperty(HTMLTagBalancer.FRAGMENT_CONTEXT_STACK);
         if (fragmentContextStack != null) {
@@ -853,12 +1122,21 @@ public void setInputSource(final XMLInputSource source) throws IOException {
         fElementCount = 0;
         fElementDepth = -1;
         fByteStream = null;
+        fStopRequested_ = false;
+        fStopFinishDocument_ = false;
+        fSkipElementContent_ = null;
+        fEvaluatingInputSource_ = false;
         fCurrentEntityStack.clear();
 
         fBeginLineNumber = 1;
         fBeginColumnNumber = 1;
         fBeginCharacterOffset = 0;
 
+        if (fParseTimeout_ > 0) {
+            fDeadline_ = System.nanoTime() + fParseTimeout_ * 1_000_000L;
+        }
+        fCancelCountdown_ = CANCEL_CHECK_INTERVAL;
+
         // reset encoding information
         fIANAEncoding = fDefaultIANAEncoding;
         fJavaEncoding = fIANAEncoding;
@@ -880,7 +1158,7 @@ public void setInputSource(final XMLInputSource source) throws IOException {
             }
 
             final String[] encodings = new String[2];
-            fByteStream = new PlaybackInputStream(inputStream);
+            fByteStream = new PlaybackInputStream(wrapByteStream(inputStream));
             // always call detectBomEncoding() to skip bom in case
             // we got an input stream with bom and an encoding
             fByteStream.detectBomEncoding(encodings);
@@ -916,7 +1194,8 @@ public void setInputSource(final XMLInputSource source) throws IOException {
                 reader = new InputStreamReader(fByteStream, fJavaEncoding);
             }
         }
-        fCurrentEntity = new CurrentEntity(reader, fReaderBufferSize, fIANAEncoding,
+        reader = wrapReader(reader);
+        fCurrentEntity = new CurrentEntity(reader, fReaderBufferSize, fMaxInputLength_, fIANAEncoding,
                                             publicId, baseSystemId, literalSystemId, systemId);
 
         // set scanner and state
@@ -956,16 +1235,517 @@ else if ("plaintext".equals(scannerTagLC)) {
      */
     public boolean scanDocument(final boolean complete) throws XNIException, IOException {
         do {
+            pollCanceled();
             final int scan = fScanner.scan(complete);
             if (SCAN_FALSE == scan) {
                 return false;
             }
+            if (fStopRequested_) {
+                if (fStopFinishDocument_ && fElementCount >= fElementDepth) {
+                    fDocumentHandler.endDocument(synthesizedAugs());
+                }
+                return false;
+            }
         }
         while (complete);
 
         return true;
     }
 
+    /**
+     * Requests the scanner to stop. This method is intended to be called
+     * from the pipeline (e.g. a filter or the document handler) while the
+     * document is scanned; the scanner stops after the current event and
+     * {@link #scanDocument(boolean)} returns false without reading the rest
+     * of the input. The usual cleanup of the configuration closes the streams.
+     *
+     * @param finishDocument if true the endDocument event is still sent; the
+     *        tag balancer uses this to close all open elements. If false no
+     *        more events are sent, not even the synthesized end tags.
+     */
+    public void stopScanning(final boolean finishDocument) {
+        fStopRequested_ = true;
+        fStopFinishDocument_ = finishDocument;
+    }
+
+    /**
+     * Checks the text limits for the buffer holding the not yet delivered
+     * part of the current text, comment or script content. Only to be called
+     * if {@link #fTextLimits_} is set.
+     *
+     * @param buffer the buffer
+     * @return true if the buffer has reached the chunk size
+     * @throws XMLParseException if the content exceeds the maximum length
+     */
+    boolean checkTextLimits(final XMLString buffer) {
+        final int length = buffer.length();
+        if (fMaxTextLength_ > 0 && fDeliveredTextLength_ + length > fMaxTextLength_) {
+            final Object[] args = {fMaxTextLength_};
+            final String message = fErrorReporter == null
+                    ? "Text content exceeds the maximum length of " + fMaxTextLength_ + " characters."
+                    : fErrorReporter.formatMessage("HTML1017", args);
+            throw new XMLParseException(this, message);
+        }
+        return fTextChunkSize_ > 0 && length >= fTextChunkSize_;
+    }
+
+    /**
+     * Drops the last scanned attribute if the tag has more attributes than
+     * allowed. Only to be called if {@link #fMaxAttributes_} is set.
+     *
+     * @param attributes the attributes of the current tag
+     */
+    void limitAttributes(final XMLAttributesImpl attributes) {
+        final int length = attributes.getLength();
+        if (length > fMaxAttributes_) {
+            if (fReportErrors_) {
+                fErrorReporter.reportWarning("HTML1018",
+                        new Object[] {attributes.getQName(length - 1), fMaxAttributes_});
+            }
+            attributes.removeAttributeAt(length - 1);
+        }
+    }
+
+    /**
+     * Truncates the scanned value of an attribute if it is longer than allowed.
+     * Only to be called if {@link #fMaxAttributeValueLength_} is set.
+     *
+     * @param aname the attribute name
+     * @param value the attribute value
+     * @param plainValue the plain attribute value, may be null
+     */
+    void limitAttributeValue(final String aname, final XMLString value, final XMLString plainValue) {
+        final int max = fMaxAttributeValueLength_;
+        boolean truncated = false;
+        if (value.length() > max) {
+            value.shortenBy(value.length() - max);
+            truncated = true;
+        }
+        if (plainValue != null && plainValue.length() > max) {
+            plainValue.shortenBy(plainValue.length() - max);
+            truncated = true;
+        }
+        if ((truncated || fAttributeValueDropped_) && fReportErrors_) {
+            fErrorReporter.reportWarning("HTML1019", new Object[] {aname, max});
+        }
+    }
+
+    /**
+     * Checks if the attribute value being scanned may grow, the value stops
+     * growing at {@link #fMaxAttributeValueLength_} while the rest of the
+     * value is still consumed.
+     *
+     * @param value the attribute value
+     * @param dropped true if the char not appended counts as dropped
+     *        (false for whitespace trimmed anyway)
+     * @return true if the next char can be appended
+     */
+    private boolean hasAttributeValueRoom(final XMLString value, final boolean dropped) {
+        if (fMaxAttributeValueLength_ > 0 && value.length() >= fMaxAttributeValueLength_) {
+            fAttributeValueDropped_ |= dropped;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Appends a run of chars to the attribute value being scanned, at most
+     * up to {@link #fMaxAttributeValueLength_}.
+     */
+    private void appendAttributeValue(final XMLString value, final char[] chars, final int offset, final int length) {
+        int count = length;
+        if (fMaxAttributeValueLength_ > 0 && value.length() + length > fMaxAttributeValueLength_) {
+            count = Math.max(0, fMaxAttributeValueLength_ - value.length());
+            fAttributeValueDropped_ = true;
+        }
+        value.append(chars, offset, count);
+    }
+
+    /**
+     * Delivers the content of the buffer as one chunk of the current text
+     * or comment and clears the buffer.
+     *
+     * @param buffer the buffer
+     * @param comment true to deliver a comment, false for characters
+     * @param keep the number of trailing chars to keep in the buffer
+     *        (still needed to detect the end of the content), at most 3
+     */
+    void deliverTextChunk(final XMLString buffer, final boolean comment, final int keep) {
+        final int length = buffer.length() - keep;
+        if (length <= 0) {
+            return;
+        }
+
+        final char[] tail = fTextChunkTail_;
+        buffer.getChars(length, length + keep, tail, 0);
+        buffer.shortenBy(keep);
+
+        if (fElementCount >= fElementDepth) {
+            if (comment) {
+                fDocumentHandler.comment(buffer, locationAugs(fCurrentEntity));
+            }
+            else {
+                fDocumentHandler.characters(buffer, locationAugs(fCurrentEntity));
+            }
+        }
+        fDeliveredTextLength_ += length;
+        buffer.clear().append(tail, 0, keep);
+    }
+
+    /**
+     * Requests the scanner to skip the content of the element just started.
+     * This method is intended to be called from the pipeline while handling
+     * the startElement event; the scanner fast-forwards to the matching end
+     * tag without producing any events for the content (the end tag itself
+     * is scanned as usual). The request is ignored if the current start tag
+     * is not the given one (e.g. for elements synthesized by the tag balancer)
+     * or if it is self closing.
+     * <p>
+     * The content of elements with a raw text content (like script, style or
+     * textarea) ends with the first matching end tag. The content of all other
+     * elements is markup; the end of it may be implied by any following tag
+     * (e.g. a following li start tag or an end tag of a parent). Therefore it
+     * is skipped only as long as it consists of text and nested unknown elements
+     * (like the content of an inline svg), and only if the tag balancer has no
+     * pending state that would change their handling. At any other markup the
+     * scanning continues as usual, the caller has to drop the remaining events
+     * itself.
+     * <p>
+     * For raw text elements the request may also be made after the startElement
+     * event has been delivered, as long as the content was not scanned yet
+     * (e.g. by a pull parser driving {@link HTMLConfiguration#parse(boolean)}).
+     *
+     * @param elementName the name of the started element
+     */
+    public void skipElementContent(final String elementName) {
+        fSkipElementContent_ = elementName;
+    }
+
+    /**
+     * @return true if the content of the element is raw text, ended by
+     *         the first matching end tag only
+     */
+    private boolean isRawText(final String enameLC) {
+        switch (enameLC) {
+            case "noframes":
+            case "noembed":
+                return true;
+            case "noscript":
+                return !fParseNoScriptContent_;
+            case "iframe":
+                return !fAllowSelfclosingTags_ && !fAllowSelfclosingIframe_;
+            default:
+                final Element element = htmlConfiguration_.getHtmlElements().getElementLC(enameLC, null);
+                return element != null && element.isSpecial();
+        }
+    }
+
+    /**
+     * Skips the raw text content of the element until the matching end tag,
+     * the end tag itself is not consumed.
+     */
+    private void skipUntilEndTag(final String enameLC) throws IOException {
+        final String endTag = "/" + enameLC;
+        final int lengthToScan = endTag.length() + 1;
+        while (true) {
+            final int c = fCurrentEntity.read();
+            if (c == -1) {
+                break;
+            }
+            if (c == '<') {
+                fCurrentEntity.nextContent(fNextContent, lengthToScan);
+                if (fNextContent.startsWithLowerCase(endTag)) {
+                    final char next = fNextContent.charAt(lengthToScan - 1, '>');
+                    if (next == '>' || Character.isWhitespace(next)) {
+                        fCurrentEntity.rewind();
+                        break;
+                    }
+                }
+            }
+            else if (c == '\n' || c == '\r') {
+                fCurrentEntity.skipNewlines(c);
+            }
+        }
+    }
+
+    /**
+     * Skips the markup content of the element until the matching end tag, the end
+     * tag itself is not consumed. Nested start and end tags of unknown elements
+     * (and of the element itself, if it does not close others) are followed, the
+     * tag balancer nests them the same way. Any other markup (known elements,
+     * comments, declarations, processing instructions, end tags of ancestors)
+     * may change the tree; the skipping stops in front of it and the start tags
+     * of the nested elements still open are delivered to keep the tag balancer
+     * in sync.
+     */
+    private void skipNestedContent(final String enameLC) throws IOException {
+        final Element element = htmlConfiguration_.getHtmlElements().getElementLC(enameLC, null);
+        final boolean nests = element == null || element.closes == null;
+        final ArrayList<String> open = fSkipOpenElements_;
+        open.clear();
+
+        while (true) {
+            fCurrentEntity.skipUntil(SKIPPED_TEXT_STOPS);
+            final int c = fCurrentEntity.read();
+            if (c == -1) {
+                return;
+            }
+            if (c == '\n' || c == '\r') {
+                fCurrentEntity.skipNewlines(c);
+                continue;
+            }
+            if (c != '<') {
+                continue;
+            }
+
+            pollCanceled();
+            fCurrentEntity.nextContent(fNextContent, SKIP_LOOKAHEAD);
+            final char next = fNextContent.charAt(0, ' ');
+            if (next == '/') {
+                final int end = skippedTagNameEnd(1);
+                if (end == 1) {
+                    // no name, the scanner ignores this markup
+                    fCurrentEntity.read();
+                    fCurrentEntity.skipMarkup(false);
+                    continue;
+                }
+                if (end != -1) {
+                    final String name = fNextContent.subSequence(1, end).toString();
+                    int index = open.size() - 1;
+                    while (index >= 0 && !name.equalsIgnoreCase(open.get(index))) {
+                        index--;
+                    }
+                    if (index != -1) {
+                        while (open.size() > index) {
+                            open.remove(open.size() - 1);
+                        }
+                        skipChars(end);
+                        fCurrentEntity.skipMarkup(false);
+                        continue;
+                    }
+                    if (enameLC.equalsIgnoreCase(name)) {
+                        fCurrentEntity.rewind();
+                        return;
+                    }
+                }
+            }
+            else if ('A' <= next && next <= 'Z' || 'a' <= next && next <= 'z') {
+                final int end = skippedTagNameEnd(0);
+                if (end != -1) {
+                    final String name = fNextContent.subSequence(0, end).toString();
+                    final String nameLC = name.toLowerCase(Locale.ROOT);
+                    final boolean self = nameLC.equals(enameLC);
+                    final boolean unknown = self
+                            ? element == null
+                            : htmlConfiguration_.getHtmlElements().getElementLC(nameLC, null) == null;
+                    if (self ? nests : unknown) {
+                        skipChars(end);
+                        fElementCount++;
+                        final int tag = skipStartTagMarkup();
+                        if (tag == SCAN_EOF) {
+                            return;
+                        }
+                        // unknown elements are closed by '/>', the others only if allowed
+                        if (tag == SCAN_TRUE || !unknown && !fAllowSelfclosingTags_) {
+                            open.add(name);
+                        }
+                        continue;
+                    }
+                }
+            }
+            else if (next != '!' && next != '?') {
+                // no markup, the scanner takes the '<' as text
+                continue;
+            }
+
+            // stop in front of this markup
+            fCurrentEntity.rewind();
+            if (fElementCount >= fElementDepth) {
+                for (final String name : open) {
+                    final String qname = fNamesElems == NAMES_UPPERCASE ? name.toUpperCase(Locale.ROOT)
+                            : fNamesElems == NAMES_LOWERCASE ? name.toLowerCase(Locale.ROOT) : name;
+                    final QName qName = new QName(null, qname, qname, null);
+                    fDocumentHandler.startElement(qName, new XMLAttributesImpl(), locationAugs(fCurrentEntity));
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * @return the end index of the tag name starting at the given index of the lookahead
+     *         or -1 if the name is not complete or contains a prefix
+     */
+    private int skippedTagNameEnd(final int start) {
+        final XMLString lookahead = fNextContent;
+        final int length = lookahead.length();
+        for (int i = start; i < length; i++) {
+            final char c = lookahead.charAt(i);
+            if (i == start && !('A' <= c && c <= 'Z' || 'a' <= c && c <= 'z')) {
+                return i;
+            }
+            if (c == '\t' || c == '\r' || c == '\n' || c == ' ' || c == 0 || c == '/' || c == '>') {
+                return i;
+            }
+            if (c == ':' || c == '<') {
+                return -1;
+            }
+        }
+        return length < SKIP_LOOKAHEAD ? length : -1;
+    }
+
+    /** Consumes the given number of chars, they must not include line breaks. */
+    private void skipChars(final int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            fCurrentEntity.read();
+        }
+    }
+
+    /**
+     * Skips the attributes and the end of a start tag the same way
+     * {@link ContentScanner#scanAttribute(XMLAttributesImpl, boolean[])} scans them.
+     *
+     * @return {@link #SCAN_TRUE} for a start tag, {@link #SCAN_FALSE} for a self
+     *         closing one or {@link #SCAN_EOF} at the end of the input
+     */
+    private int skipStartTagMarkup() throws IOException {
+        final CurrentEntity entity = fCurrentEntity;
+        while (true) {
+            entity.skipSpaces();
+            int c = entity.read();
+            if (c == -1) {
+                return SCAN_EOF;
+            }
+            if (c == '>') {
+                return SCAN_TRUE;
+            }
+            if (c == '/' && entity.hasNext()) {
+                if (entity.getNextChar() == '>') {
+                    return SCAN_FALSE;
+                }
+                entity.rewind();
+            }
+            entity.rewind();
+
+            if (!skipAttributeName()) {
+                entity.skipSpaces();
+                if (!entity.hasNext() || '=' != entity.getNextChar()) {
+                    entity.rewind();
+                    return entity.skipMarkup(false) ? SCAN_FALSE : SCAN_TRUE;
+                }
+                skipAttributeName();
+            }
+
+            entity.skipSpaces();
+            c = entity.read();
+            if (c == -1) {
+                return SCAN_EOF;
+            }
+            if (c == '>') {
+                return SCAN_TRUE;
+            }
+            if (c == '=') {
+                entity.skipSpaces();
+                c = entity.read();
+                if (c == '"' || c == '\'') {
+                    final boolean[] stops = c == '"' ? DOUBLE_QUOTED_VALUE_STOPS : SINGLE_QUOTED_VALUE_STOPS;
+                    while (true) {
+                        entity.skipUntil(stops);
+                        final int v = entity.read();
+                        if (v == -1) {
+                            return SCAN_EOF;
+                        }
+                        if (v == c) {
+                            break;
+                        }
+                        if (v == '\r') {
+                            final int v2 = entity.read();
+                            if (v2 != '\n' && v2 != -1) {
+                                entity.rewind();
+                            }
+                            entity.incLine();
+                        }
+                        else if (v == '\n') {
+                            entity.incLine();
+                        }
+                    }
+                }
+                else if (c == -1) {
+                    return SCAN_EOF;
+                }
+                else if (c == '>') {
+                    return SCAN_TRUE;
+                }
+                else {
+                    while (true) {
+                        final int v = entity.read();
+                        if (v == -1) {
+                            return SCAN_EOF;
+                        }
+                        if (v == '>' || Character.isWhitespace(v)) {
+                            entity.rewind();
+                            break;
+                        }
+                    }
+                }
+            }
+            else if (c != '/') {
+                entity.rewind();
+            }
+        }
+    }
+
+    /**
+     * Skips an attribute name the same way {@link #scanName(boolean, short)} scans it.
+     *
+     * @return false if there is no name
+     */
+    private boolean skipAttributeName() throws IOException {
+        boolean name = false;
+        while (true) {
+            final int c = fCurrentEntity.read();
+            if (c == -1) {
+                return name;
+            }
+            if (c == ' ' || c == '\n' || c == '=' || c == '/' || c == '>' || Character.isWhitespace(c)) {
+                fCurrentEntity.rewind();
+                return name;
+            }
+            name = true;
+        }
+    }
+
+    /**
+     * Honors a skip request made after the start tag of the given raw text
+     * element has been scanned (e.g. by a pull parser), before its content
+     * is scanned.
+     *
+     * @param ename the name of the element whose content is about to be scanned
+     * @return true if the content was skipped
+     * @throws IOException in case of error
+     */
+    private boolean skipRequestedContent(final String ename) throws IOException {
+        final String skip = fSkipElementContent_;
+        if (skip == null) {
+            return false;
+        }
+        fSkipElementContent_ = null;
+        if (!skip.equalsIgnoreCase(ename)) {
+            return false;
+        }
+        skipUntilEndTag(ename.toLowerCase(Locale.ROOT));
+        setScanner(fContentScanner);
+        setScannerState(STATE_CONTENT);
+        return true;
+    }
+
+    /**
+     * @return true if {@link #stopScanning(boolean)} was called for the current document
+     */
+    public boolean isStopRequested() {
+        return fStopRequested_;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1506,6 +2286,9 @@ protected int scanEntityRef(final XMLString str, final XMLString plainValue, fin
                     plainValue.append(str);
                 }
                 str.clear().append(match);
+                if (fMetrics_ != null) {
+                    fMetrics_.entities_++;
+                }
             }
             return returnEntityRefString(str, content);
         }
@@ -1555,6 +2338,9 @@ protected int scanEntityRef(final XMLString str, final XMLString plainValue, fin
             // not terminated by a ';', we have to reset the char
             // position because we read one more char than the entity has
             fCurrentEntity.rewind(readCount - result.length_);
+            if (fMetrics_ != null) {
+                fMetrics_.entities_++;
+            }
 
             // if we have a correct character that is terminated by ';'
             // we can keep things simple
@@ -1740,12 +2526,22 @@ static final class CurrentEntity {
 
         private boolean endReached_ = false;
 
+        /** Maximum number of characters to read, 0 if not limited. */
+        private final int maxLength_;
+
+        /** Number of characters read so far. */
+        private int readLength_;
+
+        /** True if the input has been truncated at the maximum length. */
+        boolean truncated_;
+
         // Constructs an entity from the specified stream.
-        CurrentEntity(final Reader reader, final int readerBufferSize, final String encoding,
+        CurrentEntity(final Reader reader, final int readerBufferSize, final int maxLength, final String encoding,
                 final String publicId, final String baseSystemId,
                 final String literalSystemId, final String systemId) {
             reader_ = reader;
             buffer_ = new char[readerBufferSize];
+            maxLength_ = maxLength;
             encoding_ = encoding;
 
             this.publicId = publicId;
@@ -1804,7 +2600,7 @@ int load(final int loadOffset) throws IOException {
                 buffer_ = array;
             }
             // read a block of characters
-            final int count = reader_.read(buffer_, loadOffset, buffer_.length - loadOffset);
+            final int count = readBlock(loadOffset, buffer_.length - loadOffset);
             if (count == -1) {
                 length_ = loadOffset;
                 endReached_ = true;
@@ -1824,7 +2620,7 @@ int loadWholeBuffer() throws IOException {
                 debugBufferIfNeeded("(loadWholeBuffer: ");
             }
             // read a block of characters
-            final int count = reader_.read(buffer_, 0, buffer_.length);
+            final int count = readBlock(0, buffer_.length);
             if (count == -1) {
                 length_ = 0;
                 endReached_ = true;
@@ -1839,6 +2635,31 @@ int loadWholeBuffer() throws IOException {
             return count;
         }
 
+        /**
+         * Reads a block of characters from the reader into the buffer, respecting
+         * the maximum length. Once the maximum is reached the end of the input
+         * is reported (-1).
+         */
+        private int readBlock(final int offset, final int length) throws IOException {
+            if (maxLength_ <= 0) {
+                return reader_.read(buffer_, offset, length);
+            }
+
+            final int remaining = maxLength_ - readLength_;
+            if (remaining <= 0) {
+                // one more char tells if something was cut off
+                if (!truncated_ && reader_.read() != -1) {
+                    truncated_ = true;
+                }
+                return -1;
+            }
+            final int count = reader_.read(buffer_, offset, Math.min(length, remaining));
+            if (count > 0) {
+                readLength_ += count;
+            }
+            return count;
+        }
+
         // Reads a single character.
         int read() throws IOException {
             if (DEBUG_BUFFER) {
@@ -1895,6 +2716,16 @@ void nextContent(final XMLString result, final int len) throws IOException {
             }
 
             // slow path: need to load more data — save/restore position
+            // drop the already consumed content (but the last char, the callers
+            // rewind one char), otherwise the buffer grows with every lookahead
+            // crossing the end of the buffer
+            if (offset_ > 1) {
+                final int start = offset_ - 1;
+                System.arraycopy(buffer_, start, buffer_, 0, length_ - start);
+                length_ -= start;
+                offset_ = 1;
+            }
+
             final int originalOffset = offset_;
             final int originalColumnNumber = columnNumber_;
             final int originalCharacterOffset = characterOffset_;
@@ -1987,6 +2818,7 @@ void setStream(final Reader inputStreamReader, final String encoding) {
             reader_ = inputStreamReader;
             offset_ = 0;
             length_ = 0;
+            readLength_ = 0;
             characterOffset_ = 0;
             lineNumber_ = 1;
             columnNumber_ = 1;
@@ -2105,6 +2937,34 @@ else if (c == '\r' || c == '\n') {
             return slashgt;
         }
 
+        /**
+         * Consumes the chars of the buffer up to (not including) the next one
+         * marked in the given table or the end of the buffer. Chars outside the
+         * ASCII range never stop. The buffer is not reloaded and the chars must
+         * not include line breaks, only the column is updated.
+         *
+         * @param stops the ASCII chars to stop at
+         * @return the number of chars consumed
+         */
+        int skipUntil(final boolean[] stops) {
+            final char[] buffer = buffer_;
+            final int end = length_;
+            int i = offset_;
+            while (i < end) {
+                final char c = buffer[i];
+                if (c < 128 && stops[c]) {
+                    break;
+                }
+                i++;
+            }
+
+            final int count = i - offset_;
+            offset_ = i;
+            characterOffset_ += count;
+            columnNumber_ += count;
+            return count;
+        }
+
         // Skips whitespace.
         boolean skipSpaces() throws IOException {
             if (DEBUG_BUFFER) {
@@ -2118,6 +2978,20 @@ boolean skipSpaces() throws IOException {
                     }
                 }
 
+                // runs of blanks (indentation) without the method calls per char
+                final int start = offset_;
+                int i = start;
+                while (i < length_ && (buffer_[i] == ' ' || buffer_[i] == '\t')) {
+                    i++;
+                }
+                if (i > start) {
+                    spaces = true;
+                    characterOffset_ += i - start;
+                    columnNumber_ += i - start;
+                    offset_ = i;
+                    continue;
+                }
+
                 final char c = getNextChar();
                 // compare against the usual suspects first before going
                 // the expensive route
@@ -2330,6 +3204,7 @@ public int scan(final boolean complete) throws IOException {
             boolean next;
             do {
                 next = false;
+                pollCanceled();
                 switch (fScannerState) {
                     case STATE_CONTENT: {
                         fBeginLineNumber = fCurrentEntity.getLineNumber();
@@ -2341,6 +3216,7 @@ public int scan(final boolean complete) throws IOException {
                             continue;
                         }
                         if (c == '<') {
+                            fDeliveredTextLength_ = 0;
                             setScannerState(STATE_MARKUP_BRACKET);
                             next = true;
                         }
@@ -2378,9 +3254,8 @@ else if (c == '&') {
                                 fDocumentHandler.comment(XMLString.EMPTY, locationAugs(fCurrentEntity));
                             }
                             else if (fCurrentEntity.skip("-!>")) {
-                                final XMLString str = new XMLString();
-                                str.append("-!");
-                                fDocumentHandler.comment(str, locationAugs(fCurrentEntity));
+                                fScanComment.clear().append("-!");
+                                fDocumentHandler.comment(fScanComment, locationAugs(fCurrentEntity));
                             }
                             else if (fCurrentEntity.skip("--")) {
                                 if (SCAN_EOF == scanComment()) {
@@ -2420,6 +3295,7 @@ else if (c == '/') {
                             fCurrentEntity.rewind();
                             fElementCount++;
                             fSingleBoolean[0] = false;
+                            fSkipElementContent_ = null;
 
                             final int scanStartElement = scanStartElement(fSingleBoolean);
                             if (SCAN_EOF == scanStartElement) {
@@ -2427,6 +3303,26 @@ else if (c == '/') {
                                 continue;
                             }
 
+                            if (fSkipElementContent_ != null) {
+                                final String skip = fSkipElementContent_;
+                                fSkipElementContent_ = null;
+                                if (SCAN_TRUE == scanStartElement
+                                        && !fSingleBoolean[0]
+                                        && skip.equalsIgnoreCase(scanStartElement_)) {
+                                    final String skipLC = scanStartElement_.toLowerCase(Locale.ROOT);
+                                    if (isRawText(skipLC)) {
+                                        skipUntilEndTag(skipLC);
+                                        setScannerState(STATE_CONTENT);
+                                        break;
+                                    }
+                                    if (htmlConfiguration_.isContentSkippable(scanStartElement_)) {
+                                        skipNestedContent(skipLC);
+                                        setScannerState(STATE_CONTENT);
+                                        break;
+                                    }
+                                }
+                            }
+
                             final String ename;
                             final String enameLC;
                             if (SCAN_TRUE == scanStartElement) {
@@ -2465,7 +3361,7 @@ else if ("noembed".equals(enameLC)) {
                             }
                             // title inside svg
                             else if ("title".equals(enameLC)
-                                    && htmlConfiguration_.getTagBalancer().fOpenedSvg) {
+                                    && htmlConfiguration_.isSvgOpened()) {
                                 setScannerState(STATE_CONTENT);
                             }
                             else if ("plaintext".equals(enameLC)) {
@@ -2505,7 +3401,11 @@ else if (ename != null) {
                         break;
                     }
                     case STATE_END_DOCUMENT: {
-                        if (fElementCount >= fElementDepth && complete) {
+                        // the end of an evaluated input source is not the end of the document
+                        if (fElementCount >= fElementDepth && (complete || !fEvaluatingInputSource_)) {
+                            if (fCurrentEntity.truncated_ && fReportErrors_) {
+                                fErrorReporter.reportWarning("HTML1020", new Object[] {fMaxInputLength_});
+                            }
                             if (DEBUG_CALLBACKS) {
                                 System.out.println("endDocument()");
                             }
@@ -2522,7 +3422,7 @@ else if (ename != null) {
                     return SCAN_TRUE;
                 }
             }
-            while (next || complete);
+            while ((next || complete) && !fStopRequested_);
             return SCAN_TRUE;
         }
 
@@ -2588,6 +3488,7 @@ protected void scanCharacters() throws IOException {
             }
             fStringBuffer.clear();
             while (true) {
+                pollCanceled();
                 final int newlines = fCurrentEntity.skipNewlines();
                 if (newlines == 0 && fCurrentEntity.offset_ == fCurrentEntity.length_) {
                     if (DEBUG_BUFFER) {
@@ -2599,17 +3500,8 @@ protected void scanCharacters() throws IOException {
                 for (int i = offset; i < fCurrentEntity.offset_; i++) {
                     fCurrentEntity.buffer_[i] = '\n';
                 }
-                while (fCurrentEntity.hasNext()) {
-                    final char c = fCurrentEntity.getCurrentChar();
-                    if (c == '<' || c == '&' || c == '\n' || c == '\r') {
-                        // leave it unconsumed, no rewind needed
-                        break;
-                    }
-                    // otherwise consume
-                    fCurrentEntity.offset_++;
-                    fCurrentEntity.characterOffset_++;
-                    fCurrentEntity.columnNumber_++;
-                }
+                // consume up to '<', '&' or a line break, leave it unconsumed
+                fCurrentEntity.skipUntil(TEXT_STOPS);
                 if (fCurrentEntity.offset_ > offset && fElementCount >= fElementDepth) {
                     if (DEBUG_CALLBACKS) {
                         final XMLString xmlString = new XMLString(fCurrentEntity.buffer_, offset,
@@ -2617,6 +3509,9 @@ protected void scanCharacters() throws IOException {
                         System.out.println("characters(" + xmlString + ")");
                     }
                     fStringBuffer.append(fCurrentEntity.buffer_, offset, fCurrentEntity.offset_ - offset);
+                    if (fTextLimits_ && checkTextLimits(fStringBuffer)) {
+                        deliverTextChunk(fStringBuffer, false, 0);
+                    }
                 }
                 if (DEBUG_BUFFER) {
                     fCurrentEntity.debugBufferIfNeeded(")scanCharacters: ");
@@ -2635,6 +3530,8 @@ protected void scanCharacters() throws IOException {
 
             if (fStringBuffer.length() != 0) {
                 fDocumentHandler.characters(fStringBuffer, locationAugs(fCurrentEntity));
+                // the text continues until the next markup
+                fDeliveredTextLength_ += fStringBuffer.length();
             }
         }
 
@@ -2644,6 +3541,7 @@ protected int scanCDATA() throws IOException {
                 fCurrentEntity.debugBufferIfNeeded("(scanCDATA: ");
             }
             fStringBuffer.clear();
+            fDeliveredTextLength_ = 0;
             if (fCDATASections_) {
                 if (fElementCount >= fElementDepth) {
                     if (DEBUG_CALLBACKS) {
@@ -2689,8 +3587,10 @@ protected int scanComment() throws IOException {
             }
 
             fScanComment.clear();
+            fDeliveredTextLength_ = 0;
             final int scanComment = scanCommentContent(fScanComment);
-            if (fElementCount >= fElementDepth) {
+            // don't report an empty last chunk
+            if (fElementCount >= fElementDepth && (fDeliveredTextLength_ == 0 || fScanComment.length() > 0)) {
                 if (DEBUG_CALLBACKS) {
                     System.out.println("comment(" + fScanComment + ")");
                 }
@@ -2707,6 +3607,7 @@ protected int scanComment() throws IOException {
         protected int scanCommentContent(final XMLString buffer) throws IOException {
             int c;
             while (true) {
+                pollCanceled();
                 c = fCurrentEntity.read();
                 if (c == -1) {
                     if (fReportErrors_) {
@@ -2786,6 +3687,9 @@ else if (c == '\n' || c == '\r') {
                         fErrorReporter.reportError("HTML1005", new Object[] {"&#" + c + ';'});
                     }
                 }
+                if (fTextLimits_ && checkTextLimits(buffer)) {
+                    deliverTextChunk(buffer, true, 0);
+                }
             }
 
             return c == -1 ? SCAN_EOF : SCAN_TRUE;
@@ -2852,6 +3756,9 @@ else if (c == '\n' || c == '\r') {
                         fErrorReporter.reportError("HTML1005", new Object[] {"&#" + c + ';'});
                     }
                 }
+                if (fTextLimits_ && checkTextLimits(xmlString)) {
+                    deliverTextChunk(xmlString, !fCDATASections_, 0);
+                }
             }
 
             if (!fCDATASections_) {
@@ -3023,12 +3930,18 @@ protected int scanStartElement(final boolean[] empty) throws IOException {
 
             int scanAttribute = scanAttribute(attributes_, empty);
             while (SCAN_TRUE == scanAttribute) {
+                if (fMaxAttributes_ > 0) {
+                    limitAttributes(attributes_);
+                }
                 scanAttribute = scanAttribute(attributes_, empty);
             }
 
             if (SCAN_EOF == scanAttribute) {
                 return SCAN_EOF;
             }
+            if (fMaxAttributes_ > 0) {
+                limitAttributes(attributes_);
+            }
 
             fBeginLineNumber = beginLineNumber;
             fBeginColumnNumber = beginColumnNumber;
@@ -3086,6 +3999,10 @@ else if ("body".equals(enameLC)) {
             }
 
             if (fElementCount >= fElementDepth) {
+                if (fMetrics_ != null) {
+                    fMetrics_.elements_++;
+                    fMetrics_.attributes_ += attributes_.getLength();
+                }
                 qName_.setValues(null, scanStartElement_, scanStartElement_, null);
                 if (DEBUG_CALLBACKS) {
                     System.out.println("startElement(" + qName_ + ',' + attributes_ + ")");
@@ -3102,6 +4019,21 @@ else if ("body".equals(enameLC)) {
             return SCAN_TRUE;
         }
 
+        /**
+         * Updates the metrics and emits the JFR event for an encoding change;
+         * to be called before the playback of the buffered bytes.
+         */
+        private void encodingChanged(final String previousEncoding, final String encoding) {
+            final int playbackBytes = fByteStream.getBufferedLength();
+            if (fMetrics_ != null) {
+                fMetrics_.encodingChanges_++;
+                fMetrics_.playbackBytes_ += playbackBytes;
+            }
+            if (JfrEvents.AVAILABLE) {
+                JfrEvents.encodingChanged(previousEncoding, encoding, playbackBytes);
+            }
+        }
+
         /**
          * Removes all whitespaces from the string
          */
@@ -3147,10 +4079,12 @@ private boolean changeEncoding(String charset) {
                 }
 
                 if (!javaEncoding.equals(fJavaEncoding)) {
+                    final String previousEncoding = fJavaEncoding;
                     if (StandardEncodingTranslator.REPLACEMENT.equalsIgnoreCase(javaEncoding)) {
                         fJavaEncoding = javaEncoding;
                         // use a simple string reader to implement the charset
                         fCurrentEntity.setStream(new StringReader("\uFFFD"), javaEncoding);
+                        encodingChanged(previousEncoding, javaEncoding);
                         fByteStream.playback();
                         // start from the beginning, without re-using the nodes already parsed
                         fElementDepth = 0;
@@ -3165,7 +4099,9 @@ else if (!isEncodingCompatible(javaEncoding, fJavaEncoding)) {
                     // change the charset
                     else {
                         fJavaEncoding = javaEncoding;
-                        fCurrentEntity.setStream(new InputStreamReader(fByteStream, javaEncoding), javaEncoding);
+                        final Reader reader = wrapReader(new InputStreamReader(fByteStream, javaEncoding));
+                        fCurrentEntity.setStream(reader, javaEncoding);
+                        encodingChanged(previousEncoding, javaEncoding);
                         fByteStream.playback();
                         // skip the already parsed elements
                         fElementDepth = fElementCount;
@@ -3294,6 +4230,9 @@ protected int scanAttribute(final XMLAttributesImpl attributes, final boolean[]
                             // trailing whitespace already normalized to single space
                             attribValue.trimTrailing();
                         }
+                        if (fMaxAttributeValueLength_ > 0) {
+                            limitAttributeValue(aname, attribValue, plainAttribValue);
+                        }
 
                         qName_.setValues(null, aname, aname, null);
                         attributes.addAttribute(qName_, "CDATA", attribValue.toString(),
@@ -3309,6 +4248,9 @@ protected int scanAttribute(final XMLAttributesImpl attributes, final boolean[]
                             // trailing whitespace already normalized to single space
                             attribValue.trimTrailing();
                         }
+                        if (fMaxAttributeValueLength_ > 0) {
+                            limitAttributeValue(aname, attribValue, null);
+                        }
 
                         qName_.setValues(null, aname, aname, null);
                         attributes.addAttribute(qName_, "CDATA", attribValue.toString(), true);
@@ -3342,6 +4284,9 @@ protected int scanAttribute(final XMLAttributesImpl attributes, final boolean[]
                     if (SCAN_EOF == scanAttributeUnquotedValue(fCurrentEntity, attribValue, nonNormalizedAttribValue)) {
                         return SCAN_EOF;
                     }
+                    if (fMaxAttributeValueLength_ > 0) {
+                        limitAttributeValue(aname, attribValue, nonNormalizedAttribValue);
+                    }
 
                     qName_.setValues(null, aname, aname, null);
                     attributes.addAttribute(qName_, "CDATA",
@@ -3352,6 +4297,9 @@ protected int scanAttribute(final XMLAttributesImpl attributes, final boolean[]
                     if (SCAN_EOF == scanAttributeUnquotedValue(fCurrentEntity, attribValue, null)) {
                         return SCAN_EOF;
                     }
+                    if (fMaxAttributeValueLength_ > 0) {
+                        limitAttributeValue(aname, attribValue, null);
+                    }
 
                     qName_.setValues(null, aname, aname, null);
                     attributes.addAttribute(qName_, "CDATA", attribValue.toString(), true);
@@ -3371,6 +4319,7 @@ protected int scanAttributeUnquotedValue(
                 final CurrentEntity currentEntity,
                 final XMLString attribValue,
                 final XMLString plainAttribValue) throws IOException {
+            fAttributeValueDropped_ = false;
             while (true) {
                 final int c = currentEntity.read();
 
@@ -3389,16 +4338,20 @@ protected int scanAttributeUnquotedValue(
                 }
 
                 if (c == '&') {
-                    scanEntityRef(fStringBufferEntityRef, plainAttribValue, false);
-                    attribValue.append(fStringBufferEntityRef);
+                    scanEntityRef(fStringBufferEntityRef,
+                            plainAttribValue != null && hasAttributeValueRoom(plainAttribValue, true)
+                                ? plainAttribValue : null, false);
+                    if (hasAttributeValueRoom(attribValue, true)) {
+                        attribValue.append(fStringBufferEntityRef);
+                    }
                 }
                 else {
-                    if (!attribValue.appendCodePoint(c)) {
+                    if (hasAttributeValueRoom(attribValue, true) && !attribValue.appendCodePoint(c)) {
                         if (fReportErrors_) {
                             fErrorReporter.reportError("HTML1005", new Object[] {"&#" + c + ';'});
                         }
                     }
-                    if (plainAttribValue != null) {
+                    if (plainAttribValue != null && hasAttributeValueRoom(plainAttribValue, true)) {
                         plainAttribValue.appendCodePoint(c);
                     }
                 }
@@ -3415,8 +4368,26 @@ protected int scanAttributeQuotedValue(
 
             boolean isStart = true;
             boolean prevSpace = false;
+            fAttributeValueDropped_ = false;
+
+            final boolean[] stops = currentQuote == '"' ? DOUBLE_QUOTED_VALUE_STOPS
+                    : currentQuote == '\'' ? SINGLE_QUOTED_VALUE_STOPS : null;
 
             while (true) {
+                if (stops != null) {
+                    // copy the run of plain chars at once
+                    final int start = currentEntity.offset_;
+                    final int count = currentEntity.skipUntil(stops);
+                    if (count > 0) {
+                        appendAttributeValue(attribValue, currentEntity.buffer_, start, count);
+                        if (plainAttribValue != null) {
+                            appendAttributeValue(plainAttribValue, currentEntity.buffer_, start, count);
+                        }
+                        isStart = false;
+                        prevSpace = false;
+                    }
+                }
+
                 final boolean acceptSpace = !normalizeAttributes || (!isStart && !prevSpace);
                 final int c = currentEntity.read();
 
@@ -3427,19 +4398,19 @@ protected int scanAttributeQuotedValue(
                     return SCAN_EOF;
                 }
                 if (c == ' ' || c == '\t') {
-                    if (acceptSpace) {
+                    if (acceptSpace && hasAttributeValueRoom(attribValue, !normalizeAttributes)) {
                         attribValue.append(normalizeAttributes ? ' ' : (char) c);
                     }
-                    if (plainAttribValue != null) {
+                    if (plainAttribValue != null && hasAttributeValueRoom(plainAttribValue, true)) {
                         plainAttribValue.append((char) c);
                     }
                     prevSpace = true;
                 }
                 else if (c == '\n') {
-                    if (acceptSpace) {
+                    if (acceptSpace && hasAttributeValueRoom(attribValue, !normalizeAttributes)) {
                         attribValue.append(normalizeAttributes ? ' ' : '\n');
                     }
-                    if (plainAttribValue != null) {
+                    if (plainAttribValue != null && hasAttributeValueRoom(plainAttribValue, true)) {
                         plainAttribValue.append('\n');
                     }
                     currentEntity.incLine();
@@ -3453,10 +4424,10 @@ else if (c == '\r') {
                     else if (c2 != -1) {
                         currentEntity.rewind();
                     }
-                    if (acceptSpace) {
+                    if (acceptSpace && hasAttributeValueRoom(attribValue, !normalizeAttributes)) {
                         attribValue.append(normalizeAttributes ? ' ' : '\n');
                     }
-                    if (plainAttribValue != null) {
+                    if (plainAttribValue != null && hasAttributeValueRoom(plainAttribValue, true)) {
                         plainAttribValue.append('\n');
                     }
                     currentEntity.incLine();
@@ -3464,27 +4435,31 @@ else if (c2 != -1) {
                 }
                 else if (c == '&') {
                     isStart = false;
-                    final int ce = scanEntityRef(fStringBufferEntityRef, plainAttribValue, false);
-                    if (ce != -1) {
-                        if (!attribValue.appendCodePoint(ce)) {
-                            if (fReportErrors_) {
-                                fErrorReporter.reportError("HTML1005", new Object[] {"&#" + ce + ';'});
+                    final int ce = scanEntityRef(fStringBufferEntityRef,
+                            plainAttribValue != null && hasAttributeValueRoom(plainAttribValue, true)
+                                ? plainAttribValue : null, false);
+                    if (hasAttributeValueRoom(attribValue, true)) {
+                        if (ce != -1) {
+                            if (!attribValue.appendCodePoint(ce)) {
+                                if (fReportErrors_) {
+                                    fErrorReporter.reportError("HTML1005", new Object[] {"&#" + ce + ';'});
+                                }
                             }
                         }
-                    }
-                    else {
-                        attribValue.append(fStringBufferEntityRef);
+                        else {
+                            attribValue.append(fStringBufferEntityRef);
+                        }
                     }
                     prevSpace = false;
                 }
                 else if (c != currentQuote) {
                     isStart = false;
-                    if (!attribValue.appendCodePoint(c)) {
+                    if (hasAttributeValueRoom(attribValue, true) && !attribValue.appendCodePoint(c)) {
                         if (fReportErrors_) {
                             fErrorReporter.reportError("HTML1005", new Object[] {"&#" + c + ';'});
                         }
                     }
-                    if (plainAttribValue != null) {
+                    if (plainAttribValue != null && hasAttributeValueRoom(plainAttribValue, true)) {
                         plainAttribValue.appendCodePoint(c);
                     }
                     prevSpace = false;
@@ -3555,6 +4530,9 @@ public Scanner setElementName(final String ename, final String enameLC) {
         /** Scan. */
         @Override
         public int scan(final boolean complete) throws IOException {
+            if (skipRequestedContent(fElementName)) {
+                return SCAN_TRUE;
+            }
             do {
                 switch (fScannerState) {
                     case STATE_CONTENT: {
@@ -3637,7 +4615,7 @@ public int scan(final boolean complete) throws IOException {
                     }
                 }
             }
-            while (complete);
+            while (complete && !fStopRequested_);
             return SCAN_TRUE;
         }
 
@@ -3647,7 +4625,10 @@ protected void scanCharacters(final XMLString buffer) throws IOException {
                 fCurrentEntity.debugBufferIfNeeded("(scanCharacters");
             }
 
+            fDeliveredTextLength_ = 0;
+            final boolean chunks = !fStyle || !(fStyleStripCommentDelims_ || fStyleStripCDATADelims_);
             while (true) {
+                pollCanceled();
                 final int c = fCurrentEntity.read();
 
                 if (c == -1 || (c == '<' || c == '&')) {
@@ -3670,6 +4651,9 @@ else if (c == '\r' || c == '\n') {
                         }
                     }
                 }
+                if (fTextLimits_ && checkTextLimits(buffer) && chunks) {
+                    deliverTextChunk(buffer, false, 0);
+                }
             }
 
             if (fStyle) {
@@ -3704,12 +4688,15 @@ public class PlainTextScanner implements Scanner {
         @Override
         public int scan(final boolean complete) throws IOException {
             xmlString_.clear();
+            fDeliveredTextLength_ = 0;
             scanCharacters(xmlString_, complete);
-            return SCAN_FALSE;
+            // a stopped scan gets finished by scanDocument
+            return fStopRequested_ ? SCAN_TRUE : SCAN_FALSE;
         }
 
         private void scanCharacters(final XMLString buffer, final boolean complete) throws IOException {
             while (true) {
+                pollCanceled();
                 final int c = fCurrentEntity.read();
 
                 if (c == -1) {
@@ -3725,6 +4712,9 @@ private void scanCharacters(final XMLString buffer, final boolean complete) thro
                 if (c == '\n') {
                     fCurrentEntity.incLine();
                 }
+                if (fTextLimits_ && checkTextLimits(buffer)) {
+                    deliverTextChunk(buffer, false, 0);
+                }
             }
 
             if (buffer.length() > 0 && fElementCount >= fElementDepth) {
@@ -3733,7 +4723,7 @@ private void scanCharacters(final XMLString buffer, final boolean complete) thro
                 }
                 fDocumentHandler.characters(buffer, locationAugs(fCurrentEntity));
             }
-            if (complete) {
+            if (complete && !fStopRequested_) {
                 fDocumentHandler.endDocument(locationAugs(fCurrentEntity));
             }
             if (DEBUG_BUFFER) {
@@ -3752,7 +4742,12 @@ public class ScriptScanner implements Scanner {
 
         @Override
         public int scan(final boolean complete) throws IOException {
+            if (skipRequestedContent("script")) {
+                return SCAN_TRUE;
+            }
             fScanScriptContent.clear();
+            fDeliveredTextLength_ = 0;
+            final boolean chunks = !fScriptStripCommentDelims_ && !fScriptStripCDATADelims_;
 
             ScanScriptState state = ScanScriptState.DATA;
             int closeIndex = 0;
@@ -3761,6 +4756,7 @@ public int scan(final boolean complete) throws IOException {
 
             OUTER:
                 while (true) {
+                    pollCanceled();
                     final int c = fCurrentEntity.read();
                     if (c == -1) {
                         break OUTER;
@@ -3893,6 +4889,11 @@ else if (!fScanScriptContent.appendCodePoint(c)) {
                             fErrorReporter.reportError("HTML1005", new Object[] {"&#" + c + ';'});
                         }
                     }
+
+                    if (fTextLimits_ && checkTextLimits(fScanScriptContent) && chunks) {
+                        // the state machine looks back up to three chars
+                        deliverTextChunk(fScanScriptContent, false, 3);
+                    }
                 }
 
             if (fScriptStripCommentDelims_) {
@@ -53,6 +53,7 @@
  * <li>http://cyberneko.org/html/features/report-errors
  * <li>http://cyberneko.org/html/features/balance-tags/document-fragment
  * <li>http://cyberneko.org/html/features/balance-tags/ignore-outside-content
+ * <li>http://cyberneko.org/html/features/balance-tags/head-only
  * </ul>
  * <p>
  * This component recognizes the following properties:
@@ -61,6 +62,8 @@
  * <li>http://cyberneko.org/html/properties/names/attrs
  * <li>http://cyberneko.org/html/properties/error-reporter
  * <li>http://cyberneko.org/html/properties/balance-tags/current-stack
+ * <li>http://cyberneko.org/html/properties/balance-tags/max-depth
+ * <li>http://cyberneko.org/html/properties/balance-tags/max-elements
  * </ul>
  *
  * @see HTMLElements
@@ -91,6 +94,14 @@
     protected static final String IGNORE_OUTSIDE_CONTENT
                             = "http://cyberneko.org/html/features/balance-tags/ignore-outside-content";
 
+    /**
+     * Parse the head only. The document is finished as soon as the body
+     * starts (explicit or implied by body content) and the scanner stops
+     * reading the input. The document handler gets the html and head elements
+     * with all the events of the head content but no body.
+     */
+    public static final String HEAD_ONLY = "http://cyberneko.org/html/features/balance-tags/head-only";
+
     /** Recognized features. */
     private static final String[] RECOGNIZED_FEATURES = {
         NAMESPACES,
@@ -98,6 +109,7 @@
         REPORT_ERRORS,
         DOCUMENT_FRAGMENT,
         IGNORE_OUTSIDE_CONTENT,
+        HEAD_ONLY,
     };
 
     /** Recognized features defaults. */
@@ -107,6 +119,7 @@
         null,
         Boolean.FALSE,
         Boolean.FALSE,
+        Boolean.FALSE,
     };
 
     // properties
@@ -127,12 +140,28 @@
     public static final String FRAGMENT_CONTEXT_STACK
                                 = "http://cyberneko.org/html/properties/balance-tags/fragment-context-stack";
 
+    /**
+     * Maximum depth of the element stack. Start tags of elements that would be
+     * nested deeper are ignored, their content is added to the deepest open
+     * element (the document is flattened). 0 (the default) means no limit.
+     */
+    public static final String MAX_DEPTH = "http://cyberneko.org/html/properties/balance-tags/max-depth";
+
+    /**
+     * Maximum number of elements of the document, including the inserted ones.
+     * When the limit is reached the document is truncated: the open elements are
+     * closed and the parsing stops. 0 (the default) means no limit.
+     */
+    public static final String MAX_ELEMENTS = "http://cyberneko.org/html/properties/balance-tags/max-elements";
+
     /** Recognized properties. */
     private static final String[] RECOGNIZED_PROPERTIES = {
         NAMES_ELEMS,
         NAMES_ATTRS,
         ERROR_REPORTER,
         FRAGMENT_CONTEXT_STACK,
+        MAX_DEPTH,
+        MAX_ELEMENTS,
     };
 
     /** Recognized properties defaults. */
@@ -141,6 +170,8 @@
         null,
         null,
         null,
+        0,
+        0,
     };
 
     /** Don't modify HTML names. */
@@ -170,6 +201,9 @@
     /** Ignore outside content. */
     protected boolean fIgnoreOutsideContent;
 
+    /** Parse the head only. */
+    protected boolean fHeadOnly;
+
     /** Allows self closing iframe tags. */
     protected boolean fAllowSelfclosingIframe;
 
@@ -187,6 +221,12 @@
     /** Error reporter. */
     protected HTMLErrorReporter fErrorReporter;
 
+    /** Maximum depth of the element stack, 0 if not limited. */
+    private int maxDepth_;
+
+    /** Maximum number of elements, 0 if not limited. */
+    private int maxElements_;
+
     // connections
 
     private XMLDocumentSource documentSource_;
@@ -274,6 +314,12 @@
     private final List<ElementEntry> endElementsBuffer_ = new ArrayList<>(4);
     private final List<String> discardedStartElements = new ArrayList<>(2);
 
+    /** Number of elements passed to the handler, only counted if maxElements_ is set. */
+    private int elementCount_;
+
+    /** The metrics of the current document, null if not collected. */
+    private HTMLParseMetrics metrics_;
+
     private final HTMLConfiguration htmlConfiguration_;
 
     HTMLTagBalancer(final HTMLConfiguration htmlConfiguration) {
@@ -325,6 +371,7 @@ public void reset(final XMLParserConfiguration xmlParserConfiguration) throws XM
         fReportErrors = xmlParserConfiguration.getFeature(REPORT_ERRORS);
         fDocumentFragment = xmlParserConfiguration.getFeature(DOCUMENT_FRAGMENT);
         fIgnoreOutsideContent = xmlParserConfiguration.getFeature(IGNORE_OUTSIDE_CONTENT);
+        fHeadOnly = xmlParserConfiguration.getFeature(HEAD_ONLY);
         fAllowSelfclosingIframe = xmlParserConfiguration.getFeature(HTMLScanner.ALLOW_SELFCLOSING_IFRAME);
         fAllowSelfclosingScript = xmlParserConfiguration.getFeature(HTMLScanner.ALLOW_SELFCLOSING_SCRIPT);
         fAllowSelfclosingTags = xmlParserConfiguration.getFeature(HTMLScanner.ALLOW_SELFCLOSING_TAGS);
@@ -332,6 +379,10 @@ public void reset(final XMLParserConfiguration xmlParserConfiguration) throws XM
         // get properties
         fNamesElems = getNamesValue(String.valueOf(xmlParserConfiguration.getProperty(NAMES_ELEMS)));
         fErrorReporter = (HTMLErrorReporter) xmlParserConfiguration.getProperty(ERROR_REPORTER);
+        maxDepth_ = Integer.parseInt(String.valueOf(xmlParserConfiguration.getProperty(MAX_DEPTH)));
+        maxElements_ = Integer.parseInt(String.valueOf(xmlParserConfiguration.getProperty(MAX_ELEMENTS)));
+        elementCount_ = 0;
+        metrics_ = htmlConfiguration_.getMetrics();
 
         fSeenAnything = false;
         fSeenDoctype = false;
@@ -612,10 +663,17 @@ private void consumeEarlyTextIfNeeded() {
             if (!fSeenBodyElement) {
                 forceStartBody();
             }
-            lostText_.refeed(this);
+            refeedLostText();
         }
     }
 
+    private void refeedLostText() {
+        if (metrics_ != null && !lostText_.isEmpty()) {
+            metrics_.lostTextRefeeds_++;
+        }
+        lostText_.refeed(this);
+    }
+
     /** Processing instruction. */
     @Override
     public void processingInstruction(final String target, final XMLString data,
@@ -719,6 +777,10 @@ else if (!fOpenedSvg && elementCode == HTMLElements.FRAMESET) {
                 notifyDiscardedStartElement(elem, attrs, augs);
                 return;
             }
+            if (fHeadOnly) {
+                finishHeadOnly();
+                return;
+            }
 
             fSeenFramesetElement = true;
         }
@@ -735,6 +797,10 @@ else if (elementCode == HTMLElements.BODY) {
                 notifyDiscardedStartElement(elem, attrs, augs);
                 return;
             }
+            if (fHeadOnly) {
+                finishHeadOnly();
+                return;
+            }
             fSeenBodyElement = true;
         }
         else if (elementCode == HTMLElements.FORM) {
@@ -857,6 +923,8 @@ else if (!fSeenRootElement && !fDocumentFragment) {
             }
         }
 
+        final boolean openedSvg = fOpenedSvg;
+        final boolean openedSelect = fOpenedSelect;
         if (elementCode == HTMLElements.SVG) {
             fOpenedSvg = true;
         }
@@ -934,6 +1002,22 @@ else if (!fTemplateFragment && elementCode == HTMLElements.SELECT) {
             }
         }
 
+        // truncate the document if there are too many elements
+        if (maxElements_ > 0 && ++elementCount_ > maxElements_) {
+            if (fReportErrors) {
+                fErrorReporter.reportWarning("HTML2013", new Object[]{maxElements_});
+            }
+            fOpenedSvg = openedSvg;
+            fOpenedSelect = openedSelect;
+            fSeenRootElementEnd = true;
+            htmlConfiguration_.stopParsing(true);
+            return;
+        }
+
+        if (isForcedCreation && metrics_ != null) {
+            metrics_.synthesizedElements_++;
+        }
+
         // call handler
         fSeenRootElement = true;
         if (element.isEmpty()) {
@@ -944,6 +1028,20 @@ else if (!fTemplateFragment && elementCode == HTMLElements.SELECT) {
                 documentHandler_.emptyElement(elem, attrs, augs);
             }
         }
+        else if (maxDepth_ > 0 && fElementStack.length >= maxDepth_) {
+            // flatten, the content goes to the current element
+            if (fReportErrors) {
+                fErrorReporter.reportWarning("HTML2012", new Object[]{elem.getRawname(), maxDepth_});
+            }
+            if (tagBalancingListener != null) {
+                tagBalancingListener.ignoredStartElement(elem, attrs, augs);
+            }
+            if (metrics_ != null) {
+                metrics_.discardedElements_++;
+            }
+            fOpenedSvg = openedSvg;
+            fOpenedSelect = openedSelect;
+        }
         else {
             final boolean inline = element.isInline();
             fElementStack.push(new Info(element, elem, inline ? attrs : null));
@@ -962,7 +1060,7 @@ else if (!fTemplateFragment && elementCode == HTMLElements.SELECT) {
         }
 
         if (elementCode == HTMLElements.BODY) {
-            lostText_.refeed(this);
+            refeedLostText();
         }
     }
 
@@ -999,6 +1097,19 @@ public void emptyElement(final QName element, final XMLAttributes attrs,
         }
     }
 
+    /**
+     * The body starts, in head only mode the document ends here. Everything up
+     * to the end of the head was already passed to the handler; the remaining
+     * events are ignored and the scanner is told to stop and to finish the
+     * document (our {@link #endDocument(Augmentations)} closes the html element).
+     */
+    private void finishHeadOnly() {
+        // no body has to be added at the end
+        fSeenBodyElement = true;
+        fSeenRootElementEnd = true;
+        htmlConfiguration_.stopParsing(true);
+    }
+
     /**
      * Generates a missing <body> (which creates missing <head> when needed)
      */
@@ -1108,6 +1219,11 @@ else if (whitespace == -1 && !text.isWhitespace()) {
             }
         }
 
+        // a forced body may have finished the document (head only)
+        if (fSeenRootElementEnd) {
+            return;
+        }
+
         fSeenCharacters = fSeenCharacters || text.length() > 0;
 
         // call handler
@@ -1271,6 +1387,10 @@ private static boolean isHeading(final short code) {
      * @param augs augmentations from the triggering end tag
      */
     private void closeTopElements(final QName triggeringElement, final int depth, final Augmentations augs) {
+        if (depth > JfrEvents.DEEP_CLOSE_CASCADE && JfrEvents.AVAILABLE) {
+            JfrEvents.tagBalancerRecovery(triggeringElement.getRawname(), depth - 1);
+        }
+
         for (int i = 0; i < depth; i++) {
             final Info info = fElementStack.pop();
 
@@ -1359,6 +1479,54 @@ protected final void callEndElement(final QName element, final Augmentations aug
         documentHandler_.endElement(element, augs);
     }
 
+    /**
+     * Checks if the content of the innermost open element can be skipped by the
+     * scanner as long as it consists of text and unknown elements only. Such
+     * content neither closes the element nor any of its ancestors, unless a
+     * state of the balancer (pending formatting elements, buffered end tags of
+     * body or html, an open select, the element limits or a parent in the head)
+     * changes the handling.
+     *
+     * @param elementName the name of the element
+     * @return true if the innermost open element is the given one and its content
+     *         can be skipped
+     */
+    boolean isContentSkippable(final String elementName) {
+        final int length = fElementStack.length;
+        if (length == 0
+                || maxDepth_ > 0
+                || maxElements_ > 0
+                || fOpenedSelect
+                || fSeenFramesetElement
+                || fSeenRootElementEnd
+                || fSeenBodyElementEnd
+                || fFormattingStack.length > 0
+                || !endElementsBuffer_.isEmpty()) {
+            return false;
+        }
+
+        final Info info = fElementStack.data[length - 1];
+        if (!elementName.equalsIgnoreCase(info.qname.getRawname())
+                || info.element.isBlock()
+                || info.element.isFormatting()) {
+            return false;
+        }
+        if (length > 1 && fElementStack.data[length - 2].element.code == HTMLElements.HEAD) {
+            return false;
+        }
+
+        // the unknown elements need a body as parent
+        if (fOpenedSvg || (fDocumentFragment && !fSeenRealHtmlElement)) {
+            return true;
+        }
+        for (int i = length - 2; i >= 0; i--) {
+            if (fElementStack.data[i].element.code == HTMLElements.BODY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * @return the depth of the open tag associated with the specified
      *      element name or -1 if no matching element is found.
@@ -1596,6 +1764,9 @@ private void notifyDiscardedStartElement(final QName elem, final XMLAttributes a
         if (tagBalancingListener != null) {
             tagBalancingListener.ignoredStartElement(elem, attrs, augs);
         }
+        if (metrics_ != null) {
+            metrics_.discardedElements_++;
+        }
         discardedStartElements.add(elem.getRawname());
     }
 
@@ -1606,6 +1777,9 @@ private void notifyDiscardedEndElement(final QName element, final Augmentations
         if (tagBalancingListener != null) {
             tagBalancingListener.ignoredEndElement(element, augs);
         }
+        if (metrics_ != null) {
+            metrics_.discardedElements_++;
+        }
     }
 
     /**
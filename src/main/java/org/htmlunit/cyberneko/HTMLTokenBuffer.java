@@ -0,0 +1,484 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+import org.htmlunit.cyberneko.xerces.util.XMLAttributesImpl;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLDocumentHandler;
+import org.htmlunit.cyberneko.xerces.xni.XMLLocator;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+
+/**
+ * A reusable buffer for the scanner events. Every event is stored as a
+ * token in an int array: the token type, optionally the location and the
+ * operands. Text is copied into a char array and referenced by start and
+ * length; names, attribute values and other objects the scanner does not
+ * reuse are referenced by their index in an object array.
+ * <p>
+ * Replaying reuses one {@link QName}, attributes, {@link XMLString} and
+ * location instance for all events, like the scanner does.
+ * <p>
+ * The problems reported by the scanner are stored as tokens too, together
+ * with the scanner location; replaying passes them to the error reporter in
+ * the order of the events.
+ *
+ * @author Ronald Brill
+ */
+final class HTMLTokenBuffer {
+
+    static final int START_DOCUMENT = 1;
+    static final int XML_DECL = 2;
+    static final int DOCTYPE_DECL = 3;
+    static final int COMMENT = 4;
+    static final int PROCESSING_INSTRUCTION = 5;
+    static final int START_ELEMENT = 6;
+    static final int EMPTY_ELEMENT = 7;
+    static final int CHARACTERS = 8;
+    static final int END_ELEMENT = 9;
+    static final int START_CDATA = 10;
+    static final int END_CDATA = 11;
+    static final int END_DOCUMENT = 12;
+    static final int WARNING = 13;
+    static final int ERROR = 14;
+
+    /** Token flag: the six location ints follow the type. */
+    private static final int LOCATION = 0x100;
+
+    /** Token flag: a reference to other augmentations follows the type. */
+    private static final int AUGMENTATIONS = 0x200;
+
+    private static final int TYPE_MASK = 0xFF;
+
+    /** The buffer counts as full if it holds this many ints or chars. */
+    private static final int CAPACITY = 16 * 1024;
+
+    private int[] tokens_ = new int[CAPACITY + 256];
+    private int tokenLength_;
+
+    private char[] chars_ = new char[CAPACITY + 256];
+    private int charLength_;
+
+    private Object[] refs_ = new Object[1024];
+    private int refLength_;
+
+    /** Marks the buffer the producer waits for until it is replayed. */
+    boolean sync_;
+
+    /** Marks the last buffer of a document. */
+    boolean last_;
+
+    /** The exception that ended the scan; only set for the last buffer. */
+    Throwable failure_;
+
+    private final QName qName_ = new QName();
+    private final QName attrQName_ = new QName();
+    private final XMLAttributesImpl attributes_ = new XMLAttributesImpl();
+    private final XMLString text_ = new XMLString();
+    private final LocationItem location_ = new LocationItem();
+    private final ErrorLocation errorLocation_ = new ErrorLocation();
+
+    boolean isFull() {
+        return tokenLength_ >= CAPACITY || charLength_ >= CAPACITY;
+    }
+
+    void clear() {
+        tokenLength_ = 0;
+        charLength_ = 0;
+        Arrays.fill(refs_, 0, refLength_, null);
+        refLength_ = 0;
+        sync_ = false;
+        last_ = false;
+        failure_ = null;
+    }
+
+    void startDocument(final XMLLocator locator, final String encoding, final NamespaceContext nscontext,
+            final Augmentations augs) {
+        writeType(START_DOCUMENT, augs);
+        writeRef(locator);
+        writeRef(encoding);
+        writeRef(nscontext);
+    }
+
+    void xmlDecl(final String version, final String encoding, final String standalone, final Augmentations augs) {
+        writeType(XML_DECL, augs);
+        writeRef(version);
+        writeRef(encoding);
+        writeRef(standalone);
+    }
+
+    void doctypeDecl(final String root, final String publicId, final String systemId, final Augmentations augs) {
+        writeType(DOCTYPE_DECL, augs);
+        writeRef(root);
+        writeRef(publicId);
+        writeRef(systemId);
+    }
+
+    void comment(final XMLString text, final Augmentations augs) {
+        writeType(COMMENT, augs);
+        writeText(text);
+    }
+
+    void processingInstruction(final String target, final XMLString data, final Augmentations augs) {
+        writeType(PROCESSING_INSTRUCTION, augs);
+        writeRef(target);
+        writeText(data);
+    }
+
+    void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs) {
+        writeType(START_ELEMENT, augs);
+        writeQName(element);
+        writeAttributes(attributes);
+    }
+
+    void emptyElement(final QName element, final XMLAttributes attributes, final Augmentations augs) {
+        writeType(EMPTY_ELEMENT, augs);
+        writeQName(element);
+        writeAttributes(attributes);
+    }
+
+    void characters(final XMLString text, final Augmentations augs) {
+        writeType(CHARACTERS, augs);
+        writeText(text);
+    }
+
+    void endElement(final QName element, final Augmentations augs) {
+        writeType(END_ELEMENT, augs);
+        writeQName(element);
+    }
+
+    void startCDATA(final Augmentations augs) {
+        writeType(START_CDATA, augs);
+    }
+
+    void endCDATA(final Augmentations augs) {
+        writeType(END_CDATA, augs);
+    }
+
+    void endDocument(final Augmentations augs) {
+        writeType(END_DOCUMENT, augs);
+    }
+
+    void error(final boolean warning, final String key, final Object[] args, final XMLLocator locator) {
+        ensureTokenCapacity(4);
+        tokens_[tokenLength_++] = warning ? WARNING : ERROR;
+        tokens_[tokenLength_++] = locator.getLineNumber();
+        tokens_[tokenLength_++] = locator.getColumnNumber();
+        tokens_[tokenLength_++] = locator.getCharacterOffset();
+        writeRef(locator.getPublicId());
+        writeRef(locator.getLiteralSystemId());
+        writeRef(locator.getBaseSystemId());
+        writeRef(locator.getSystemId());
+        writeRef(locator.getEncoding());
+        writeRef(locator.getXMLVersion());
+        writeRef(key);
+        writeRef(args);
+    }
+
+    /**
+     * Replays the tokens into the handler and the pipeline.
+     *
+     * @param handler the handler
+     * @param pipeline gets the reported problems
+     * @param stopped checked before every token, replaying ends if true
+     * @return true if the endDocument event was replayed
+     * @throws XNIException if the handler fails
+     */
+    boolean replay(final XMLDocumentHandler handler, final HTMLTokenPipeline pipeline,
+            final BooleanSupplier stopped) throws XNIException {
+        boolean ended = false;
+        int pos = 0;
+        while (pos < tokenLength_ && !stopped.getAsBoolean()) {
+            final int token = tokens_[pos++];
+
+            Augmentations augs = null;
+            if ((token & LOCATION) != 0) {
+                location_.setValues(tokens_[pos], tokens_[pos + 1], tokens_[pos + 2],
+                        tokens_[pos + 3], tokens_[pos + 4], tokens_[pos + 5]);
+                pos += 6;
+                augs = location_;
+            }
+            else if ((token & AUGMENTATIONS) != 0) {
+                augs = (Augmentations) refs_[tokens_[pos++]];
+            }
+
+            switch (token & TYPE_MASK) {
+                case START_DOCUMENT:
+                    handler.startDocument((XMLLocator) refs_[tokens_[pos]], (String) refs_[tokens_[pos + 1]],
+                            (NamespaceContext) refs_[tokens_[pos + 2]], augs);
+                    pos += 3;
+                    break;
+
+                case XML_DECL:
+                    handler.xmlDecl((String) refs_[tokens_[pos]], (String) refs_[tokens_[pos + 1]],
+                            (String) refs_[tokens_[pos + 2]], augs);
+                    pos += 3;
+                    break;
+
+                case DOCTYPE_DECL:
+                    handler.doctypeDecl((String) refs_[tokens_[pos]], (String) refs_[tokens_[pos + 1]],
+                            (String) refs_[tokens_[pos + 2]], augs);
+                    pos += 3;
+                    break;
+
+                case COMMENT:
+                    handler.comment(readText(pos), augs);
+                    pos += 2;
+                    break;
+
+                case PROCESSING_INSTRUCTION:
+                    final String target = (String) refs_[tokens_[pos++]];
+                    handler.processingInstruction(target, readText(pos), augs);
+                    pos += 2;
+                    break;
+
+                case START_ELEMENT:
+                    pos = readQName(pos, qName_);
+                    pos = readAttributes(pos);
+                    handler.startElement(qName_, attributes_, augs);
+                    break;
+
+                case EMPTY_ELEMENT:
+                    pos = readQName(pos, qName_);
+                    pos = readAttributes(pos);
+                    handler.emptyElement(qName_, attributes_, augs);
+                    break;
+
+                case CHARACTERS:
+                    handler.characters(readText(pos), augs);
+                    pos += 2;
+                    break;
+
+                case END_ELEMENT:
+                    pos = readQName(pos, qName_);
+                    handler.endElement(qName_, augs);
+                    break;
+
+                case START_CDATA:
+                    handler.startCDATA(augs);
+                    break;
+
+                case END_CDATA:
+                    handler.endCDATA(augs);
+                    break;
+
+                case END_DOCUMENT:
+                    handler.endDocument(augs);
+                    ended = true;
+                    break;
+
+                case WARNING:
+                case ERROR:
+                    pos = readErrorLocation(pos);
+                    final String key = (String) refs_[tokens_[pos]];
+                    final Object[] args = (Object[]) refs_[tokens_[pos + 1]];
+                    pos += 2;
+                    pipeline.replayError((token & TYPE_MASK) == WARNING, key, args, errorLocation_);
+                    break;
+
+                default:
+                    throw new IllegalStateException("Invalid token type " + token);
+            }
+        }
+        return ended;
+    }
+
+    private void writeType(final int type, final Augmentations augs) {
+        ensureTokenCapacity(8);
+        if (augs instanceof LocationItem item) {
+            tokens_[tokenLength_++] = type | LOCATION;
+            tokens_[tokenLength_++] = item.getBeginLineNumber();
+            tokens_[tokenLength_++] = item.getBeginColumnNumber();
+            tokens_[tokenLength_++] = item.getBeginCharacterOffset();
+            tokens_[tokenLength_++] = item.getEndLineNumber();
+            tokens_[tokenLength_++] = item.getEndColumnNumber();
+            tokens_[tokenLength_++] = item.getEndCharacterOffset();
+        }
+        else if (augs != null) {
+            tokens_[tokenLength_++] = type | AUGMENTATIONS;
+            writeRef(augs);
+        }
+        else {
+            tokens_[tokenLength_++] = type;
+        }
+    }
+
+    private void writeRef(final Object ref) {
+        if (refLength_ == refs_.length) {
+            refs_ = Arrays.copyOf(refs_, refs_.length * 2);
+        }
+        refs_[refLength_] = ref;
+
+        ensureTokenCapacity(1);
+        tokens_[tokenLength_++] = refLength_++;
+    }
+
+    private void writeText(final XMLString text) {
+        final int length = text.length();
+        if (charLength_ + length > chars_.length) {
+            chars_ = Arrays.copyOf(chars_, Math.max(chars_.length * 2, charLength_ + length));
+        }
+        text.getChars(0, length, chars_, charLength_);
+
+        ensureTokenCapacity(2);
+        tokens_[tokenLength_++] = charLength_;
+        tokens_[tokenLength_++] = length;
+        charLength_ += length;
+    }
+
+    private void writeQName(final QName name) {
+        writeRef(name.getPrefix());
+        writeRef(name.getLocalpart());
+        writeRef(name.getRawname());
+        writeRef(name.getUri());
+    }
+
+    private void writeAttributes(final XMLAttributes attributes) {
+        final int length = attributes == null ? 0 : attributes.getLength();
+        ensureTokenCapacity(1);
+        tokens_[tokenLength_++] = length;
+
+        for (int i = 0; i < length; i++) {
+            writeQName(attributes.getName(i));
+            writeRef(attributes.getType(i));
+            writeRef(attributes.getValue(i));
+            writeRef(attributes.getNonNormalizedValue(i));
+
+            ensureTokenCapacity(1);
+            tokens_[tokenLength_++] = attributes.isSpecified(i) ? 1 : 0;
+        }
+    }
+
+    private void ensureTokenCapacity(final int count) {
+        if (tokenLength_ + count > tokens_.length) {
+            tokens_ = Arrays.copyOf(tokens_, tokens_.length * 2);
+        }
+    }
+
+    private XMLString readText(final int pos) {
+        text_.clear();
+        text_.append(chars_, tokens_[pos], tokens_[pos + 1]);
+        return text_;
+    }
+
+    private int readQName(final int pos, final QName name) {
+        name.setValues((String) refs_[tokens_[pos]], (String) refs_[tokens_[pos + 1]],
+                (String) refs_[tokens_[pos + 2]], (String) refs_[tokens_[pos + 3]]);
+        return pos + 4;
+    }
+
+    private int readErrorLocation(final int pos) {
+        final ErrorLocation location = errorLocation_;
+        location.lineNumber_ = tokens_[pos];
+        location.columnNumber_ = tokens_[pos + 1];
+        location.characterOffset_ = tokens_[pos + 2];
+        location.publicId_ = (String) refs_[tokens_[pos + 3]];
+        location.literalSystemId_ = (String) refs_[tokens_[pos + 4]];
+        location.baseSystemId_ = (String) refs_[tokens_[pos + 5]];
+        location.systemId_ = (String) refs_[tokens_[pos + 6]];
+        location.encoding_ = (String) refs_[tokens_[pos + 7]];
+        location.xmlVersion_ = (String) refs_[tokens_[pos + 8]];
+        return pos + 9;
+    }
+
+    private int readAttributes(final int start) {
+        attributes_.removeAllAttributes();
+
+        int pos = start;
+        final int length = tokens_[pos++];
+        for (int i = 0; i < length; i++) {
+            pos = readQName(pos, attrQName_);
+            final String type = (String) refs_[tokens_[pos]];
+            final String value = (String) refs_[tokens_[pos + 1]];
+            final String nonNormalizedValue = (String) refs_[tokens_[pos + 2]];
+            final boolean specified = tokens_[pos + 3] != 0;
+            pos += 4;
+
+            if (nonNormalizedValue != null && !nonNormalizedValue.equals(value)) {
+                attributes_.addAttribute(attrQName_, type, value, nonNormalizedValue, specified);
+            }
+            else {
+                attributes_.addAttribute(attrQName_, type, value, specified);
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * The scanner location of a replayed problem.
+     */
+    private static final class ErrorLocation implements XMLLocator {
+        private int lineNumber_;
+        private int columnNumber_;
+        private int characterOffset_;
+        private String publicId_;
+        private String literalSystemId_;
+        private String baseSystemId_;
+        private String systemId_;
+        private String encoding_;
+        private String xmlVersion_;
+
+        @Override
+        public int getLineNumber() {
+            return lineNumber_;
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return columnNumber_;
+        }
+
+        @Override
+        public int getCharacterOffset() {
+            return characterOffset_;
+        }
+
+        @Override
+        public String getPublicId() {
+            return publicId_;
+        }
+
+        @Override
+        public String getLiteralSystemId() {
+            return literalSystemId_;
+        }
+
+        @Override
+        public String getBaseSystemId() {
+            return baseSystemId_;
+        }
+
+        @Override
+        public String getSystemId() {
+            return systemId_;
+        }
+
+        @Override
+        public String getEncoding() {
+            return encoding_;
+        }
+
+        @Override
+        public String getXMLVersion() {
+            return xmlVersion_;
+        }
+    }
+}
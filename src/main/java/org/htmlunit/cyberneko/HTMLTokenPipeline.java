@@ -0,0 +1,557 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLDocumentHandler;
+import org.htmlunit.cyberneko.xerces.xni.XMLLocator;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentSource;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLParseException;
+
+/**
+ * Runs the scanner and the rest of the pipeline on two threads. Placed
+ * between the scanner and the tag balancer, the scanner (running on an
+ * executor thread) fills {@link HTMLTokenBuffer}s; full buffers are passed
+ * through a bounded single producer single consumer queue to the parsing
+ * thread, which replays them into the tag balancer, the filters and the
+ * document handler. The replayed buffers are reused.
+ * <p>
+ * The scanner reports its problems to the pipeline as well; they are
+ * replayed with the events, so the error reporter and the error handler
+ * are only called on the parsing thread.
+ * <p>
+ * If no pipelined scan is running the events are passed through directly
+ * (e.g. for pull parsing).
+ *
+ * @author Ronald Brill
+ */
+final class HTMLTokenPipeline implements XMLDocumentHandler, HTMLErrorReporter {
+
+    /** The number of token buffers per pipeline. */
+    static final int BUFFER_COUNT = 4;
+
+    /** The time to wait for the executor to start the scanner. */
+    static final long START_TIMEOUT_MILLIS = 100;
+
+    private static final int PENDING = 0;
+    private static final int STARTED = 1;
+    private static final int SEQUENTIAL = 2;
+
+    private final HTMLScanner scanner_;
+
+    private final BlockingQueue<HTMLTokenBuffer> filled_ = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final BlockingQueue<HTMLTokenBuffer> free_ = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final Semaphore synced_ = new Semaphore(0);
+
+    private XMLDocumentHandler documentHandler_;
+    private XMLDocumentSource documentSource_;
+    private HTMLErrorReporter errorReporter_;
+
+    /** The scanner location of the problem replayed on the parsing thread. */
+    private XMLLocator errorLocation_;
+
+    /** The buffer filled by the scanner. */
+    private HTMLTokenBuffer current_;
+
+    private volatile boolean running_;
+    private volatile boolean stopped_;
+    private boolean stopFinishDocument_;
+
+    HTMLTokenPipeline(final HTMLScanner scanner) {
+        scanner_ = scanner;
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            free_.add(new HTMLTokenBuffer());
+        }
+    }
+
+    /**
+     * Scans the whole document on a thread of the executor and replays the
+     * events on the calling thread.
+     * <p>
+     * The scanner needs a thread of its own. If the executor runs the task on
+     * the calling thread (e.g. a direct executor) or does not start it within
+     * {@link #START_TIMEOUT_MILLIS} (e.g. a saturated pool the parsing thread
+     * belongs to) the document is scanned on the calling thread without
+     * pipelining; a task started later does nothing.
+     *
+     * @param executor the executor for the scanner
+     * @throws XNIException if the scanner or the pipeline fails
+     * @throws IOException in case of io problems
+     */
+    void scanDocument(final Executor executor) throws XNIException, IOException {
+        stopped_ = false;
+        stopFinishDocument_ = false;
+        current_ = free_.remove();
+        running_ = true;
+
+        final Thread consumer = Thread.currentThread();
+        final AtomicInteger state = new AtomicInteger(PENDING);
+        final CountDownLatch started = new CountDownLatch(1);
+        try {
+            executor.execute(() -> produce(consumer, state, started));
+        }
+        catch (final RuntimeException e) {
+            running_ = false;
+            free_.add(current_);
+            throw e;
+        }
+
+        try {
+            started.await(START_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (state.compareAndSet(PENDING, SEQUENTIAL)) {
+                running_ = false;
+                free_.add(current_);
+                throw new XNIException(e);
+            }
+            stopped_ = true;
+            drain();
+            throw new XNIException(e);
+        }
+
+        if (state.compareAndSet(PENDING, SEQUENTIAL) || state.get() == SEQUENTIAL) {
+            running_ = false;
+            free_.add(current_);
+            current_ = null;
+            scanner_.scanDocument(true);
+            return;
+        }
+
+        Throwable failure = null;
+        boolean ended = false;
+        try {
+            while (true) {
+                final HTMLTokenBuffer buffer = filled_.take();
+                if (!stopped_ && failure == null) {
+                    try {
+                        ended |= buffer.replay(documentHandler_, this, () -> stopped_);
+                    }
+                    catch (final RuntimeException | Error e) {
+                        // let the scanner finish, the buffers have to come back
+                        failure = e;
+                        stopped_ = true;
+                    }
+                }
+
+                final boolean last = buffer.last_;
+                if (last && failure == null) {
+                    failure = buffer.failure_;
+                }
+                recycle(buffer);
+                if (last) {
+                    break;
+                }
+            }
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped_ = true;
+            drain();
+            throw new XNIException(e);
+        }
+        finally {
+            running_ = false;
+        }
+
+        if (failure == null && stopped_ && stopFinishDocument_ && !ended) {
+            documentHandler_.endDocument(null);
+        }
+        if (failure instanceof IOException e) {
+            throw e;
+        }
+        if (failure instanceof RuntimeException e) {
+            throw e;
+        }
+        if (failure instanceof Error e) {
+            throw e;
+        }
+    }
+
+    /** The scanner side, running on the executor. */
+    private void produce(final Thread consumer, final AtomicInteger state, final CountDownLatch started) {
+        if (Thread.currentThread() == consumer) {
+            // no thread of its own, the parsing thread does the scan
+            state.compareAndSet(PENDING, SEQUENTIAL);
+            started.countDown();
+            return;
+        }
+        if (!state.compareAndSet(PENDING, STARTED)) {
+            // too late, the parsing thread has already scanned the document
+            return;
+        }
+        started.countDown();
+
+        Throwable failure = null;
+        try {
+            scanner_.scanDocument(true);
+        }
+        catch (final Throwable e) {
+            failure = e;
+        }
+
+        // hand over the last buffer even if interrupted, the parsing thread waits for it;
+        // current_ is null if interrupted while waiting for a free buffer
+        boolean interrupted = false;
+        HTMLTokenBuffer last = current_;
+        current_ = null;
+        while (true) {
+            try {
+                if (last == null) {
+                    last = free_.take();
+                }
+                last.last_ = true;
+                last.failure_ = failure;
+                filled_.put(last);
+                break;
+            }
+            catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Discards the buffers of a stopped scan until the scanner has finished,
+     * to get all buffers back before the next scan. Called with
+     * {@link #stopped_} set, the scanner stops at its next event.
+     */
+    private void drain() {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                final HTMLTokenBuffer buffer;
+                try {
+                    buffer = filled_.take();
+                }
+                catch (final InterruptedException e) {
+                    interrupted = true;
+                    continue;
+                }
+                final boolean last = buffer.last_;
+                recycle(buffer);
+                if (last) {
+                    return;
+                }
+            }
+        }
+        finally {
+            running_ = false;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void recycle(final HTMLTokenBuffer buffer) {
+        if (buffer.sync_) {
+            synced_.release();
+        }
+        buffer.clear();
+        free_.add(buffer);
+    }
+
+    /**
+     * @return true while a pipelined scan is running
+     */
+    boolean isRunning() {
+        return running_;
+    }
+
+    /**
+     * Stops the pipelined scan; called from the parsing thread.
+     *
+     * @param finishDocument if true the endDocument event is still sent
+     */
+    void stop(final boolean finishDocument) {
+        stopFinishDocument_ = finishDocument;
+        stopped_ = true;
+    }
+
+    /**
+     * Called by the scanner: waits until all events scanned so far have been
+     * processed by the rest of the pipeline, to read its current state.
+     */
+    void sync() {
+        if (!running_) {
+            return;
+        }
+
+        current_.sync_ = true;
+        flush();
+        try {
+            synced_.acquire();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XNIException(e);
+        }
+    }
+
+    private void flush() {
+        try {
+            filled_.put(current_);
+            current_ = null;
+            current_ = free_.take();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XNIException(e);
+        }
+    }
+
+    /**
+     * @return true if the event has to be passed to the buffer
+     */
+    private boolean buffered() {
+        if (!running_) {
+            return false;
+        }
+        if (stopped_) {
+            scanner_.stopScanning(false);
+        }
+        return true;
+    }
+
+    private void written() {
+        if (current_.isFull()) {
+            flush();
+        }
+    }
+
+    /**
+     * Reports a problem found by the scanner; called on the parsing thread.
+     *
+     * @param warning true for a warning, false for an error
+     * @param key the message key
+     * @param args the message arguments
+     * @param location the location of the scanner when it found the problem
+     */
+    void replayError(final boolean warning, final String key, final Object[] args, final XMLLocator location) {
+        errorLocation_ = location;
+        try {
+            if (warning) {
+                errorReporter_.reportWarning(key, args);
+            }
+            else {
+                errorReporter_.reportError(key, args);
+            }
+        }
+        finally {
+            errorLocation_ = null;
+        }
+    }
+
+    /**
+     * @return the scanner location of the problem currently reported on the
+     *         parsing thread or null
+     */
+    XMLLocator getErrorLocation() {
+        return errorLocation_;
+    }
+
+    @Override
+    public String formatMessage(final String key, final Object[] args) {
+        return errorReporter_.formatMessage(key, args);
+    }
+
+    @Override
+    public void reportWarning(final String key, final Object[] args) throws XMLParseException {
+        if (buffered()) {
+            current_.error(true, key, args, scanner_);
+            written();
+            return;
+        }
+        errorReporter_.reportWarning(key, args);
+    }
+
+    @Override
+    public void reportError(final String key, final Object[] args) throws XMLParseException {
+        if (buffered()) {
+            current_.error(false, key, args, scanner_);
+            written();
+            return;
+        }
+        errorReporter_.reportError(key, args);
+    }
+
+    @Override
+    public void startDocument(final XMLLocator locator, final String encoding, final NamespaceContext nscontext,
+            final Augmentations augs) throws XNIException {
+        if (buffered()) {
+            current_.startDocument(locator, encoding, nscontext, augs);
+            written();
+            return;
+        }
+        documentHandler_.startDocument(locator, encoding, nscontext, augs);
+    }
+
+    @Override
+    public void xmlDecl(final String version, final String encoding, final String standalone,
+            final Augmentations augs) throws XNIException {
+        if (buffered()) {
+            current_.xmlDecl(version, encoding, standalone, augs);
+            written();
+            return;
+        }
+        documentHandler_.xmlDecl(version, encoding, standalone, augs);
+    }
+
+    @Override
+    public void doctypeDecl(final String rootElement, final String publicId, final String systemId,
+            final Augmentations augs) throws XNIException {
+        if (buffered()) {
+            current_.doctypeDecl(rootElement, publicId, systemId, augs);
+            written();
+            return;
+        }
+        documentHandler_.doctypeDecl(rootElement, publicId, systemId, augs);
+    }
+
+    @Override
+    public void comment(final XMLString text, final Augmentations augs) throws XNIException {
+        if (buffered()) {
+            current_.comment(text, augs);
+            written();
+            return;
+        }
+        documentHandler_.comment(text, augs);
+    }
+
+    @Override
+    public void processingInstruction(final String target, final XMLString data, final Augmentations augs)
+            throws XNIException {
+        if (buffered()) {
+            current_.processingInstruction(target, data, augs);
+            written();
+            return;
+        }
+        documentHandler_.processingInstruction(target, data, augs);
+    }
+
+    @Override
+    public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+            throws XNIException {
+        if (buffered()) {
+            current_.startElement(element, attributes, augs);
+            written();
+            return;
+        }
+        documentHandler_.startElement(element, attributes, augs);
+    }
+
+    @Override
+    public void emptyElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+            throws XNIException {
+        if (buffered()) {
+            current_.emptyElement(element, attributes, augs);
+            written();
+            return;
+        }
+        documentHandler_.emptyElement(element, attributes, augs);
+    }
+
+    @Override
+    public void characters(final XMLString text, final Augmentations augs) throws XNIException {
+        if (buffered()) {
+            current_.characters(text, augs);
+            written();
+            return;
+        }
+        documentHandler_.characters(text, augs);
+    }
+
+    @Override
+    public void endElement(final QName element, final Augmentations augs) throws XNIException {
+        if (buffered()) {
+            current_.endElement(element, augs);
+            written();
+            return;
+        }
+        documentHandler_.endElement(element, augs);
+    }
+
+    @Override
+    public void startCDATA(final Augmentations augs) throws XNIException {
+        if (buffered()) {
+            current_.startCDATA(augs);
+            written();
+            return;
+        }
+        documentHandler_.startCDATA(augs);
+    }
+
+    @Override
+    public void endCDATA(final Augmentations augs) throws XNIException {
+        if (buffered()) {
+            current_.endCDATA(augs);
+            written();
+            return;
+        }
+        documentHandler_.endCDATA(augs);
+    }
+
+    @Override
+    public void endDocument(final Augmentations augs) throws XNIException {
+        if (buffered()) {
+            current_.endDocument(augs);
+            written();
+            return;
+        }
+        documentHandler_.endDocument(augs);
+    }
+
+    /**
+     * @param handler the first stage after the scanner
+     */
+    public void setDocumentHandler(final XMLDocumentHandler handler) {
+        documentHandler_ = handler;
+    }
+
+    /**
+     * @param errorReporter the error reporter getting the problems of the scanner
+     */
+    void setErrorReporter(final HTMLErrorReporter errorReporter) {
+        errorReporter_ = errorReporter;
+    }
+
+    @Override
+    public void setDocumentSource(final XMLDocumentSource source) {
+        documentSource_ = source;
+    }
+
+    @Override
+    public XMLDocumentSource getDocumentSource() {
+        return documentSource_;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Java Flight Recorder events emitted by the parser. The event classes
+ * are only loaded if the jdk.jfr module is available (it is optional for this
+ * module); callers have to check {@link #AVAILABLE} first. Every event is only
+ * filled and committed if it is enabled in the running recording.
+ *
+ * @author Ronald Brill
+ */
+final class JfrEvents {
+
+    /** True if the jdk.jfr module is available. */
+    static final boolean AVAILABLE = isAvailable();
+
+    /**
+     * Minimum number of elements closed implicitly by one end tag to emit a
+     * {@link TagBalancerRecovery} event.
+     */
+    static final int DEEP_CLOSE_CASCADE = 8;
+
+    private JfrEvents() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        }
+        catch (final ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts the document parsed event.
+     *
+     * @param systemId the system id of the document
+     * @return the started event or null if the event is not enabled
+     */
+    static DocumentParsed beginDocument(final String systemId) {
+        final DocumentParsed event = new DocumentParsed();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.systemId = systemId;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the document parsed event.
+     *
+     * @param event the event started by {@link #beginDocument(String)}
+     * @param scanner the scanner of the document
+     */
+    static void endDocument(final DocumentParsed event, final HTMLScanner scanner) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.encoding = scanner.getEncoding();
+            event.characters = scanner.getCharacterOffset();
+            event.elements = scanner.fElementCount;
+            event.commit();
+        }
+    }
+
+    static void encodingChanged(final String previousEncoding, final String encoding, final int playbackBytes) {
+        final EncodingChange event = new EncodingChange();
+        if (event.shouldCommit()) {
+            event.previousEncoding = previousEncoding;
+            event.encoding = encoding;
+            event.playbackBytes = playbackBytes;
+            event.commit();
+        }
+    }
+
+    static void tagBalancerRecovery(final String element, final int closedElements) {
+        final TagBalancerRecovery event = new TagBalancerRecovery();
+        if (event.shouldCommit()) {
+            event.element = element;
+            event.closedElements = closedElements;
+            event.commit();
+        }
+    }
+
+    @Name("org.htmlunit.cyberneko.DocumentParsed")
+    @Label("Document Parsed")
+    @Category({"HtmlUnit", "Neko"})
+    @Description("An HTML document has been parsed")
+    static final class DocumentParsed extends Event {
+        @Label("System Id")
+        String systemId;
+
+        @Label("Encoding")
+        String encoding;
+
+        @Label("Characters")
+        @Description("Number of characters of the document")
+        int characters;
+
+        @Label("Elements")
+        @Description("Number of start tags of the document")
+        int elements;
+    }
+
+    @Name("org.htmlunit.cyberneko.EncodingChange")
+    @Label("Encoding Change")
+    @Category({"HtmlUnit", "Neko"})
+    @Description("The encoding was changed by a meta tag; the bytes read so far are read again")
+    static final class EncodingChange extends Event {
+        @Label("Previous Encoding")
+        String previousEncoding;
+
+        @Label("Encoding")
+        String encoding;
+
+        @Label("Playback")
+        @DataAmount
+        int playbackBytes;
+    }
+
+    @Name("org.htmlunit.cyberneko.TagBalancerRecovery")
+    @Label("Tag Balancer Recovery")
+    @Category({"HtmlUnit", "Neko"})
+    @Description("An end tag closed many open elements")
+    static final class TagBalancerRecovery extends Event {
+        @Label("Element")
+        String element;
+
+        @Label("Closed Elements")
+        @Description("Number of elements closed implicitly")
+        int closedElements;
+    }
+}
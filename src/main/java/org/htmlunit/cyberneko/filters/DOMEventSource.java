@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.filters;
+
+import org.htmlunit.cyberneko.HTMLElements;
+import org.htmlunit.cyberneko.HTMLElementsProvider;
+import org.htmlunit.cyberneko.xerces.util.NamespaceSupport;
+import org.htmlunit.cyberneko.xerces.util.XMLAttributesImpl;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLDocumentHandler;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentSource;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A document source emitting the document events for an existing DOM tree,
+ * e.g. to feed a parsed and modified document into a filter chain without
+ * serializing and parsing it again.
+ * <p>
+ * The tree is walked without recursion using the parent and sibling links
+ * of the nodes, the depth of the tree is not limited. Like the scanner, the
+ * source reuses its {@link QName}, attributes and {@link XMLString} objects
+ * for all events; handlers have to copy the data they want to keep.
+ * Childless elements with an empty content model (like br or img) are
+ * reported as empty elements. No augmentations and no locator are passed
+ * to the handler.
+ * <p>
+ * Usage:
+ * <pre>
+ * final DOMEventSource source = new DOMEventSource();
+ * source.setDocumentHandler(filter);
+ * source.walk(document);
+ * </pre>
+ *
+ * @author Ronald Brill
+ */
+public class DOMEventSource implements XMLDocumentSource {
+
+    private final HTMLElementsProvider htmlElements_;
+
+    private XMLDocumentHandler documentHandler_;
+
+    private final NamespaceSupport namespaceContext_ = new NamespaceSupport();
+    private final QName qName_ = new QName();
+    private final QName attrQName_ = new QName();
+    private final XMLAttributesImpl attributes_ = new XMLAttributesImpl();
+    private final XMLString text_ = new XMLString();
+
+    /** Ctor. */
+    public DOMEventSource() {
+        this(new HTMLElements());
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param htmlElements the {@link HTMLElementsProvider} used to detect the empty elements
+     */
+    public DOMEventSource(final HTMLElementsProvider htmlElements) {
+        htmlElements_ = htmlElements;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDocumentHandler(final XMLDocumentHandler handler) {
+        documentHandler_ = handler;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public XMLDocumentHandler getDocumentHandler() {
+        return documentHandler_;
+    }
+
+    /**
+     * Emits the events for the given node and its subtree; usually a document,
+     * a document fragment or an element. The events are always enclosed in
+     * startDocument and endDocument.
+     *
+     * @param node the root of the tree to walk
+     * @throws XNIException if the handler fails
+     */
+    public void walk(final Node node) throws XNIException {
+        final XMLDocumentHandler handler = documentHandler_;
+
+        namespaceContext_.reset();
+        handler.startDocument(null, null, namespaceContext_, null);
+
+        Node current = node;
+        while (true) {
+            final Node child = current.getFirstChild();
+            if (!startNode(handler, current, child == null)) {
+                current = child;
+                continue;
+            }
+
+            // no children, go up until there is a next sibling
+            while (true) {
+                endNode(handler, current);
+                if (current == node) {
+                    handler.endDocument(null);
+                    return;
+                }
+
+                final Node sibling = current.getNextSibling();
+                if (sibling != null) {
+                    current = sibling;
+                    break;
+                }
+                current = current.getParentNode();
+            }
+        }
+    }
+
+    /**
+     * Emits the start events of the node.
+     *
+     * @return true if the node was reported completely (the node has no children)
+     */
+    private boolean startNode(final XMLDocumentHandler handler, final Node node, final boolean noChildren) {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                setQName(qName_, node);
+                setAttributes(node.getAttributes());
+                if (noChildren && isEmptyElement(node)) {
+                    handler.emptyElement(qName_, attributes_, null);
+                    // nothing to end
+                    return true;
+                }
+                handler.startElement(qName_, attributes_, null);
+                break;
+
+            case Node.TEXT_NODE:
+                handler.characters(text(node.getNodeValue()), null);
+                break;
+
+            case Node.CDATA_SECTION_NODE:
+                handler.startCDATA(null);
+                handler.characters(text(node.getNodeValue()), null);
+                handler.endCDATA(null);
+                break;
+
+            case Node.COMMENT_NODE:
+                handler.comment(text(node.getNodeValue()), null);
+                break;
+
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                handler.processingInstruction(node.getNodeName(), text(node.getNodeValue()), null);
+                break;
+
+            case Node.DOCUMENT_TYPE_NODE:
+                final DocumentType doctype = (DocumentType) node;
+                handler.doctypeDecl(doctype.getName(), doctype.getPublicId(), doctype.getSystemId(), null);
+                break;
+
+            default:
+                // documents, fragments and entity references only have children
+                break;
+        }
+        return noChildren;
+    }
+
+    private void endNode(final XMLDocumentHandler handler, final Node node) {
+        if (node.getNodeType() == Node.ELEMENT_NODE
+                && (node.hasChildNodes() || !isEmptyElement(node))) {
+            setQName(qName_, node);
+            handler.endElement(qName_, null);
+        }
+    }
+
+    private boolean isEmptyElement(final Node node) {
+        final HTMLElements.Element element = htmlElements_.getElement(node.getNodeName(), null);
+        return element != null && element.isEmpty();
+    }
+
+    private void setAttributes(final NamedNodeMap attributes) {
+        attributes_.removeAllAttributes();
+
+        final int length = attributes == null ? 0 : attributes.getLength();
+        for (int i = 0; i < length; i++) {
+            final Attr attr = (Attr) attributes.item(i);
+            setQName(attrQName_, attr);
+            attributes_.addAttribute(attrQName_, "CDATA", attr.getValue(), attr.getSpecified());
+        }
+    }
+
+    private static void setQName(final QName qname, final Node node) {
+        final String name = node.getNodeName();
+        final String localName = node.getLocalName();
+        qname.setValues(node.getPrefix(), localName == null ? name : localName, name, node.getNamespaceURI());
+    }
+
+    private XMLString text(final String value) {
+        text_.clear();
+        if (value != null) {
+            text_.append(value);
+        }
+        return text_;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.filters;
+
+import java.util.BitSet;
+
+import org.htmlunit.cyberneko.HTMLConfiguration;
+import org.htmlunit.cyberneko.HTMLElements;
+import org.htmlunit.cyberneko.HTMLElementsProvider;
+import org.htmlunit.cyberneko.HTMLScanner;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLLocator;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLConfigurationException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLParserConfiguration;
+
+/**
+ * A filter removing whole subtrees - the elements with the given
+ * {@link HTMLElements} codes together with their content - from the
+ * document.
+ * <p>
+ * The events of a removed subtree are dropped. Used with the
+ * {@link HTMLConfiguration} the filter additionally asks the
+ * {@link HTMLScanner} to fast-forward to the end tag of a removed element
+ * (see {@link HTMLScanner#skipElementContent(String)}). The raw text content
+ * of elements like script and style is not tokenized at all; the content of
+ * other elements (like svg) only as far as it consists of text and unknown
+ * elements, because the end of these elements may be implied by the markup
+ * that follows. The rest is scanned as usual and dropped.
+ * <p>
+ * Usage:
+ * <pre>
+ * final XMLDocumentFilter[] filters = {
+ *     new ElementSkippingFilter(HTMLElements.SCRIPT, HTMLElements.STYLE, HTMLElements.SVG)
+ * };
+ * parser.setProperty("http://cyberneko.org/html/properties/filters", filters);
+ * </pre>
+ *
+ * @author Ronald Brill
+ */
+public class ElementSkippingFilter extends DefaultFilter {
+
+    /** The codes of the elements to remove. */
+    private final BitSet skipped_ = new BitSet(HTMLElements.UNKNOWN + 1);
+
+    private HTMLElementsProvider htmlElements_;
+    private HTMLScanner scanner_;
+
+    /** The depth inside the removed subtree, 0 if outside. */
+    private int depth_;
+
+    /**
+     * Ctor.
+     *
+     * @param elementCodes the {@link HTMLElements} codes of the elements to remove
+     */
+    public ElementSkippingFilter(final short... elementCodes) {
+        for (final short code : elementCodes) {
+            skipped_.set(code);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset(final XMLParserConfiguration xmlParserConfiguration)
+        throws XMLConfigurationException {
+        super.reset(xmlParserConfiguration);
+
+        if (xmlParserConfiguration instanceof HTMLConfiguration htmlConfiguration) {
+            htmlElements_ = htmlConfiguration.getHtmlElements();
+            scanner_ = htmlConfiguration.getDocumentScanner();
+        }
+        else {
+            htmlElements_ = null;
+            scanner_ = null;
+        }
+    }
+
+    /** Start document. */
+    @Override
+    public void startDocument(final XMLLocator locator, final String encoding, final NamespaceContext nscontext,
+                        final Augmentations augs) throws XNIException {
+        depth_ = 0;
+        if (htmlElements_ == null) {
+            htmlElements_ = new HTMLElements();
+        }
+        super.startDocument(locator, encoding, nscontext, augs);
+    }
+
+    /** Comment. */
+    @Override
+    public void comment(final XMLString text, final Augmentations augs) throws XNIException {
+        if (depth_ == 0) {
+            super.comment(text, augs);
+        }
+    }
+
+    /** Processing instruction. */
+    @Override
+    public void processingInstruction(final String target, final XMLString data, final Augmentations augs)
+        throws XNIException {
+        if (depth_ == 0) {
+            super.processingInstruction(target, data, augs);
+        }
+    }
+
+    /** Start element. */
+    @Override
+    public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+        throws XNIException {
+        if (depth_ > 0) {
+            depth_++;
+            return;
+        }
+        if (isSkipped(element)) {
+            depth_ = 1;
+            if (scanner_ != null) {
+                scanner_.skipElementContent(element.getRawname());
+            }
+            return;
+        }
+        super.startElement(element, attributes, augs);
+    }
+
+    /** Empty element. */
+    @Override
+    public void emptyElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+        throws XNIException {
+        if (depth_ == 0 && !isSkipped(element)) {
+            super.emptyElement(element, attributes, augs);
+        }
+    }
+
+    /** Characters. */
+    @Override
+    public void characters(final XMLString text, final Augmentations augs) throws XNIException {
+        if (depth_ == 0) {
+            super.characters(text, augs);
+        }
+    }
+
+    /** Start CDATA section. */
+    @Override
+    public void startCDATA(final Augmentations augs) throws XNIException {
+        if (depth_ == 0) {
+            super.startCDATA(augs);
+        }
+    }
+
+    /** End CDATA section. */
+    @Override
+    public void endCDATA(final Augmentations augs) throws XNIException {
+        if (depth_ == 0) {
+            super.endCDATA(augs);
+        }
+    }
+
+    /** End element. */
+    @Override
+    public void endElement(final QName element, final Augmentations augs) throws XNIException {
+        if (depth_ > 0) {
+            depth_--;
+            return;
+        }
+        super.endElement(element, augs);
+    }
+
+    private boolean isSkipped(final QName element) {
+        final HTMLElements.Element elem = htmlElements_.getElement(element.getLocalpart(), null);
+        return skipped_.get(elem == null ? HTMLElements.UNKNOWN : elem.code);
+    }
+}
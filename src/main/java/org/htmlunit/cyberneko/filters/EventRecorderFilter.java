@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.filters;
+
+import java.util.Arrays;
+
+import org.htmlunit.cyberneko.util.FastHashMap;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLLocator;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+
+/**
+ * A filter recording the document events in a compact binary format while
+ * passing them to the next stage of the pipeline. Added as last filter (see
+ * {@link org.htmlunit.cyberneko.HTMLConfiguration#FILTERS}) it records the
+ * balanced event stream; the recording can be replayed into any document
+ * handler with an {@link EventReplayer} without scanning and balancing the
+ * document again.
+ * <p>
+ * The format is a sequence of one byte opcodes followed by their operands.
+ * Numbers are unsigned varints (7 bits per byte, least significant group
+ * first). Names and other short strings (element and attribute names, types,
+ * doctype ids) are stored once in a table built while writing; a reference
+ * is a varint: 0 is null, 1 defines the next table entry (the string follows
+ * inline) and every other value n refers to entry n - 2. Text is stored as
+ * its byte length followed by the UTF-8 bytes; unpaired surrogates are kept
+ * by encoding every UTF-16 char on its own (CESU-8).
+ * <p>
+ * Augmentations (e.g. the location of the events) are not recorded.
+ *
+ * @author Ronald Brill
+ */
+public class EventRecorderFilter extends DefaultFilter {
+
+    /** The format identifier at the start of every recording. */
+    static final byte[] MAGIC = {'N', 'X', 'E', 'V', 1};
+
+    static final byte START_DOCUMENT = 1;
+    static final byte XML_DECL = 2;
+    static final byte DOCTYPE_DECL = 3;
+    static final byte COMMENT = 4;
+    static final byte PROCESSING_INSTRUCTION = 5;
+    static final byte START_ELEMENT = 6;
+    static final byte EMPTY_ELEMENT = 7;
+    static final byte CHARACTERS = 8;
+    static final byte END_ELEMENT = 9;
+    static final byte START_CDATA = 10;
+    static final byte END_CDATA = 11;
+    static final byte END_DOCUMENT = 12;
+
+    /** Attribute flag: the attribute was specified. */
+    static final int ATTR_SPECIFIED = 1;
+
+    /** Attribute flag: the non-normalized value differs from the value. */
+    static final int ATTR_NON_NORMALIZED = 2;
+
+    /** The names table, maps every name to its index. */
+    private final FastHashMap<String, Integer> names_ = new FastHashMap<>(64, 0.5f);
+
+    private byte[] buffer_ = new byte[4096];
+    private int length_;
+
+    private byte[] recording_;
+
+    /**
+     * @return the recording of the last document or null if the end of the
+     *         document was not seen so far
+     */
+    public byte[] getRecording() {
+        return recording_;
+    }
+
+    /** Start document. */
+    @Override
+    public void startDocument(final XMLLocator locator, final String encoding, final NamespaceContext nscontext,
+                        final Augmentations augs) throws XNIException {
+        names_.clear();
+        length_ = 0;
+        recording_ = null;
+
+        ensureCapacity(MAGIC.length);
+        System.arraycopy(MAGIC, 0, buffer_, 0, MAGIC.length);
+        length_ = MAGIC.length;
+
+        writeOpcode(START_DOCUMENT);
+        writeName(encoding);
+
+        super.startDocument(locator, encoding, nscontext, augs);
+    }
+
+    /** XML declaration. */
+    @Override
+    public void xmlDecl(final String version, final String encoding, final String standalone, final Augmentations augs)
+        throws XNIException {
+        writeOpcode(XML_DECL);
+        writeName(version);
+        writeName(encoding);
+        writeName(standalone);
+
+        super.xmlDecl(version, encoding, standalone, augs);
+    }
+
+    /** Doctype declaration. */
+    @Override
+    public void doctypeDecl(final String root, final String publicId, final String systemId, final Augmentations augs)
+        throws XNIException {
+        writeOpcode(DOCTYPE_DECL);
+        writeName(root);
+        writeName(publicId);
+        writeName(systemId);
+
+        super.doctypeDecl(root, publicId, systemId, augs);
+    }
+
+    /** Comment. */
+    @Override
+    public void comment(final XMLString text, final Augmentations augs) throws XNIException {
+        writeOpcode(COMMENT);
+        writeText(text);
+
+        super.comment(text, augs);
+    }
+
+    /** Processing instruction. */
+    @Override
+    public void processingInstruction(final String target, final XMLString data, final Augmentations augs)
+        throws XNIException {
+        writeOpcode(PROCESSING_INSTRUCTION);
+        writeName(target);
+        writeText(data);
+
+        super.processingInstruction(target, data, augs);
+    }
+
+    /** Start element. */
+    @Override
+    public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+        throws XNIException {
+        writeOpcode(START_ELEMENT);
+        writeQName(element);
+        writeAttributes(attributes);
+
+        super.startElement(element, attributes, augs);
+    }
+
+    /** Empty element. */
+    @Override
+    public void emptyElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+        throws XNIException {
+        writeOpcode(EMPTY_ELEMENT);
+        writeQName(element);
+        writeAttributes(attributes);
+
+        super.emptyElement(element, attributes, augs);
+    }
+
+    /** Characters. */
+    @Override
+    public void characters(final XMLString text, final Augmentations augs) throws XNIException {
+        writeOpcode(CHARACTERS);
+        writeText(text);
+
+        super.characters(text, augs);
+    }
+
+    /** Start CDATA section. */
+    @Override
+    public void startCDATA(final Augmentations augs) throws XNIException {
+        writeOpcode(START_CDATA);
+
+        super.startCDATA(augs);
+    }
+
+    /** End CDATA section. */
+    @Override
+    public void endCDATA(final Augmentations augs) throws XNIException {
+        writeOpcode(END_CDATA);
+
+        super.endCDATA(augs);
+    }
+
+    /** End element. */
+    @Override
+    public void endElement(final QName element, final Augmentations augs) throws XNIException {
+        writeOpcode(END_ELEMENT);
+        writeQName(element);
+
+        super.endElement(element, augs);
+    }
+
+    /** End document. */
+    @Override
+    public void endDocument(final Augmentations augs) throws XNIException {
+        writeOpcode(END_DOCUMENT);
+        recording_ = Arrays.copyOf(buffer_, length_);
+
+        super.endDocument(augs);
+    }
+
+    private void writeQName(final QName qname) {
+        writeName(qname.getPrefix());
+        writeName(qname.getLocalpart());
+        writeName(qname.getRawname());
+        writeName(qname.getUri());
+    }
+
+    private void writeAttributes(final XMLAttributes attributes) {
+        final int length = attributes == null ? 0 : attributes.getLength();
+        writeVarint(length);
+
+        for (int i = 0; i < length; i++) {
+            final String value = attributes.getValue(i);
+            final String nonNormalizedValue = attributes.getNonNormalizedValue(i);
+
+            int flags = 0;
+            if (attributes.isSpecified(i)) {
+                flags |= ATTR_SPECIFIED;
+            }
+            final boolean nonNormalized = nonNormalizedValue != null && !nonNormalizedValue.equals(value);
+            if (nonNormalized) {
+                flags |= ATTR_NON_NORMALIZED;
+            }
+            writeVarint(flags);
+
+            writeQName(attributes.getName(i));
+            writeName(attributes.getType(i));
+            writeText(value);
+            if (nonNormalized) {
+                writeText(nonNormalizedValue);
+            }
+        }
+    }
+
+    private void writeOpcode(final byte opcode) {
+        ensureCapacity(1);
+        buffer_[length_++] = opcode;
+    }
+
+    private void writeVarint(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer_[length_++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer_[length_++] = (byte) value;
+    }
+
+    private void writeName(final String name) {
+        if (name == null) {
+            writeVarint(0);
+            return;
+        }
+
+        final Integer index = names_.get(name);
+        if (index == null) {
+            names_.put(name, names_.size());
+            writeVarint(1);
+            writeText(name);
+            return;
+        }
+        writeVarint(index + 2);
+    }
+
+    private void writeText(final CharSequence text) {
+        if (text == null) {
+            // stored like the empty string
+            writeVarint(0);
+            return;
+        }
+
+        final int length = text.length();
+        int byteLength = length;
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c >= 0x80) {
+                byteLength += c < 0x800 ? 1 : 2;
+            }
+        }
+
+        writeVarint(byteLength);
+        ensureCapacity(byteLength);
+
+        final byte[] buffer = buffer_;
+        int pos = length_;
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer[pos++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                buffer[pos++] = (byte) (0xC0 | (c >> 6));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else {
+                buffer[pos++] = (byte) (0xE0 | (c >> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        length_ = pos;
+    }
+
+    private void ensureCapacity(final int additional) {
+        final int required = length_ + additional;
+        if (required > buffer_.length) {
+            buffer_ = Arrays.copyOf(buffer_, Math.max(required, buffer_.length << 1));
+        }
+    }
+}
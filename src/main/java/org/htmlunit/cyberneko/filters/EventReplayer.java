@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.filters;
+
+import java.util.ArrayList;
+
+import org.htmlunit.cyberneko.xerces.util.XMLAttributesImpl;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLDocumentHandler;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentSource;
+
+/**
+ * A document source replaying a recording made by the
+ * {@link EventRecorderFilter} into the registered document handler.
+ * <p>
+ * Like the scanner, the replayer reuses its {@link QName}, attributes and
+ * {@link XMLString} objects for all events; handlers have to copy the data
+ * they want to keep. The names are created only once per recording, all
+ * events referring to the same name get the same String instance.
+ * No augmentations and no locator are passed to the handler.
+ * <p>
+ * Usage:
+ * <pre>
+ * final EventReplayer replayer = new EventReplayer(recorder.getRecording());
+ * replayer.setDocumentHandler(handler);
+ * replayer.replay();
+ * </pre>
+ *
+ * @author Ronald Brill
+ */
+public class EventReplayer implements XMLDocumentSource {
+
+    private final byte[] recording_;
+
+    private XMLDocumentHandler documentHandler_;
+
+    // state of the current replay
+    private final ArrayList<String> names_ = new ArrayList<>();
+    private final QName qName_ = new QName();
+    private final QName attrQName_ = new QName();
+    private final XMLAttributesImpl attributes_ = new XMLAttributesImpl();
+    private final XMLString text_ = new XMLString();
+    private char[] chars_ = new char[256];
+    private int pos_;
+
+    /**
+     * Ctor.
+     *
+     * @param recording the recording as returned by {@link EventRecorderFilter#getRecording()}
+     * @throws IllegalArgumentException if the data is not a recording
+     */
+    public EventReplayer(final byte[] recording) {
+        final byte[] magic = EventRecorderFilter.MAGIC;
+        if (recording == null || recording.length < magic.length) {
+            throw new IllegalArgumentException("Not an event recording");
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (recording[i] != magic[i]) {
+                throw new IllegalArgumentException("Not an event recording or unsupported version");
+            }
+        }
+        recording_ = recording;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDocumentHandler(final XMLDocumentHandler handler) {
+        documentHandler_ = handler;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public XMLDocumentHandler getDocumentHandler() {
+        return documentHandler_;
+    }
+
+    /**
+     * Replays all recorded events into the document handler. The recording can
+     * be replayed any number of times.
+     *
+     * @throws XNIException if the handler fails or the recording is corrupt
+     */
+    public void replay() throws XNIException {
+        final XMLDocumentHandler handler = documentHandler_;
+        names_.clear();
+        pos_ = EventRecorderFilter.MAGIC.length;
+
+        try {
+            while (pos_ < recording_.length) {
+                final byte opcode = recording_[pos_++];
+                switch (opcode) {
+                    case EventRecorderFilter.START_DOCUMENT:
+                        handler.startDocument(null, readName(), null, null);
+                        break;
+
+                    case EventRecorderFilter.XML_DECL:
+                        handler.xmlDecl(readName(), readName(), readName(), null);
+                        break;
+
+                    case EventRecorderFilter.DOCTYPE_DECL:
+                        handler.doctypeDecl(readName(), readName(), readName(), null);
+                        break;
+
+                    case EventRecorderFilter.COMMENT:
+                        handler.comment(readText(), null);
+                        break;
+
+                    case EventRecorderFilter.PROCESSING_INSTRUCTION:
+                        final String target = readName();
+                        handler.processingInstruction(target, readText(), null);
+                        break;
+
+                    case EventRecorderFilter.START_ELEMENT:
+                        readQName(qName_);
+                        readAttributes();
+                        handler.startElement(qName_, attributes_, null);
+                        break;
+
+                    case EventRecorderFilter.EMPTY_ELEMENT:
+                        readQName(qName_);
+                        readAttributes();
+                        handler.emptyElement(qName_, attributes_, null);
+                        break;
+
+                    case EventRecorderFilter.CHARACTERS:
+                        handler.characters(readText(), null);
+                        break;
+
+                    case EventRecorderFilter.END_ELEMENT:
+                        readQName(qName_);
+                        handler.endElement(qName_, null);
+                        break;
+
+                    case EventRecorderFilter.START_CDATA:
+                        handler.startCDATA(null);
+                        break;
+
+                    case EventRecorderFilter.END_CDATA:
+                        handler.endCDATA(null);
+                        break;
+
+                    case EventRecorderFilter.END_DOCUMENT:
+                        handler.endDocument(null);
+                        break;
+
+                    default:
+                        throw new XNIException("Corrupt event recording, unknown opcode " + opcode
+                                + " at position " + (pos_ - 1));
+                }
+            }
+        }
+        catch (final ArrayIndexOutOfBoundsException e) {
+            throw new XNIException("Corrupt event recording, unexpected end of data", e);
+        }
+    }
+
+    private void readQName(final QName qname) {
+        final String prefix = readName();
+        final String localpart = readName();
+        final String rawname = readName();
+        final String uri = readName();
+        qname.setValues(prefix, localpart, rawname, uri);
+    }
+
+    private void readAttributes() {
+        attributes_.removeAllAttributes();
+
+        final int length = readVarint();
+        for (int i = 0; i < length; i++) {
+            final int flags = readVarint();
+            readQName(attrQName_);
+            final String type = readName();
+            final String value = readText().toString();
+            final boolean specified = (flags & EventRecorderFilter.ATTR_SPECIFIED) != 0;
+
+            if ((flags & EventRecorderFilter.ATTR_NON_NORMALIZED) != 0) {
+                attributes_.addAttribute(attrQName_, type, value, readText().toString(), specified);
+            }
+            else {
+                attributes_.addAttribute(attrQName_, type, value, specified);
+            }
+        }
+    }
+
+    private int readVarint() {
+        final byte[] recording = recording_;
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = recording[pos_++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while (b < 0);
+        return value;
+    }
+
+    private String readName() {
+        final int ref = readVarint();
+        if (ref == 0) {
+            return null;
+        }
+        if (ref == 1) {
+            final String name = readText().toString();
+            names_.add(name);
+            return name;
+        }
+        return names_.get(ref - 2);
+    }
+
+    private XMLString readText() {
+        final int byteLength = readVarint();
+        if (chars_.length < byteLength) {
+            chars_ = new char[Math.max(byteLength, chars_.length << 1)];
+        }
+
+        final byte[] recording = recording_;
+        final char[] chars = chars_;
+        final int end = pos_ + byteLength;
+        if (end > recording.length) {
+            throw new ArrayIndexOutOfBoundsException(end);
+        }
+
+        int pos = pos_;
+        int length = 0;
+        while (pos < end) {
+            final int b = recording[pos++];
+            if (b >= 0) {
+                chars[length++] = (char) b;
+            }
+            else if ((b & 0xE0) == 0xC0) {
+                chars[length++] = (char) (((b & 0x1F) << 6) | (recording[pos++] & 0x3F));
+            }
+            else {
+                chars[length++] = (char) (((b & 0x0F) << 12)
+                                    | ((recording[pos++] & 0x3F) << 6)
+                                    | (recording[pos++] & 0x3F));
+            }
+        }
+        pos_ = pos;
+
+        text_.clear();
+        text_.append(chars, 0, length);
+        return text_;
+    }
+}
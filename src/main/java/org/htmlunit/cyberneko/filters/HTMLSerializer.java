@@ -0,0 +1,601 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.filters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+import java.util.Locale;
+
+import org.htmlunit.cyberneko.util.FastHashMap;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLLocator;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A fast HTML serializer writing UTF-8 or US-ASCII encoded bytes directly to
+ * an {@link OutputStream}. The serializer can be used as a filter (like the
+ * {@link HTMLWriterFilter} it passes all events to the next stage in the
+ * pipeline) or to serialize a DOM tree (see {@link #serialize(Node)}).
+ * <p>
+ * Compared to the {@link HTMLWriterFilter} the output is encoded into a
+ * reusable byte buffer without any {@link java.io.Writer}; only the
+ * characters {@code & < > "} (depending on the context) and the no-break
+ * space are escaped, runs of unescaped characters are copied in a tight loop.
+ * Characters not encodable in US-ASCII are written as numeric character
+ * references in text and attribute values; as these references are not
+ * decoded in raw text, comments, CDATA sections, processing instructions,
+ * names and the doctype, such characters fail with an
+ * {@link UnmappableCharacterException} there. The content of the raw text
+ * elements (script, style, ...) is written as is. Unlike the {@link HTMLWriterFilter} the charset of
+ * META tags is not changed.
+ *
+ * @author Ronald Brill
+ */
+public class HTMLSerializer extends DefaultFilter {
+
+    private static final byte[] AMP = {'&', 'a', 'm', 'p', ';'};
+    private static final byte[] LT = {'&', 'l', 't', ';'};
+    private static final byte[] GT = {'&', 'g', 't', ';'};
+    private static final byte[] QUOT = {'&', 'q', 'u', 'o', 't', ';'};
+    private static final byte[] NBSP = {'&', 'n', 'b', 's', 'p', ';'};
+
+    /** Escapes for the ASCII chars inside text content, null if not escaped. */
+    private static final byte[][] TEXT_ESCAPES = new byte[128][];
+
+    /** Escapes for the ASCII chars inside attribute values, null if not escaped. */
+    private static final byte[][] ATTRIBUTE_ESCAPES = new byte[128][];
+
+    /** No escaping at all. */
+    private static final byte[][] NO_ESCAPES = new byte[128][];
+
+    private static final String[] RAW_TEXT_ELEMENTS = {
+        "iframe", "noembed", "noframes", "plaintext", "script", "style", "xmp"
+    };
+
+    private static final String[] VOID_ELEMENTS = {
+        "area", "base", "basefont", "bgsound", "br", "col", "embed", "frame", "hr",
+        "img", "input", "keygen", "link", "meta", "param", "source", "track", "wbr"
+    };
+
+    private static final Integer RAW_TEXT = 1;
+    private static final Integer VOID = 2;
+
+    /** Raw text and void elements (lowercase and uppercase names). */
+    private static final FastHashMap<String, Integer> ELEMENT_TYPES = new FastHashMap<>(64, 0.5f);
+
+    static {
+        TEXT_ESCAPES['&'] = AMP;
+        TEXT_ESCAPES['<'] = LT;
+        TEXT_ESCAPES['>'] = GT;
+
+        ATTRIBUTE_ESCAPES['&'] = AMP;
+        ATTRIBUTE_ESCAPES['"'] = QUOT;
+
+        for (final String name : RAW_TEXT_ELEMENTS) {
+            ELEMENT_TYPES.put(name, RAW_TEXT);
+            ELEMENT_TYPES.put(name.toUpperCase(Locale.ROOT), RAW_TEXT);
+        }
+        for (final String name : VOID_ELEMENTS) {
+            ELEMENT_TYPES.put(name, VOID);
+            ELEMENT_TYPES.put(name.toUpperCase(Locale.ROOT), VOID);
+        }
+    }
+
+    private final OutputStream out_;
+    private final boolean ascii_;
+
+    private final byte[] buffer_ = new byte[8192];
+    private int length_;
+
+    /** Inside a raw text element. */
+    private boolean rawText_;
+
+    /** Inside a CDATA section. */
+    private boolean cdata_;
+
+    /**
+     * Constructs a serializer writing UTF-8.
+     *
+     * @param out the output stream to write to
+     */
+    public HTMLSerializer(final OutputStream out) {
+        this(out, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Constructs a serializer.
+     *
+     * @param out the output stream to write to
+     * @param charset the charset of the output, {@link StandardCharsets#UTF_8}
+     *        or {@link StandardCharsets#US_ASCII}
+     * @throws IllegalArgumentException if the charset is not supported
+     */
+    public HTMLSerializer(final OutputStream out, final Charset charset) {
+        if (!StandardCharsets.UTF_8.equals(charset) && !StandardCharsets.US_ASCII.equals(charset)) {
+            throw new IllegalArgumentException("Unsupported charset '" + charset + "'");
+        }
+        out_ = out;
+        ascii_ = StandardCharsets.US_ASCII.equals(charset);
+    }
+
+    /**
+     * Serializes the given node and its subtree; usually a document, a document
+     * fragment or an element. The output is flushed at the end.
+     * The tree is walked without recursion, the depth of the tree is not limited.
+     *
+     * @param node the node to serialize
+     * @throws IOException in case of error
+     */
+    public void serialize(final Node node) throws IOException {
+        Node current = node;
+        while (true) {
+            writeNodeStart(current);
+
+            final Node child = current.getFirstChild();
+            if (child != null) {
+                current = child;
+                continue;
+            }
+
+            // no children, go up until there is a next sibling
+            while (true) {
+                writeNodeEnd(current);
+                if (current == node) {
+                    flush();
+                    return;
+                }
+
+                final Node sibling = current.getNextSibling();
+                if (sibling != null) {
+                    current = sibling;
+                    break;
+                }
+                current = current.getParentNode();
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered output to the stream and flushes the stream.
+     *
+     * @throws IOException in case of error
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        out_.flush();
+    }
+
+    /** Start document. */
+    @Override
+    public void startDocument(final XMLLocator locator, final String encoding, final NamespaceContext nscontext,
+                        final Augmentations augs) throws XNIException {
+        length_ = 0;
+        rawText_ = false;
+        cdata_ = false;
+        super.startDocument(locator, encoding, nscontext, augs);
+    }
+
+    /** Doctype declaration. */
+    @Override
+    public void doctypeDecl(final String root, final String publicId, final String systemId, final Augmentations augs)
+        throws XNIException {
+        try {
+            writeDoctype(root, publicId, systemId);
+        }
+        catch (final IOException e) {
+            throw new XNIException(e);
+        }
+        super.doctypeDecl(root, publicId, systemId, augs);
+    }
+
+    /** Comment. */
+    @Override
+    public void comment(final XMLString text, final Augmentations augs) throws XNIException {
+        try {
+            writeAscii("<!--");
+            write(text, NO_ESCAPES);
+            writeAscii("-->");
+        }
+        catch (final IOException e) {
+            throw new XNIException(e);
+        }
+        super.comment(text, augs);
+    }
+
+    /** Processing instruction. */
+    @Override
+    public void processingInstruction(final String target, final XMLString data, final Augmentations augs)
+        throws XNIException {
+        try {
+            writeAscii("<?");
+            write(target, NO_ESCAPES);
+            if (data != null && data.length() > 0) {
+                writeByte(' ');
+                write(data, NO_ESCAPES);
+            }
+            writeByte('>');
+        }
+        catch (final IOException e) {
+            throw new XNIException(e);
+        }
+        super.processingInstruction(target, data, augs);
+    }
+
+    /** Start element. */
+    @Override
+    public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+        throws XNIException {
+        final String name = element.getRawname();
+        try {
+            writeStartTag(name, attributes);
+        }
+        catch (final IOException e) {
+            throw new XNIException(e);
+        }
+        rawText_ = getElementType(name) == RAW_TEXT;
+        super.startElement(element, attributes, augs);
+    }
+
+    /** Empty element. */
+    @Override
+    public void emptyElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+        throws XNIException {
+        final String name = element.getRawname();
+        try {
+            writeStartTag(name, attributes);
+            if (getElementType(name) != VOID) {
+                writeEndTag(name);
+            }
+        }
+        catch (final IOException e) {
+            throw new XNIException(e);
+        }
+        super.emptyElement(element, attributes, augs);
+    }
+
+    /** Characters. */
+    @Override
+    public void characters(final XMLString text, final Augmentations augs) throws XNIException {
+        try {
+            write(text, rawText_ || cdata_ ? NO_ESCAPES : TEXT_ESCAPES);
+        }
+        catch (final IOException e) {
+            throw new XNIException(e);
+        }
+        super.characters(text, augs);
+    }
+
+    /** Start CDATA section. */
+    @Override
+    public void startCDATA(final Augmentations augs) throws XNIException {
+        try {
+            writeAscii("<![CDATA[");
+        }
+        catch (final IOException e) {
+            throw new XNIException(e);
+        }
+        cdata_ = true;
+        super.startCDATA(augs);
+    }
+
+    /** End CDATA section. */
+    @Override
+    public void endCDATA(final Augmentations augs) throws XNIException {
+        try {
+            writeAscii("]]>");
+        }
+        catch (final IOException e) {
+            throw new XNIException(e);
+        }
+        cdata_ = false;
+        super.endCDATA(augs);
+    }
+
+    /** End element. */
+    @Override
+    public void endElement(final QName element, final Augmentations augs) throws XNIException {
+        final String name = element.getRawname();
+        try {
+            if (getElementType(name) != VOID) {
+                writeEndTag(name);
+            }
+        }
+        catch (final IOException e) {
+            throw new XNIException(e);
+        }
+        rawText_ = false;
+        super.endElement(element, augs);
+    }
+
+    /** End document. */
+    @Override
+    public void endDocument(final Augmentations augs) throws XNIException {
+        try {
+            flush();
+        }
+        catch (final IOException e) {
+            throw new XNIException(e);
+        }
+        super.endDocument(augs);
+    }
+
+    private void writeNodeStart(final Node node) throws IOException {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                writeStartTag(node.getNodeName(), node.getAttributes());
+                break;
+
+            case Node.TEXT_NODE:
+                final Node parent = node.getParentNode();
+                final boolean raw = parent != null
+                                        && parent.getNodeType() == Node.ELEMENT_NODE
+                                        && getElementType(parent.getNodeName()) == RAW_TEXT;
+                write(node.getNodeValue(), raw ? NO_ESCAPES : TEXT_ESCAPES);
+                break;
+
+            case Node.CDATA_SECTION_NODE:
+                writeAscii("<![CDATA[");
+                write(node.getNodeValue(), NO_ESCAPES);
+                writeAscii("]]>");
+                break;
+
+            case Node.COMMENT_NODE:
+                writeAscii("<!--");
+                write(node.getNodeValue(), NO_ESCAPES);
+                writeAscii("-->");
+                break;
+
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                writeAscii("<?");
+                write(node.getNodeName(), NO_ESCAPES);
+                final String data = node.getNodeValue();
+                if (data != null && !data.isEmpty()) {
+                    writeByte(' ');
+                    write(data, NO_ESCAPES);
+                }
+                writeByte('>');
+                break;
+
+            case Node.DOCUMENT_TYPE_NODE:
+                final DocumentType doctype = (DocumentType) node;
+                writeDoctype(doctype.getName(), doctype.getPublicId(), doctype.getSystemId());
+                break;
+
+            default:
+                // documents and fragments only have children,
+                // entities and entity references are not part of html documents
+                break;
+        }
+    }
+
+    private void writeNodeEnd(final Node node) throws IOException {
+        if (node.getNodeType() == Node.ELEMENT_NODE) {
+            final String name = node.getNodeName();
+            if (getElementType(name) != VOID) {
+                writeEndTag(name);
+            }
+        }
+    }
+
+    private void writeDoctype(final String root, final String publicId, final String systemId) throws IOException {
+        writeAscii("<!DOCTYPE ");
+        write(root, NO_ESCAPES);
+        if (publicId != null) {
+            writeAscii(" PUBLIC \"");
+            write(publicId, NO_ESCAPES);
+            writeByte('"');
+        }
+        if (systemId != null) {
+            if (publicId == null) {
+                writeAscii(" SYSTEM");
+            }
+            writeAscii(" \"");
+            write(systemId, NO_ESCAPES);
+            writeByte('"');
+        }
+        writeByte('>');
+    }
+
+    private void writeStartTag(final String name, final XMLAttributes attributes) throws IOException {
+        writeByte('<');
+        write(name, NO_ESCAPES);
+        final int length = attributes == null ? 0 : attributes.getLength();
+        for (int i = 0; i < length; i++) {
+            writeAttribute(attributes.getQName(i), attributes.getValue(i));
+        }
+        writeByte('>');
+    }
+
+    private void writeStartTag(final String name, final NamedNodeMap attributes) throws IOException {
+        writeByte('<');
+        write(name, NO_ESCAPES);
+        final int length = attributes == null ? 0 : attributes.getLength();
+        for (int i = 0; i < length; i++) {
+            final Attr attr = (Attr) attributes.item(i);
+            writeAttribute(attr.getName(), attr.getValue());
+        }
+        writeByte('>');
+    }
+
+    private void writeAttribute(final String name, final String value) throws IOException {
+        writeByte(' ');
+        write(name, NO_ESCAPES);
+        writeAscii("=\"");
+        write(value, ATTRIBUTE_ESCAPES);
+        writeByte('"');
+    }
+
+    private void writeEndTag(final String name) throws IOException {
+        writeAscii("</");
+        write(name, NO_ESCAPES);
+        writeByte('>');
+    }
+
+    private static Integer getElementType(final String name) {
+        final Integer type = ELEMENT_TYPES.get(name);
+        if (type == null
+                && name.length() > 1
+                && Character.isUpperCase(name.charAt(0)) != Character.isUpperCase(name.charAt(1))) {
+            // mixed case
+            return ELEMENT_TYPES.get(name.toLowerCase(Locale.ROOT));
+        }
+        return type;
+    }
+
+    private void write(final CharSequence text, final byte[][] escapes) throws IOException {
+        final int length = text.length();
+        int i = 0;
+        while (i < length) {
+            // copy the run of plain ascii chars
+            final byte[] buffer = buffer_;
+            int pos = length_;
+            final int limit = Math.min(length, i + buffer.length - pos);
+            while (i < limit) {
+                final char c = text.charAt(i);
+                if (c >= 0x80 || escapes[c] != null) {
+                    break;
+                }
+                buffer[pos++] = (byte) c;
+                i++;
+            }
+            length_ = pos;
+
+            if (i == limit) {
+                if (i < length) {
+                    flushBuffer();
+                }
+                continue;
+            }
+
+            final char c = text.charAt(i++);
+            if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                final char low = i < length ? text.charAt(i) : 0;
+                if (Character.isSurrogatePair(c, low)) {
+                    i++;
+                }
+                writeSurrogate(c, low, escapes);
+            }
+            else {
+                writeSpecial(c, escapes);
+            }
+        }
+    }
+
+    /** Writes an escaped ascii char or a non ascii char (no surrogate). */
+    private void writeSpecial(final char c, final byte[][] escapes) throws IOException {
+        if (c < 0x80) {
+            writeBytes(escapes[c]);
+        }
+        else if (c == 0xA0 && escapes != NO_ESCAPES) {
+            writeBytes(NBSP);
+        }
+        else if (ascii_) {
+            writeCharRef(c, escapes);
+        }
+        else {
+            ensureCapacity(3);
+            final byte[] buffer = buffer_;
+            if (c < 0x800) {
+                buffer[length_++] = (byte) (0xC0 | (c >> 6));
+                buffer[length_++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else {
+                buffer[length_++] = (byte) (0xE0 | (c >> 12));
+                buffer[length_++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[length_++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /** Writes a surrogate pair; an unpaired surrogate is replaced by U+FFFD. */
+    private void writeSurrogate(final char high, final char low, final byte[][] escapes) throws IOException {
+        if (!Character.isSurrogatePair(high, low)) {
+            writeSpecial('\uFFFD', escapes);
+            return;
+        }
+
+        final int codePoint = Character.toCodePoint(high, low);
+        if (ascii_) {
+            writeCharRef(codePoint, escapes);
+            return;
+        }
+
+        ensureCapacity(4);
+        final byte[] buffer = buffer_;
+        buffer[length_++] = (byte) (0xF0 | (codePoint >> 18));
+        buffer[length_++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buffer[length_++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buffer[length_++] = (byte) (0x80 | (codePoint & 0x3F));
+    }
+
+    /**
+     * Writes a numeric character reference; references are not decoded in
+     * raw text, comments and the like (unescaped contexts), there the
+     * character can not be written in US-ASCII at all.
+     */
+    private void writeCharRef(final int codePoint, final byte[][] escapes) throws IOException {
+        if (escapes == NO_ESCAPES) {
+            throw new UnmappableCharacterException(Character.charCount(codePoint));
+        }
+        writeAscii("&#");
+        writeAscii(Integer.toString(codePoint));
+        writeByte(';');
+    }
+
+    private void writeAscii(final String ascii) throws IOException {
+        final int length = ascii.length();
+        ensureCapacity(length);
+        final byte[] buffer = buffer_;
+        for (int i = 0; i < length; i++) {
+            buffer[length_++] = (byte) ascii.charAt(i);
+        }
+    }
+
+    private void writeBytes(final byte[] bytes) throws IOException {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer_, length_, bytes.length);
+        length_ += bytes.length;
+    }
+
+    private void writeByte(final char c) throws IOException {
+        ensureCapacity(1);
+        buffer_[length_++] = (byte) c;
+    }
+
+    /** Makes sure there is room for the given number of bytes (at most 64) in the buffer. */
+    private void ensureCapacity(final int required) throws IOException {
+        if (length_ + required > buffer_.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (length_ > 0) {
+            out_.write(buffer_, 0, length_);
+            length_ = 0;
+        }
+    }
+}
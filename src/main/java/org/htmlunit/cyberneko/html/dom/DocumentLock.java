@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.html.dom;
+
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Guards the methods of an {@link HTMLDocumentImpl} creating or moving the
+ * implied html, head and body elements. The actions are non-capturing method
+ * references of the document, they get the document (and the argument) passed.
+ * <p>
+ * This is the Java 17 version using the monitor of the document, like the
+ * synchronized methods used before; the multi-release jar contains a Java 21
+ * version using a {@link java.util.concurrent.locks.ReentrantLock}.
+ *
+ * @author Ronald Brill
+ */
+final class DocumentLock {
+
+    /**
+     * @param <T> the result type
+     * @param document the document
+     * @param action the action to run while holding the lock
+     * @return the result of the action
+     */
+    <T> T call(final HTMLDocumentImpl document, final Function<HTMLDocumentImpl, T> action) {
+        synchronized (document) {
+            return action.apply(document);
+        }
+    }
+
+    /**
+     * @param <A> the argument type
+     * @param <T> the result type
+     * @param document the document
+     * @param arg the argument of the action
+     * @param action the action to run while holding the lock
+     * @return the result of the action
+     */
+    <A, T> T call(final HTMLDocumentImpl document, final A arg, final BiFunction<HTMLDocumentImpl, A, T> action) {
+        synchronized (document) {
+            return action.apply(document, arg);
+        }
+    }
+
+    /**
+     * @param <A> the argument type
+     * @param document the document
+     * @param arg the argument of the action
+     * @param action the action to run while holding the lock
+     */
+    <A> void run(final HTMLDocumentImpl document, final A arg, final BiConsumer<HTMLDocumentImpl, A> action) {
+        synchronized (document) {
+            action.accept(document, arg);
+        }
+    }
+
+    /**
+     * Runs the action holding the lock and the monitor of the argument.
+     *
+     * @param <A> the argument type
+     * @param document the document
+     * @param arg the argument of the action
+     * @param action the action to run while holding the lock
+     */
+    <A> void runExclusive(final HTMLDocumentImpl document, final A arg, final BiConsumer<HTMLDocumentImpl, A> action) {
+        synchronized (document) {
+            synchronized (arg) {
+                action.accept(document, arg);
+            }
+        }
+    }
+}
@@ -15,6 +15,11 @@
  */
 package org.htmlunit.cyberneko.html.dom;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.htmlunit.cyberneko.xerces.dom.CoreDocumentImpl;
+import org.htmlunit.cyberneko.xerces.dom.TagNameIndex;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.html.HTMLAnchorElement;
@@ -44,6 +49,11 @@
  * result in traversal of the entire document tree and consume a considerable
  * amount of time.
  * <p>
+ * The document wide collections (anchors, forms, images, applets and links)
+ * are answered using the {@link TagNameIndex} of the document instead; only
+ * the elements having a matching tag name have to be checked. The candidates
+ * are cached until the subtree of the top level element changes.
+ * <p>
  * Note that synchronization on the traversed document cannot be achieved.
  * The document itself cannot be locked, and locking each traversed node is
  * likely to lead to a dead lock condition. Therefore, there is a chance of the
@@ -132,6 +142,27 @@ class HTMLCollectionImpl implements HTMLCollection {
      */
     private final Element topLevel_;
 
+    /**
+     * The tag names of the elements a document wide collection is looking for
+     * or null if the collection has to traverse the tree.
+     */
+    private final String[] indexedTagNames_;
+
+    /** The cached result of indexedCandidates(). */
+    private List<Element> candidates_;
+
+    /** The change count of the top level element the candidates are valid for. */
+    private int candidatesChanges_;
+
+    /** The candidates the last item is taken from. */
+    private List<Element> itemCandidates_;
+
+    /** The index of the last item returned by item(). */
+    private int itemIndex_;
+
+    /** The position of the last item in the candidates. */
+    private int itemPosition_;
+
     /**
      * Construct a new collection that retrieves element of the specific type
      * (<code>lookingFor</code>) from the specific document portion
@@ -146,6 +177,20 @@ class HTMLCollectionImpl implements HTMLCollection {
         }
         topLevel_ = topLevel;
         lookingFor_ = lookingFor;
+
+        if (topLevel.getOwnerDocument() instanceof CoreDocumentImpl) {
+            indexedTagNames_ = switch (lookingFor) {
+                case ANCHOR -> new String[] {"A"};
+                case FORM -> new String[] {"FORM"};
+                case IMAGE -> new String[] {"IMG"};
+                case APPLET -> new String[] {"APPLET", "OBJECT"};
+                case LINK -> new String[] {"A", "AREA"};
+                default -> null;
+            };
+        }
+        else {
+            indexedTagNames_ = null;
+        }
     }
 
     /**
@@ -156,6 +201,16 @@ class HTMLCollectionImpl implements HTMLCollection {
      */
     @Override
     public final int getLength() {
+        if (indexedTagNames_ != null) {
+            int length = 0;
+            for (final Element element : indexedCandidates()) {
+                if (isMember(element)) {
+                    length++;
+                }
+            }
+            return length;
+        }
+
         // Call recursive function on top-level element.
         return getLength(topLevel_);
     }
@@ -174,6 +229,31 @@ public final Node item(final int index) {
             throw new IllegalArgumentException("HTM012 Argument 'index' is negative.");
         }
 
+        if (indexedTagNames_ != null) {
+            final List<Element> candidates = indexedCandidates();
+            int remaining = index;
+            int position = 0;
+            // continue with the last item as long as the candidates are unchanged;
+            // this makes the usual loop over all items linear
+            if (candidates == itemCandidates_ && index >= itemIndex_) {
+                remaining = index - itemIndex_;
+                position = itemPosition_;
+            }
+            for ( ; position < candidates.size(); position++) {
+                final Element element = candidates.get(position);
+                if (isMember(element)) {
+                    if (remaining == 0) {
+                        itemCandidates_ = candidates;
+                        itemIndex_ = index;
+                        itemPosition_ = position;
+                        return element;
+                    }
+                    remaining--;
+                }
+            }
+            return null;
+        }
+
         // Call recursive function on top-level element.
         return item(topLevel_, new CollectionIndex(index));
     }
@@ -193,10 +273,86 @@ public final Node namedItem(final String name) {
             throw new NullPointerException("HTM013 Argument 'name' is null.");
         }
 
+        if (indexedTagNames_ != null) {
+            for (final Element element : indexedCandidates()) {
+                if (collectionMatch(element, name)) {
+                    return element;
+                }
+            }
+            return null;
+        }
+
         // Call recursive function on top-level element.
         return namedItem(topLevel_, name);
     }
 
+    /**
+     * Collects all descendants of the top level element having one of the
+     * indexed tag names in document order.
+     *
+     * @return the candidates
+     */
+    private List<Element> indexedCandidates() {
+        // the candidates only depend on the tag names in the subtree
+        final int changes = topLevel_ instanceof HTMLElementImpl element ? element.subtreeChanges() : -1;
+        if (candidates_ != null && changes != -1 && changes == candidatesChanges_) {
+            return candidates_;
+        }
+
+        final TagNameIndex index = ((CoreDocumentImpl) topLevel_.getOwnerDocument()).getTagNameIndex();
+        final TagNameIndex.Entry first = index.getElementsByTagName(indexedTagNames_[0]);
+        final TagNameIndex.Entry second = indexedTagNames_.length > 1
+                                            ? index.getElementsByTagName(indexedTagNames_[1]) : null;
+
+        final int firstLength = first.getLength();
+        final int secondLength = second == null ? 0 : second.getLength();
+        final List<Element> candidates = new ArrayList<>();
+
+        // merge both entries in document order
+        int i = 0;
+        int j = 0;
+        while (i < firstLength || j < secondLength) {
+            final Element element;
+            if (j >= secondLength || i < firstLength && first.getPosition(i) < second.getPosition(j)) {
+                element = first.item(i++);
+            }
+            else {
+                element = second.item(j++);
+            }
+
+            for (Node parent = element.getParentNode(); parent != null; parent = parent.getParentNode()) {
+                if (parent == topLevel_) {
+                    candidates.add(element);
+                    break;
+                }
+            }
+        }
+
+        candidates_ = candidates;
+        candidatesChanges_ = changes;
+        return candidates;
+    }
+
+    /**
+     * Returns true if the candidate is part of the collection. Like the
+     * traversing functions this does not count elements nested inside
+     * another matching element.
+     *
+     * @param candidate a descendant of the top level element
+     * @return true if the candidate is part of the collection
+     */
+    private boolean isMember(final Element candidate) {
+        if (!collectionMatch(candidate, null)) {
+            return false;
+        }
+        for (Node parent = candidate.getParentNode(); parent != topLevel_; parent = parent.getParentNode()) {
+            if (parent instanceof Element element && collectionMatch(element, null)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Recursive function returns the number of elements of a particular type
      * that exist under the top level element. This is a recursive function
@@ -16,11 +16,11 @@
 package org.htmlunit.cyberneko.html.dom;
 
 import java.io.StringWriter;
-import java.lang.reflect.Constructor;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.function.BiFunction;
 
 import org.htmlunit.cyberneko.filters.NamespaceBinder;
 import org.htmlunit.cyberneko.util.FastHashMap;
@@ -54,6 +54,14 @@
  * are direct document writing ({@link #open}, {@link #write}) and HTTP attribute
  * methods ({@link #getURL}, {@link #getCookie}).
  * <p>
+ * The methods creating or moving the implied html, head and body elements
+ * ({@link #getDocumentElement}, {@link #getHead}, {@link #getTitle},
+ * {@link #setTitle}, {@link #getBody}, {@link #setBody}) and
+ * {@link #getElementById} are mutually exclusive. On Java 17 they synchronize
+ * on the document; on Java 21 or later they use an internal lock that does not
+ * pin virtual threads, code synchronizing on the document does not exclude
+ * them there.
+ * <p>
  *
  * @author <a href="mailto:arkin@exoffice.com">Assaf Arkin</a>
  * @see org.w3c.dom.html.HTMLDocument
@@ -120,11 +128,17 @@ public class HTMLDocumentImpl extends DocumentImpl implements HTMLDocument {
     private StringWriter        writer_;
 
     /**
-     * Holds names and classes of HTML element types. When an element with a
-     * particular tag name is created, the matching {@link java.lang.Class}
-     * is used to create the element object. For example, &lt;A&gt; matches
-     * {@link HTMLAnchorElementImpl}. This static table is shared across all
-     * HTML documents.
+     * Guards the methods creating or moving the implied html, head and body
+     * elements and the id lookup (the monitor of the document on Java 17).
+     */
+    private final DocumentLock lock_ = new DocumentLock();
+
+    /**
+     * Holds names and factories of HTML element types. When an element with a
+     * particular tag name is created, the matching factory (the constructor of
+     * the element class) is used to create the element object. For example,
+     * &lt;A&gt; matches {@link HTMLAnchorElementImpl}. This static table is
+     * shared across all HTML documents.
      *
      * @see #createElement
      */
@@ -133,114 +147,99 @@ public class HTMLDocumentImpl extends DocumentImpl implements HTMLDocument {
     private static final FastHashMap<String, ElementTypesHTMLHolder> ELEMENT_TYPES_HTML_UPPER
                             = new FastHashMap<>(11, 0.5f);
 
-    /**
-     * Signature used to locate constructor of HTML element classes. This
-     * static array is shared across all HTML documents.
-     *
-     * @see #createElement
-     */
-    private static final Class<?>[] ELEMENT_CLASS_CTOR_SIGNATURE = new Class[] {HTMLDocumentImpl.class, String.class};
-
     static {
-        final Map<String, Class<? extends HTMLElementImpl>> tMap = new HashMap<>();
+        final Map<String, ElementTypesHTMLHolder> tMap = new HashMap<>();
 
         // register all HTML5 elements that are not deprecated as simple
         // HTMLElementImpl first and overwrite them later
         // https://developer.mozilla.org/en-US/docs/Web/HTML/Element
-        Arrays.stream(HTML5ELEMENTS).forEach(t -> tMap.put(t, HTMLElementImpl.class));
-
-        tMap.put("A", HTMLAnchorElementImpl.class);
-        tMap.put("APPLET", HTMLAppletElementImpl.class);
-        tMap.put("AREA", HTMLAreaElementImpl.class);
-        tMap.put("BASE",  HTMLBaseElementImpl.class);
-        tMap.put("BASEFONT", HTMLBaseFontElementImpl.class);
-        tMap.put("BLOCKQUOTE", HTMLQuoteElementImpl.class);
-        tMap.put("BODY", HTMLBodyElementImpl.class);
-        tMap.put("BR", HTMLBRElementImpl.class);
-        tMap.put("BUTTON", HTMLButtonElementImpl.class);
-        tMap.put("DEL", HTMLModElementImpl.class);
-        tMap.put("DIR", HTMLDirectoryElementImpl.class);
-        tMap.put("DIV",  HTMLDivElementImpl.class);
-        tMap.put("DL", HTMLDListElementImpl.class);
-        tMap.put("FIELDSET", HTMLFieldSetElementImpl.class);
-        tMap.put("FONT", HTMLFontElementImpl.class);
-        tMap.put("FORM", HTMLFormElementImpl.class);
-        tMap.put("FRAME", HTMLFrameElementImpl.class);
-        tMap.put("FRAMESET", HTMLFrameSetElementImpl.class);
-        tMap.put("HEAD", HTMLHeadElementImpl.class);
-        tMap.put("H1", HTMLHeadingElementImpl.class);
-        tMap.put("H2", HTMLHeadingElementImpl.class);
-        tMap.put("H3", HTMLHeadingElementImpl.class);
-        tMap.put("H4", HTMLHeadingElementImpl.class);
-        tMap.put("H5", HTMLHeadingElementImpl.class);
-        tMap.put("H6", HTMLHeadingElementImpl.class);
-        tMap.put("HR", HTMLHRElementImpl.class);
-        tMap.put("HTML", HTMLHtmlElementImpl.class);
-        tMap.put("IFRAME", HTMLIFrameElementImpl.class);
-        tMap.put("IMG", HTMLImageElementImpl.class);
-        tMap.put("INPUT", HTMLInputElementImpl.class);
-        tMap.put("INS", HTMLModElementImpl.class);
-        tMap.put("ISINDEX", HTMLIsIndexElementImpl.class);
-        tMap.put("LABEL", HTMLLabelElementImpl.class);
-        tMap.put("LEGEND", HTMLLegendElementImpl.class);
-        tMap.put("LI", HTMLLIElementImpl.class);
-        tMap.put("LINK", HTMLLinkElementImpl.class);
-        tMap.put("MAP", HTMLMapElementImpl.class);
-        tMap.put("MENU", HTMLMenuElementImpl.class);
-        tMap.put("META", HTMLMetaElementImpl.class);
-        tMap.put("OBJECT", HTMLObjectElementImpl.class);
-        tMap.put("OL", HTMLOListElementImpl.class);
-        tMap.put("OPTGROUP", HTMLOptGroupElementImpl.class);
-        tMap.put("OPTION", HTMLOptionElementImpl.class);
-        tMap.put("P", HTMLParagraphElementImpl.class);
-        tMap.put("PARAM", HTMLParamElementImpl.class);
-        tMap.put("PRE", HTMLPreElementImpl.class);
-        tMap.put("Q", HTMLQuoteElementImpl.class);
-        tMap.put("SCRIPT", HTMLScriptElementImpl.class);
-        tMap.put("SELECT", HTMLSelectElementImpl.class);
-        tMap.put("STYLE", HTMLStyleElementImpl.class);
-        tMap.put("TABLE", HTMLTableElementImpl.class);
-        tMap.put("CAPTION", HTMLTableCaptionElementImpl.class);
-        tMap.put("TD", HTMLTableCellElementImpl.class);
-        tMap.put("TH", HTMLTableCellElementImpl.class);
-        tMap.put("COL", HTMLTableColElementImpl.class);
-        tMap.put("COLGROUP", HTMLTableColElementImpl.class);
-        tMap.put("TR", HTMLTableRowElementImpl.class);
-        tMap.put("TBODY", HTMLTableSectionElementImpl.class);
-        tMap.put("THEAD", HTMLTableSectionElementImpl.class);
-        tMap.put("TFOOT", HTMLTableSectionElementImpl.class);
-        tMap.put("TEXTAREA", HTMLTextAreaElementImpl.class);
-        tMap.put("TITLE", HTMLTitleElementImpl.class);
-        tMap.put("UL", HTMLUListElementImpl.class);
+        final ElementTypesHTMLHolder htmlElement = holder(HTMLElementImpl.class, HTMLElementImpl::new);
+        Arrays.stream(HTML5ELEMENTS).forEach(t -> tMap.put(t, htmlElement));
+
+        tMap.put("A", holder(HTMLAnchorElementImpl.class, HTMLAnchorElementImpl::new));
+        tMap.put("APPLET", holder(HTMLAppletElementImpl.class, HTMLAppletElementImpl::new));
+        tMap.put("AREA", holder(HTMLAreaElementImpl.class, HTMLAreaElementImpl::new));
+        tMap.put("BASE", holder(HTMLBaseElementImpl.class, HTMLBaseElementImpl::new));
+        tMap.put("BASEFONT", holder(HTMLBaseFontElementImpl.class, HTMLBaseFontElementImpl::new));
+        tMap.put("BLOCKQUOTE", holder(HTMLQuoteElementImpl.class, HTMLQuoteElementImpl::new));
+        tMap.put("BODY", holder(HTMLBodyElementImpl.class, HTMLBodyElementImpl::new));
+        tMap.put("BR", holder(HTMLBRElementImpl.class, HTMLBRElementImpl::new));
+        tMap.put("BUTTON", holder(HTMLButtonElementImpl.class, HTMLButtonElementImpl::new));
+        tMap.put("DEL", holder(HTMLModElementImpl.class, HTMLModElementImpl::new));
+        tMap.put("DIR", holder(HTMLDirectoryElementImpl.class, HTMLDirectoryElementImpl::new));
+        tMap.put("DIV", holder(HTMLDivElementImpl.class, HTMLDivElementImpl::new));
+        tMap.put("DL", holder(HTMLDListElementImpl.class, HTMLDListElementImpl::new));
+        tMap.put("FIELDSET", holder(HTMLFieldSetElementImpl.class, HTMLFieldSetElementImpl::new));
+        tMap.put("FONT", holder(HTMLFontElementImpl.class, HTMLFontElementImpl::new));
+        tMap.put("FORM", holder(HTMLFormElementImpl.class, HTMLFormElementImpl::new));
+        tMap.put("FRAME", holder(HTMLFrameElementImpl.class, HTMLFrameElementImpl::new));
+        tMap.put("FRAMESET", holder(HTMLFrameSetElementImpl.class, HTMLFrameSetElementImpl::new));
+        tMap.put("HEAD", holder(HTMLHeadElementImpl.class, HTMLHeadElementImpl::new));
+        tMap.put("H1", holder(HTMLHeadingElementImpl.class, HTMLHeadingElementImpl::new));
+        tMap.put("H2", holder(HTMLHeadingElementImpl.class, HTMLHeadingElementImpl::new));
+        tMap.put("H3", holder(HTMLHeadingElementImpl.class, HTMLHeadingElementImpl::new));
+        tMap.put("H4", holder(HTMLHeadingElementImpl.class, HTMLHeadingElementImpl::new));
+        tMap.put("H5", holder(HTMLHeadingElementImpl.class, HTMLHeadingElementImpl::new));
+        tMap.put("H6", holder(HTMLHeadingElementImpl.class, HTMLHeadingElementImpl::new));
+        tMap.put("HR", holder(HTMLHRElementImpl.class, HTMLHRElementImpl::new));
+        tMap.put("HTML", holder(HTMLHtmlElementImpl.class, HTMLHtmlElementImpl::new));
+        tMap.put("IFRAME", holder(HTMLIFrameElementImpl.class, HTMLIFrameElementImpl::new));
+        tMap.put("IMG", holder(HTMLImageElementImpl.class, HTMLImageElementImpl::new));
+        tMap.put("INPUT", holder(HTMLInputElementImpl.class, HTMLInputElementImpl::new));
+        tMap.put("INS", holder(HTMLModElementImpl.class, HTMLModElementImpl::new));
+        tMap.put("ISINDEX", holder(HTMLIsIndexElementImpl.class, HTMLIsIndexElementImpl::new));
+        tMap.put("LABEL", holder(HTMLLabelElementImpl.class, HTMLLabelElementImpl::new));
+        tMap.put("LEGEND", holder(HTMLLegendElementImpl.class, HTMLLegendElementImpl::new));
+        tMap.put("LI", holder(HTMLLIElementImpl.class, HTMLLIElementImpl::new));
+        tMap.put("LINK", holder(HTMLLinkElementImpl.class, HTMLLinkElementImpl::new));
+        tMap.put("MAP", holder(HTMLMapElementImpl.class, HTMLMapElementImpl::new));
+        tMap.put("MENU", holder(HTMLMenuElementImpl.class, HTMLMenuElementImpl::new));
+        tMap.put("META", holder(HTMLMetaElementImpl.class, HTMLMetaElementImpl::new));
+        tMap.put("OBJECT", holder(HTMLObjectElementImpl.class, HTMLObjectElementImpl::new));
+        tMap.put("OL", holder(HTMLOListElementImpl.class, HTMLOListElementImpl::new));
+        tMap.put("OPTGROUP", holder(HTMLOptGroupElementImpl.class, HTMLOptGroupElementImpl::new));
+        tMap.put("OPTION", holder(HTMLOptionElementImpl.class, HTMLOptionElementImpl::new));
+        tMap.put("P", holder(HTMLParagraphElementImpl.class, HTMLParagraphElementImpl::new));
+        tMap.put("PARAM", holder(HTMLParamElementImpl.class, HTMLParamElementImpl::new));
+        tMap.put("PRE", holder(HTMLPreElementImpl.class, HTMLPreElementImpl::new));
+        tMap.put("Q", holder(HTMLQuoteElementImpl.class, HTMLQuoteElementImpl::new));
+        tMap.put("SCRIPT", holder(HTMLScriptElementImpl.class, HTMLScriptElementImpl::new));
+        tMap.put("SELECT", holder(HTMLSelectElementImpl.class, HTMLSelectElementImpl::new));
+        tMap.put("STYLE", holder(HTMLStyleElementImpl.class, HTMLStyleElementImpl::new));
+        tMap.put("TABLE", holder(HTMLTableElementImpl.class, HTMLTableElementImpl::new));
+        tMap.put("CAPTION", holder(HTMLTableCaptionElementImpl.class, HTMLTableCaptionElementImpl::new));
+        tMap.put("TD", holder(HTMLTableCellElementImpl.class, HTMLTableCellElementImpl::new));
+        tMap.put("TH", holder(HTMLTableCellElementImpl.class, HTMLTableCellElementImpl::new));
+        tMap.put("COL", holder(HTMLTableColElementImpl.class, HTMLTableColElementImpl::new));
+        tMap.put("COLGROUP", holder(HTMLTableColElementImpl.class, HTMLTableColElementImpl::new));
+        tMap.put("TR", holder(HTMLTableRowElementImpl.class, HTMLTableRowElementImpl::new));
+        tMap.put("TBODY", holder(HTMLTableSectionElementImpl.class, HTMLTableSectionElementImpl::new));
+        tMap.put("THEAD", holder(HTMLTableSectionElementImpl.class, HTMLTableSectionElementImpl::new));
+        tMap.put("TFOOT", holder(HTMLTableSectionElementImpl.class, HTMLTableSectionElementImpl::new));
+        tMap.put("TEXTAREA", holder(HTMLTextAreaElementImpl.class, HTMLTextAreaElementImpl::new));
+        tMap.put("TITLE", holder(HTMLTitleElementImpl.class, HTMLTitleElementImpl::new));
+        tMap.put("UL", holder(HTMLUListElementImpl.class, HTMLUListElementImpl::new));
 
         // also put all lowercase versions here to safe on lookup
         tMap.forEach((key, value) -> {
-
-            final String uKey = key.toUpperCase(Locale.ENGLISH);
-            final String lKey = key.toLowerCase(Locale.ENGLISH);
-
-            try {
-                final Constructor<? extends HTMLElementImpl> ctr = value.getConstructor(ELEMENT_CLASS_CTOR_SIGNATURE);
-
-                final ElementTypesHTMLHolder holder = new ElementTypesHTMLHolder(uKey, ctr);
-                ELEMENT_TYPES_HTML_UPPER.put(uKey, holder);
-                ELEMENT_TYPES_HTML_LOWER.put(lKey, holder);
-            }
-            catch (NoSuchMethodException | SecurityException ex) {
-                throw new IllegalStateException(
-                        "HTM15 Tag '" + key
-                            + "' associated with an Element class that failed to construct.\n" + key, ex);
-            }
+            ELEMENT_TYPES_HTML_UPPER.put(key.toUpperCase(Locale.ENGLISH), value);
+            ELEMENT_TYPES_HTML_LOWER.put(key.toLowerCase(Locale.ENGLISH), value);
         });
     }
 
+    private static <T extends HTMLElementImpl> ElementTypesHTMLHolder holder(final Class<T> type,
+                final BiFunction<HTMLDocumentImpl, String, T> factory) {
+        return new ElementTypesHTMLHolder(type, factory);
+    }
+
     static class ElementTypesHTMLHolder {
-        public final String tagName_;
-        public final Constructor<? extends HTMLElementImpl> ctr_;
+        public final Class<? extends HTMLElementImpl> type_;
+        public final BiFunction<HTMLDocumentImpl, String, ? extends HTMLElementImpl> factory_;
 
-        ElementTypesHTMLHolder(final String tagName, final Constructor<? extends HTMLElementImpl> ctr) {
-            tagName_ = tagName;
-            ctr_ = ctr;
+        ElementTypesHTMLHolder(final Class<? extends HTMLElementImpl> type,
+                    final BiFunction<HTMLDocumentImpl, String, ? extends HTMLElementImpl> factory) {
+            type_ = type;
+            factory_ = factory;
         }
     }
 
@@ -251,7 +250,11 @@ public HTMLDocumentImpl() {
     }
 
     @Override
-    public synchronized Element getDocumentElement() {
+    public Element getDocumentElement() {
+        return lock_.call(this, HTMLDocumentImpl::documentElement);
+    }
+
+    private Element documentElement() {
         // The document element is the top-level HTML element of the HTML
         // document. Only this element should exist at the top level.
         // If the HTML element is found, all other elements that might
@@ -291,7 +294,11 @@ public synchronized Element getDocumentElement() {
      *
      * @return The &lt;HEAD&gt; element
      */
-    public synchronized HTMLElement getHead() {
+    public HTMLElement getHead() {
+        return lock_.call(this, HTMLDocumentImpl::head);
+    }
+
+    private HTMLElement head() {
         Node head;
         final Node html;
         Node child;
@@ -330,7 +337,11 @@ public synchronized HTMLElement getHead() {
     }
 
     @Override
-    public synchronized String getTitle() {
+    public String getTitle() {
+        return lock_.call(this, HTMLDocumentImpl::title);
+    }
+
+    private String title() {
         final HTMLElement head;
         final NodeList list;
         final Node title;
@@ -349,7 +360,11 @@ public synchronized String getTitle() {
     }
 
     @Override
-    public synchronized void setTitle(final String newTitle) {
+    public void setTitle(final String newTitle) {
+        lock_.run(this, newTitle, HTMLDocumentImpl::title);
+    }
+
+    private void title(final String newTitle) {
         final HTMLElement head;
         final NodeList list;
         final Node title;
@@ -376,7 +391,11 @@ public synchronized void setTitle(final String newTitle) {
     }
 
     @Override
-    public synchronized HTMLElement getBody() {
+    public HTMLElement getBody() {
+        return lock_.call(this, HTMLDocumentImpl::body);
+    }
+
+    private HTMLElement body() {
         Node body;
 
         // Call getDocumentElement() to get the HTML element that is also the
@@ -414,47 +433,55 @@ public synchronized HTMLElement getBody() {
     }
 
     @Override
-    public synchronized void setBody(final HTMLElement newBody) {
-        synchronized (newBody) {
-            // Call getDocumentElement() to get the HTML element that is also the
-            // top-level element in the document. Get the first element in the
-            // document that is called BODY. Work with that.
-            final Element html = getDocumentElement();
-            final HTMLElement head = getHead();
-            synchronized (html) {
-                final NodeList list = this.getElementsByTagName("BODY");
-                if (list.getLength() > 0) {
-                    // BODY exists but might not follow HEAD in HTML. If not,
-                    // make it so and replace it. Start with the HEAD and make
-                    // sure the BODY is the first element after the HEAD.
-                    final Node body = list.item(0);
-                    synchronized (body) {
-                        Node child = head;
-                        while (child != null) {
-                            if (child instanceof Element) {
-                                if (child != body) {
-                                    html.insertBefore(newBody, child);
-                                }
-                                else {
-                                    html.replaceChild(newBody, body);
-                                }
-                                return;
+    public void setBody(final HTMLElement newBody) {
+        lock_.runExclusive(this, newBody, HTMLDocumentImpl::body);
+    }
+
+    private void body(final HTMLElement newBody) {
+        // Call getDocumentElement() to get the HTML element that is also the
+        // top-level element in the document. Get the first element in the
+        // document that is called BODY. Work with that.
+        final Element html = getDocumentElement();
+        final HTMLElement head = getHead();
+        synchronized (html) {
+            final NodeList list = this.getElementsByTagName("BODY");
+            if (list.getLength() > 0) {
+                // BODY exists but might not follow HEAD in HTML. If not,
+                // make it so and replace it. Start with the HEAD and make
+                // sure the BODY is the first element after the HEAD.
+                final Node body = list.item(0);
+                synchronized (body) {
+                    Node child = head;
+                    while (child != null) {
+                        if (child instanceof Element) {
+                            if (child != body) {
+                                html.insertBefore(newBody, child);
                             }
-                            child = child.getNextSibling();
+                            else {
+                                html.replaceChild(newBody, body);
+                            }
+                            return;
                         }
-                        html.appendChild(newBody);
+                        child = child.getNextSibling();
                     }
-                    return;
+                    html.appendChild(newBody);
                 }
-                // BODY does not exist, place it in the HTML element
-                // right after the HEAD.
-                html.appendChild(newBody);
+                return;
             }
+            // BODY does not exist, place it in the HTML element
+            // right after the HEAD.
+            html.appendChild(newBody);
         }
     }
 
     @Override
-    public synchronized Element getElementById(final String elementId) {
+    public Element getElementById(final String elementId) {
+        return lock_.call(this, elementId, HTMLDocumentImpl::elementById);
+    }
+
+    private Element elementById(final String elementId) {
+        // the id index is filled by the parser; the walk is only
+        // required for ids that were added using the DOM api
         final Element idElement = super.getElementById(elementId);
         if (idElement != null) {
             return idElement;
@@ -469,7 +496,9 @@ public NodeList getElementsByName(final String elementname) {
 
     @Override
     public final NodeList getElementsByTagName(final String tagName) {
-        return super.getElementsByTagName(tagName.toUpperCase(Locale.ENGLISH));
+        // answered by the tag name index, this avoids walking the whole
+        // tree for every new list and after every change
+        return getTagNameIndex().getElementsByTagName(tagName);
     }
 
     @Override
@@ -477,7 +506,7 @@ public final NodeList getElementsByTagNameNS(final String namespaceURI, final St
         if (namespaceURI != null && !namespaceURI.isEmpty()) {
             return super.getElementsByTagNameNS(namespaceURI, localName.toUpperCase(Locale.ENGLISH));
         }
-        return super.getElementsByTagName(localName.toUpperCase(Locale.ENGLISH));
+        return getTagNameIndex().getElementsByTagName(localName);
     }
 
     /**
@@ -519,10 +548,13 @@ public Element createElementNS(final String namespaceURI, final String qualified
 
     @Override
     public Element createElement(final String tagName) throws DOMException {
-        // First, make sure tag name is all upper case, next get the associated
-        // element class. If no class is found, generate a generic HTML element.
-        // Do so also if an unexpected exception occurs.
+        // Get the factory of the associated element class; the tag name is
+        // usually all lower or all upper case. If no class is found, generate
+        // a generic HTML element.
         ElementTypesHTMLHolder htmlHolder = ELEMENT_TYPES_HTML_LOWER.get(tagName);
+        if (htmlHolder == null) {
+            htmlHolder = ELEMENT_TYPES_HTML_UPPER.get(tagName);
+        }
         if (htmlHolder == null) {
             // try uppercase but only if needed and don't use this string to create
             // the element but the stored one to keep the memory usage low when the
@@ -531,16 +563,7 @@ public Element createElement(final String tagName) throws DOMException {
         }
 
         if (htmlHolder != null) {
-            // Get the constructor for the element. The signature specifies an
-            // owner document and a tag name. Use the constructor to instantiate
-            // a new object and return it.
-            try {
-                return htmlHolder.ctr_.newInstance(this, tagName);
-            }
-            catch (final Exception e) {
-                throw new IllegalStateException(
-                        "HTM15 Tag '" + tagName + "' associated with an Element class that failed to construct.", e);
-            }
+            return htmlHolder.factory_.apply(this, tagName);
         }
         return new HTMLElementImpl(this, tagName);
     }
@@ -686,9 +709,9 @@ protected boolean canRenameElements(final String newNamespaceURI, final String n
         }
 
         // check whether a class change is required
-        final Constructor<?> newCtr = ELEMENT_TYPES_HTML_UPPER.get(newNodeName.toUpperCase(Locale.ENGLISH)).ctr_;
-        final Constructor<?> oldCtr = ELEMENT_TYPES_HTML_UPPER.get(el.getTagName().toUpperCase(Locale.ENGLISH)).ctr_;
-        return newCtr == oldCtr;
+        final Class<?> newType = ELEMENT_TYPES_HTML_UPPER.get(newNodeName.toUpperCase(Locale.ENGLISH)).type_;
+        final Class<?> oldType = ELEMENT_TYPES_HTML_UPPER.get(el.getTagName().toUpperCase(Locale.ENGLISH)).type_;
+        return newType == oldType;
     }
 
     /**
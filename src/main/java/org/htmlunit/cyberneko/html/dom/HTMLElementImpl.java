@@ -187,6 +187,16 @@ public final NodeList getElementsByTagNameNS(final String namespaceURI, final St
         return super.getElementsByTagName(localName.toUpperCase(Locale.ENGLISH));
     }
 
+    /**
+     * Returns the change count of the subtree rooted at this element; used by
+     * the collections to decide if their cached content is still valid.
+     *
+     * @return the change count of the subtree
+     */
+    int subtreeChanges() {
+        return changes();
+    }
+
     /**
      * Convenience method used to capitalize a one-off attribute value before it
      * is returned. For example, the align values "LEFT" and "left" will both
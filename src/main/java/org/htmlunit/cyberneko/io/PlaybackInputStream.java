@@ -150,6 +150,14 @@ public void playback() {
         playback_ = true;
     }
 
+    /**
+     * @return the number of bytes buffered so far; the bytes read again
+     *         if {@link #playback()} is called now
+     */
+    public int getBufferedLength() {
+        return byteLength_;
+    }
+
     /**
      * Clears the buffer.
      * <p>
@@ -18,9 +18,16 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import org.htmlunit.cyberneko.HTMLComponent;
 import org.htmlunit.cyberneko.HTMLConfiguration;
 import org.htmlunit.cyberneko.HTMLElementsProvider;
+import org.htmlunit.cyberneko.HTMLTagBalancer;
+import org.htmlunit.cyberneko.filters.EventRecorderFilter;
+import org.htmlunit.cyberneko.filters.EventReplayer;
 import org.htmlunit.cyberneko.xerces.parsers.Constants;
 import org.htmlunit.cyberneko.xerces.util.ErrorHandlerWrapper;
 import org.htmlunit.cyberneko.xerces.util.XMLChar;
@@ -33,6 +40,7 @@
 import org.htmlunit.cyberneko.xerces.xni.XMLString;
 import org.htmlunit.cyberneko.xerces.xni.XNIException;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLConfigurationException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentSource;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLErrorHandler;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
@@ -86,6 +94,15 @@ public class DOMFragmentParser implements XMLDocumentHandler {
     /** True if within a CDATA section. */
     private boolean inCDATASection_;
 
+    /** The recordings of the cached fragments in access order; null if the cache is disabled. */
+    private Map<String, byte[]> fragmentCache_;
+
+    /** Records the events of fragments not found in the cache. */
+    private EventRecorderFilter fragmentRecorder_;
+
+    private long fragmentCacheHits_;
+    private long fragmentCacheMisses_;
+
     /** Default constructor. */
     public DOMFragmentParser() {
         parserConfiguration_ = new HTMLConfiguration();
@@ -157,6 +174,165 @@ public void parse(final InputSource source, final DocumentFragment fragment)
         }
     }
 
+    /**
+     * Parses the given fragment content. If the fragment cache is enabled
+     * (see {@link #setFragmentCacheSize(int)}) the balanced events of the
+     * content are recorded and the next parse of the same content with the
+     * same fragment context stack only replays them into the fragment without
+     * scanning and balancing again.
+     * <p>
+     * The events are recorded before the filters of the configuration (see
+     * {@link HTMLConfiguration#FILTERS}), a cache hit resets the filters like a
+     * parse does and replays them through the filters. Errors are reported only
+     * while the content is parsed; a cache hit does not report them again and
+     * the replayed events have no augmentations (e.g. locations).
+     *
+     * @param content the html fragment
+     * @param fragment the fragment to add the nodes to
+     * @throws SAXException in case of sax error
+     * @throws IOException in case of io problems
+     */
+    public void parseContent(final String content, final DocumentFragment fragment)
+        throws SAXException, IOException {
+
+        if (fragmentCache_ == null) {
+            parse(new InputSource(new StringReader(content)), fragment);
+            return;
+        }
+
+        final String key = fragmentCacheKey(content);
+        final byte[] recording = fragmentCache_.get(key);
+        if (recording != null) {
+            fragmentCacheHits_++;
+
+            currentNode_ = fragment;
+            document_ = fragment.getOwnerDocument();
+
+            // the filters are still chained to this parser by the parse recording the content
+            final XMLDocumentFilter[] filters =
+                    (XMLDocumentFilter[]) parserConfiguration_.getProperty(HTMLConfiguration.FILTERS);
+            if (filters != null) {
+                // the replay must not see the state the filters have from the last parse
+                for (final XMLDocumentFilter filter : filters) {
+                    if (filter instanceof HTMLComponent component) {
+                        component.reset(parserConfiguration_);
+                    }
+                }
+            }
+            final EventReplayer replayer = new EventReplayer(recording);
+            replayer.setDocumentHandler(filters == null || filters.length == 0 ? this : filters[0]);
+            replayer.replay();
+            return;
+        }
+
+        fragmentCacheMisses_++;
+        if (fragmentRecorder_ == null) {
+            fragmentRecorder_ = new EventRecorderFilter();
+        }
+
+        // record the balanced events in front of the filters
+        final XMLDocumentFilter[] filters =
+                (XMLDocumentFilter[]) parserConfiguration_.getProperty(HTMLConfiguration.FILTERS);
+        final XMLDocumentFilter[] recordingFilters;
+        if (filters == null) {
+            recordingFilters = new XMLDocumentFilter[] {fragmentRecorder_};
+        }
+        else {
+            recordingFilters = new XMLDocumentFilter[filters.length + 1];
+            recordingFilters[0] = fragmentRecorder_;
+            System.arraycopy(filters, 0, recordingFilters, 1, filters.length);
+        }
+        parserConfiguration_.setProperty(HTMLConfiguration.FILTERS, recordingFilters);
+        try {
+            parse(new InputSource(new StringReader(content)), fragment);
+        }
+        finally {
+            parserConfiguration_.setProperty(HTMLConfiguration.FILTERS, filters);
+        }
+
+        final byte[] newRecording = fragmentRecorder_.getRecording();
+        if (newRecording != null) {
+            fragmentCache_.put(key, newRecording);
+        }
+    }
+
+    /**
+     * The key is the content itself or, if a fragment context stack is set,
+     * the namespace URIs and raw names of the context elements followed by
+     * the content.
+     */
+    private String fragmentCacheKey(final String content) {
+        final QName[] contextStack = (QName[]) parserConfiguration_.getProperty(HTMLTagBalancer.FRAGMENT_CONTEXT_STACK);
+        if (contextStack == null || contextStack.length == 0) {
+            return content;
+        }
+
+        final StringBuilder key = new StringBuilder();
+        for (final QName name : contextStack) {
+            final String uri = name.getUri();
+            if (uri != null) {
+                key.append('{').append(uri).append('}');
+            }
+            key.append(name.getRawname()).append('>');
+        }
+        return key.append('\u0000').append(content).toString();
+    }
+
+    /**
+     * Enables the fragment cache used by {@link #parseContent(String, DocumentFragment)}.
+     * The cache holds up to the given number of fragments and evicts the least
+     * recently used one if full; 0 disables the cache. Changing the size
+     * clears the cache and the hit and miss counters.
+     *
+     * @param maxEntries the maximum number of cached fragments
+     */
+    public void setFragmentCacheSize(final int maxEntries) {
+        fragmentCacheHits_ = 0;
+        fragmentCacheMisses_ = 0;
+        if (maxEntries <= 0) {
+            fragmentCache_ = null;
+            return;
+        }
+
+        fragmentCache_ = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, byte[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the number of fragments in the cache
+     */
+    public int getFragmentCacheEntries() {
+        return fragmentCache_ == null ? 0 : fragmentCache_.size();
+    }
+
+    /**
+     * @return the number of fragments replayed from the cache
+     */
+    public long getFragmentCacheHits() {
+        return fragmentCacheHits_;
+    }
+
+    /**
+     * @return the number of fragments parsed because they were not in the cache
+     */
+    public long getFragmentCacheMisses() {
+        return fragmentCacheMisses_;
+    }
+
+    /**
+     * Removes all fragments from the cache. The cache is cleared automatically
+     * if a feature or property (other than the fragment context stack) changes.
+     */
+    public void clearFragmentCache() {
+        if (fragmentCache_ != null) {
+            fragmentCache_.clear();
+        }
+    }
+
     /**
      * Allow an application to register an error event handler.
      *
@@ -221,6 +397,7 @@ public void setFeature(final String featureId, final boolean state)
 
         try {
             parserConfiguration_.setFeature(featureId, state);
+            clearFragmentCache();
         }
         catch (final XMLConfigurationException e) {
             final String message = e.getMessage();
@@ -279,6 +456,9 @@ public void setProperty(final String propertyId, final Object value)
 
         try {
             parserConfiguration_.setProperty(propertyId, value);
+            if (!HTMLTagBalancer.FRAGMENT_CONTEXT_STACK.equals(propertyId)) {
+                clearFragmentCache();
+            }
         }
         catch (final XMLConfigurationException e) {
             final String message = e.getMessage();
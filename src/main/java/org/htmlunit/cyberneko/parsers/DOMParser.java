@@ -17,6 +17,7 @@
 
 import org.htmlunit.cyberneko.HTMLConfiguration;
 import org.htmlunit.cyberneko.HTMLElementsProvider;
+import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
 import org.htmlunit.cyberneko.xerces.dom.DocumentImpl;
 import org.htmlunit.cyberneko.xerces.parsers.AbstractDOMParser;
 
@@ -42,4 +43,17 @@ public DOMParser(final HTMLElementsProvider htmlElementsProvider,
                         final Class<? extends DocumentImpl> documentClass) {
         super(new HTMLConfiguration(htmlElementsProvider), documentClass);
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The {@link HTMLDocumentImpl} is created without reflection.
+     */
+    @Override
+    protected void setDocumentClass(final Class<? extends DocumentImpl> documentClass) {
+        super.setDocumentClass(documentClass);
+        if (documentClass == HTMLDocumentImpl.class) {
+            setDocumentFactory(HTMLDocumentImpl::new);
+        }
+    }
 }
@@ -0,0 +1,908 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.parsers;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.htmlunit.cyberneko.HTMLConfiguration;
+import org.htmlunit.cyberneko.xerces.util.XMLAttributesImpl;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLDocumentHandler;
+import org.htmlunit.cyberneko.xerces.xni.XMLLocator;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentSource;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+
+/**
+ * A pull parser for HTML documents implementing the StAX {@link XMLStreamReader}
+ * api on top of the {@link HTMLConfiguration} pipeline (scanner, tag balancer
+ * and filters).
+ * <p>
+ * Every {@link #next()} call runs the pipeline only as long as needed to
+ * produce the next event (see {@link HTMLConfiguration#parse(boolean)}).
+ * A single scanner step may produce more than one event (e.g. the tag
+ * balancer closing several elements), the additional events are kept in a
+ * small ring buffer of reusable event objects. Consumers can stop reading at
+ * any time; {@link #close()} releases the input.
+ * <p>
+ * Namespace declarations are not reported separately, xmlns attributes are
+ * available as normal attributes. Entity references are always resolved.
+ * <p>
+ * Usage:
+ * <pre>
+ * final HTMLStreamReader reader = new HTMLStreamReader(new XMLInputSource(null, url, null));
+ * while (reader.hasNext()) {
+ *     if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+ *         ...
+ *     }
+ * }
+ * reader.close();
+ * </pre>
+ *
+ * @author Ronald Brill
+ */
+public class HTMLStreamReader implements XMLStreamReader {
+
+    private final HTMLConfiguration configuration_;
+
+    /** The ring of pending events. */
+    private Event[] events_ = new Event[8];
+    private int head_;
+    private int size_;
+
+    /** The current event; swapped with the ring slot to avoid copying. */
+    private Event current_ = new Event();
+
+    private boolean more_;
+    private XMLLocator locator_;
+
+    private String encoding_;
+    private String version_;
+    private String standalone_;
+
+    /**
+     * Ctor.
+     *
+     * @param source the document to parse
+     * @throws XMLStreamException in case of error
+     */
+    public HTMLStreamReader(final XMLInputSource source) throws XMLStreamException {
+        this(new HTMLConfiguration(), source);
+    }
+
+    /**
+     * Ctor using a preconfigured {@link HTMLConfiguration}; the document handler
+     * of the configuration is replaced.
+     *
+     * @param configuration the configuration
+     * @param source the document to parse
+     * @throws XMLStreamException in case of error
+     */
+    public HTMLStreamReader(final HTMLConfiguration configuration, final XMLInputSource source)
+            throws XMLStreamException {
+        configuration_ = configuration;
+        for (int i = 0; i < events_.length; i++) {
+            events_[i] = new Event();
+        }
+        current_.type_ = START_DOCUMENT;
+
+        configuration_.setDocumentHandler(new EventCollector());
+        try {
+            configuration_.setInputSource(source);
+        }
+        catch (final IOException | XNIException e) {
+            throw toStreamException(e);
+        }
+        more_ = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int next() throws XMLStreamException {
+        if (current_.type_ == END_DOCUMENT) {
+            throw new NoSuchElementException("END_DOCUMENT reached");
+        }
+
+        while (size_ == 0 && more_) {
+            try {
+                more_ = configuration_.parse(false);
+            }
+            catch (final IOException | XNIException e) {
+                more_ = false;
+                throw toStreamException(e);
+            }
+        }
+
+        if (size_ == 0) {
+            // the parse was stopped without an endDocument event
+            current_.type_ = END_DOCUMENT;
+            return END_DOCUMENT;
+        }
+
+        final Event next = events_[head_];
+        events_[head_] = current_;
+        current_ = next;
+        head_ = (head_ + 1) % events_.length;
+        size_--;
+        return current_.type_;
+    }
+
+    /**
+     * Skips the content of the current element; afterwards the reader is
+     * positioned at the matching END_ELEMENT. The content of raw text elements
+     * (like script or style) not yet scanned is skipped by the scanner without
+     * producing any events (see {@link org.htmlunit.cyberneko.HTMLScanner#skipElementContent(String)}).
+     *
+     * @throws XMLStreamException in case of error
+     */
+    public void skipElement() throws XMLStreamException {
+        require(START_ELEMENT, null, null);
+
+        if (size_ == 0 && more_) {
+            configuration_.getDocumentScanner().skipElementContent(current_.name_.getRawname());
+        }
+
+        int depth = 1;
+        while (depth > 0) {
+            final int type = next();
+            if (type == START_ELEMENT) {
+                depth++;
+            }
+            else if (type == END_ELEMENT) {
+                depth--;
+            }
+            else if (type == END_DOCUMENT) {
+                throw new XMLStreamException("unexpected end of document", getLocation());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void require(final int type, final String namespaceURI, final String localName)
+            throws XMLStreamException {
+        if (current_.type_ != type) {
+            throw new XMLStreamException("expected event type " + type + " but was " + current_.type_,
+                    getLocation());
+        }
+        if (namespaceURI != null && !namespaceURI.equals(getNamespaceURI())) {
+            throw new XMLStreamException("expected namespace " + namespaceURI + " but was " + getNamespaceURI(),
+                    getLocation());
+        }
+        if (localName != null && !localName.equals(getLocalName())) {
+            throw new XMLStreamException("expected local name " + localName + " but was " + getLocalName(),
+                    getLocation());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getElementText() throws XMLStreamException {
+        require(START_ELEMENT, null, null);
+
+        final StringBuilder content = new StringBuilder();
+        int type = next();
+        while (type != END_ELEMENT) {
+            if (type == CHARACTERS || type == CDATA || type == SPACE) {
+                content.append(current_.text_, 0, current_.textLength_);
+            }
+            else if (type == END_DOCUMENT) {
+                throw new XMLStreamException("unexpected end of document when reading element text content",
+                        getLocation());
+            }
+            else if (type == START_ELEMENT) {
+                throw new XMLStreamException("element text content may not contain START_ELEMENT", getLocation());
+            }
+            // comments and processing instructions are ignored
+            type = next();
+        }
+        return content.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int nextTag() throws XMLStreamException {
+        int type = next();
+        while (type == COMMENT || type == PROCESSING_INSTRUCTION || type == SPACE
+                || ((type == CHARACTERS || type == CDATA) && isWhiteSpace())) {
+            type = next();
+        }
+        if (type != START_ELEMENT && type != END_ELEMENT) {
+            throw new XMLStreamException("expected start or end tag but was " + type, getLocation());
+        }
+        return type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        return current_.type_ != END_DOCUMENT;
+    }
+
+    /**
+     * Stops the parsing and releases the input; the underlying stream is
+     * closed if it was opened by the parser.
+     */
+    @Override
+    public void close() {
+        more_ = false;
+        size_ = 0;
+        configuration_.cleanup();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getProperty(final String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("name must not be null");
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespaceURI(final String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("prefix must not be null");
+        }
+        if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+            return XMLConstants.XML_NS_URI;
+        }
+        if (XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+            return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+        }
+        if ((current_.type_ == START_ELEMENT || current_.type_ == END_ELEMENT)
+                && prefix.equals(getPrefix())) {
+            return getNamespaceURI();
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStartElement() {
+        return current_.type_ == START_ELEMENT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEndElement() {
+        return current_.type_ == END_ELEMENT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCharacters() {
+        return current_.type_ == CHARACTERS;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWhiteSpace() {
+        if (!hasText() || current_.type_ == COMMENT || current_.type_ == DTD) {
+            return false;
+        }
+        final char[] text = current_.text_;
+        for (int i = 0; i < current_.textLength_; i++) {
+            final char c = text[i];
+            if (c != ' ' && c != '\n' && c != '\t' && c != '\r' && c != '\f') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeValue(final String namespaceURI, final String localName) {
+        final XMLAttributesImpl attributes = startElement().attributes_;
+        if (namespaceURI == null) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                if (localName.equals(attributes.getLocalName(i))) {
+                    return attributes.getValue(i);
+                }
+            }
+            return null;
+        }
+        return attributes.getValue(namespaceURI, localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getAttributeCount() {
+        return startElement().attributes_.getLength();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public javax.xml.namespace.QName getAttributeName(final int index) {
+        return toQName(startElement().attributes_.getName(index));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeNamespace(final int index) {
+        return startElement().attributes_.getURI(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeLocalName(final int index) {
+        return startElement().attributes_.getLocalName(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributePrefix(final int index) {
+        return startElement().attributes_.getName(index).getPrefix();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeType(final int index) {
+        return startElement().attributes_.getType(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeValue(final int index) {
+        return startElement().attributes_.getValue(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAttributeSpecified(final int index) {
+        return startElement().attributes_.isSpecified(index);
+    }
+
+    /**
+     * Namespace declarations are reported as attributes.
+     *
+     * @return always 0
+     */
+    @Override
+    public int getNamespaceCount() {
+        if (current_.type_ != START_ELEMENT && current_.type_ != END_ELEMENT) {
+            throw new IllegalStateException("not a START_ELEMENT or END_ELEMENT");
+        }
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespacePrefix(final int index) {
+        throw new IndexOutOfBoundsException("index " + index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespaceURI(final int index) {
+        throw new IndexOutOfBoundsException("index " + index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public javax.xml.namespace.NamespaceContext getNamespaceContext() {
+        return new javax.xml.namespace.NamespaceContext() {
+            @Override
+            public String getNamespaceURI(final String prefix) {
+                final String uri = HTMLStreamReader.this.getNamespaceURI(prefix);
+                return uri == null ? XMLConstants.NULL_NS_URI : uri;
+            }
+
+            @Override
+            public String getPrefix(final String namespaceURI) {
+                final Iterator<String> prefixes = getPrefixes(namespaceURI);
+                return prefixes.hasNext() ? prefixes.next() : null;
+            }
+
+            @Override
+            public Iterator<String> getPrefixes(final String namespaceURI) {
+                if (XMLConstants.XML_NS_URI.equals(namespaceURI)) {
+                    return List.of(XMLConstants.XML_NS_PREFIX).iterator();
+                }
+                if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(namespaceURI)) {
+                    return List.of(XMLConstants.XMLNS_ATTRIBUTE).iterator();
+                }
+                if ((current_.type_ == START_ELEMENT || current_.type_ == END_ELEMENT)
+                        && namespaceURI.equals(HTMLStreamReader.this.getNamespaceURI())) {
+                    return List.of(HTMLStreamReader.this.getPrefix()).iterator();
+                }
+                return Collections.emptyIterator();
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getEventType() {
+        return current_.type_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getText() {
+        checkText();
+        return new String(current_.text_, 0, current_.textLength_);
+    }
+
+    /**
+     * Returns the internal buffer of the current event; the content is
+     * only valid until the next call of {@link #next()}.
+     */
+    @Override
+    public char[] getTextCharacters() {
+        checkText();
+        return current_.text_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTextCharacters(final int sourceStart, final char[] target, final int targetStart,
+            final int length) throws XMLStreamException {
+        checkText();
+        if (sourceStart < 0 || sourceStart > current_.textLength_) {
+            throw new IndexOutOfBoundsException("sourceStart " + sourceStart);
+        }
+        final int count = Math.min(length, current_.textLength_ - sourceStart);
+        System.arraycopy(current_.text_, sourceStart, target, targetStart, count);
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTextStart() {
+        checkText();
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTextLength() {
+        checkText();
+        return current_.textLength_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getEncoding() {
+        return encoding_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasText() {
+        final int type = current_.type_;
+        return type == CHARACTERS || type == CDATA || type == SPACE || type == COMMENT || type == DTD;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Location getLocation() {
+        return current_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public javax.xml.namespace.QName getName() {
+        return toQName(element().name_);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getLocalName() {
+        return element().name_.getLocalpart();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasName() {
+        return current_.type_ == START_ELEMENT || current_.type_ == END_ELEMENT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespaceURI() {
+        if (!hasName()) {
+            return null;
+        }
+        return current_.name_.getUri();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPrefix() {
+        if (!hasName()) {
+            return null;
+        }
+        return current_.name_.getPrefix();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getVersion() {
+        return version_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStandalone() {
+        return "yes".equals(standalone_);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean standaloneSet() {
+        return standalone_ != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getCharacterEncodingScheme() {
+        return encoding_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPITarget() {
+        return current_.type_ == PROCESSING_INSTRUCTION ? current_.piTarget_ : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPIData() {
+        return current_.type_ == PROCESSING_INSTRUCTION ? new String(current_.text_, 0, current_.textLength_) : null;
+    }
+
+    private Event element() {
+        if (current_.type_ != START_ELEMENT && current_.type_ != END_ELEMENT) {
+            throw new IllegalStateException("not a START_ELEMENT or END_ELEMENT");
+        }
+        return current_;
+    }
+
+    private Event startElement() {
+        if (current_.type_ != START_ELEMENT) {
+            throw new IllegalStateException("not a START_ELEMENT");
+        }
+        return current_;
+    }
+
+    private void checkText() {
+        if (!hasText()) {
+            throw new IllegalStateException("no text available for event type " + current_.type_);
+        }
+    }
+
+    private static javax.xml.namespace.QName toQName(final QName name) {
+        final String uri = name.getUri();
+        final String prefix = name.getPrefix();
+        return new javax.xml.namespace.QName(uri == null ? XMLConstants.NULL_NS_URI : uri,
+                name.getLocalpart(),
+                prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix);
+    }
+
+    private static XMLStreamException toStreamException(final Exception e) {
+        if (e instanceof XNIException xniException && xniException.getException() != null) {
+            return new XMLStreamException(e.getMessage(), xniException.getException());
+        }
+        return new XMLStreamException(e.getMessage(), e);
+    }
+
+    /**
+     * Returns the next free event of the ring buffer, the buffer grows if needed.
+     */
+    private Event addEvent(final int type) {
+        if (size_ == events_.length) {
+            final Event[] events = new Event[events_.length * 2];
+            for (int i = 0; i < size_; i++) {
+                events[i] = events_[(head_ + i) % events_.length];
+            }
+            for (int i = size_; i < events.length; i++) {
+                events[i] = new Event();
+            }
+            events_ = events;
+            head_ = 0;
+        }
+
+        final Event event = events_[(head_ + size_) % events_.length];
+        size_++;
+
+        event.type_ = type;
+        event.textLength_ = 0;
+        if (locator_ == null) {
+            event.lineNumber_ = -1;
+            event.columnNumber_ = -1;
+            event.characterOffset_ = -1;
+            event.systemId_ = null;
+        }
+        else {
+            event.lineNumber_ = locator_.getLineNumber();
+            event.columnNumber_ = locator_.getColumnNumber();
+            event.characterOffset_ = locator_.getCharacterOffset();
+            event.systemId_ = locator_.getLiteralSystemId();
+        }
+        return event;
+    }
+
+    /**
+     * A (reused) event.
+     */
+    private static final class Event implements Location {
+        int type_;
+        final QName name_ = new QName();
+        final XMLAttributesImpl attributes_ = new XMLAttributesImpl();
+        char[] text_ = new char[64];
+        int textLength_;
+        String piTarget_;
+
+        int lineNumber_;
+        int columnNumber_;
+        int characterOffset_;
+        String systemId_;
+
+        void setText(final XMLString text) {
+            final int length = text.length();
+            if (length > text_.length) {
+                text_ = new char[Math.max(length, text_.length * 2)];
+            }
+            text.getChars(0, length, text_, 0);
+            textLength_ = length;
+        }
+
+        void setText(final String text) {
+            final int length = text.length();
+            if (length > text_.length) {
+                text_ = new char[Math.max(length, text_.length * 2)];
+            }
+            text.getChars(0, length, text_, 0);
+            textLength_ = length;
+        }
+
+        void setAttributes(final XMLAttributes attributes) {
+            attributes_.removeAllAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                attributes_.addAttribute(attributes.getName(i), attributes.getType(i),
+                        attributes.getValue(i), attributes.isSpecified(i));
+            }
+        }
+
+        @Override
+        public int getLineNumber() {
+            return lineNumber_;
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return columnNumber_;
+        }
+
+        @Override
+        public int getCharacterOffset() {
+            return characterOffset_;
+        }
+
+        @Override
+        public String getPublicId() {
+            return null;
+        }
+
+        @Override
+        public String getSystemId() {
+            return systemId_;
+        }
+    }
+
+    /**
+     * The end of the pipeline, records the events in the ring buffer.
+     */
+    private final class EventCollector implements XMLDocumentHandler {
+        private XMLDocumentSource documentSource_;
+        private boolean inCDATA_;
+
+        @Override
+        public void startDocument(final XMLLocator locator, final String encoding,
+                final NamespaceContext namespaceContext, final Augmentations augs) throws XNIException {
+            locator_ = locator;
+            encoding_ = encoding;
+            inCDATA_ = false;
+        }
+
+        @Override
+        public void xmlDecl(final String version, final String encoding, final String standalone,
+                final Augmentations augs) throws XNIException {
+            version_ = version;
+            standalone_ = standalone;
+        }
+
+        @Override
+        public void doctypeDecl(final String rootElement, final String publicId, final String systemId,
+                final Augmentations augs) throws XNIException {
+            final StringBuilder doctype = new StringBuilder("<!DOCTYPE ").append(rootElement);
+            if (publicId != null) {
+                doctype.append(" PUBLIC \"").append(publicId).append('"');
+                if (systemId != null) {
+                    doctype.append(" \"").append(systemId).append('"');
+                }
+            }
+            else if (systemId != null) {
+                doctype.append(" SYSTEM \"").append(systemId).append('"');
+            }
+            addEvent(DTD).setText(doctype.append('>').toString());
+        }
+
+        @Override
+        public void comment(final XMLString text, final Augmentations augs) throws XNIException {
+            addEvent(COMMENT).setText(text);
+        }
+
+        @Override
+        public void processingInstruction(final String target, final XMLString data, final Augmentations augs)
+                throws XNIException {
+            final Event event = addEvent(PROCESSING_INSTRUCTION);
+            event.piTarget_ = target;
+            if (data != null) {
+                event.setText(data);
+            }
+        }
+
+        @Override
+        public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+                throws XNIException {
+            final Event event = addEvent(START_ELEMENT);
+            event.name_.setValues(element);
+            event.setAttributes(attributes);
+        }
+
+        @Override
+        public void emptyElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+                throws XNIException {
+            startElement(element, attributes, augs);
+            endElement(element, augs);
+        }
+
+        @Override
+        public void characters(final XMLString text, final Augmentations augs) throws XNIException {
+            addEvent(inCDATA_ ? CDATA : CHARACTERS).setText(text);
+        }
+
+        @Override
+        public void endElement(final QName element, final Augmentations augs) throws XNIException {
+            addEvent(END_ELEMENT).name_.setValues(element);
+        }
+
+        @Override
+        public void startCDATA(final Augmentations augs) throws XNIException {
+            inCDATA_ = true;
+        }
+
+        @Override
+        public void endCDATA(final Augmentations augs) throws XNIException {
+            inCDATA_ = false;
+        }
+
+        @Override
+        public void endDocument(final Augmentations augs) throws XNIException {
+            addEvent(END_DOCUMENT);
+        }
+
+        @Override
+        public void setDocumentSource(final XMLDocumentSource source) {
+            documentSource_ = source;
+        }
+
+        @Override
+        public XMLDocumentSource getDocumentSource() {
+            return documentSource_;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides the executor for the parser threads, e.g. for the scanner of a
+ * pipelined parse ({@link org.htmlunit.cyberneko.HTMLConfiguration#PIPELINE_EXECUTOR})
+ * or the chunks of the {@link org.htmlunit.cyberneko.HTMLParallelTokenizer}.
+ * <p>
+ * This is the Java 17 version using a cached pool of daemon threads; the
+ * multi-release jar contains a Java 21 version using virtual threads.
+ *
+ * @author Ronald Brill
+ */
+public final class ParserThreads {
+
+    /** The prefix of the thread names. */
+    public static final String THREAD_NAME_PREFIX = "neko-parser-";
+
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    private static final Executor EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + COUNT.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ParserThreads() {
+        // utility class
+    }
+
+    /**
+     * @return the shared executor starting a new thread per task if no idle one is available
+     */
+    public static Executor executor() {
+        return EXECUTOR;
+    }
+}
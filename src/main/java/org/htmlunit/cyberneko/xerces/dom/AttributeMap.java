@@ -92,6 +92,9 @@ public Node setNamedItem(final Node arg) throws DOMException {
             previous.isOwned(false);
             // make sure it won't be mistaken with defaults in case it's reused
             previous.isSpecified(true);
+            if (previous.isIdAttribute()) {
+                transferIdAttribute(previous, argn);
+            }
         }
         else {
             i = -1 - i; // Insert point (may be end of list)
@@ -162,6 +165,9 @@ public Node setNamedItemNS(final Node arg) throws DOMException {
             previous.isOwned(false);
             // make sure it won't be mistaken with defaults in case it's reused
             previous.isSpecified(true);
+            if (previous.isIdAttribute()) {
+                transferIdAttribute(previous, argn);
+            }
         }
         else {
             // If we can't find by namespaceURI, localName, then we find by
@@ -196,6 +202,20 @@ public Node setNamedItemNS(final Node arg) throws DOMException {
 
     }
 
+    /**
+     * The replaced attribute was registered as ID attribute; move this
+     * registration to the new attribute to keep the identifier table
+     * of the document in sync.
+     */
+    private void transferIdAttribute(final AttrImpl previous, final AttrImpl argn) {
+        final CoreDocumentImpl ownerDocument = ownerNode.ownerDocument();
+        ownerDocument.removeIdentifier(previous.getValue());
+        previous.isIdAttribute(false);
+
+        argn.isIdAttribute(true);
+        ownerDocument.putIdentifier(argn.getValue(), (ElementImpl) ownerNode);
+    }
+
     /**
      * Removes an attribute specified by name.
      *
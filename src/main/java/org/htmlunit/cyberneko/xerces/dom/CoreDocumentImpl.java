@@ -92,6 +92,9 @@ public class CoreDocumentImpl extends ParentNode implements Document {
     /** Identifiers. */
     private HashMap<String, Element> identifiers_;
 
+    /** Tag name index, created on demand. */
+    private TagNameIndex tagNameIndex_;
+
     /** Table for quick check of child insertion. */
     private static final int[] kidOK;
 
@@ -108,7 +111,7 @@ public class CoreDocumentImpl extends ParentNode implements Document {
      * bad decision in the DOM's design.)
      * <p>
      * Note that changes which do not affect the tree's structure -- changing the
-     * node's name, for example -- do _not_ have to call changed().
+     * node's value, for example -- do _not_ have to call changed().
      * <p>
      * Alternative implementation would be to use a cryptographic Digest value
      * rather than a count. This would have the advantage that "harmless" changes
@@ -117,17 +120,18 @@ public class CoreDocumentImpl extends ParentNode implements Document {
      * that's the difference between "wildly unlikely" and "absurdly unlikely". IF
      * we start maintaining digests, we should consider taking advantage of them.
      * <p>
-     * Note: This used to be done a node basis, so that we knew what subtree
-     * changed. But since only DeepNodeList really use this today, the gain appears
-     * to be really small compared to the cost of having an int on every (parent)
-     * node plus having to walk up the tree all the way to the root to mark the
-     * branch as changed everytime a node is changed. So we now have a single
-     * counter global to the document. It means that some objects may flush their
-     * cache more often than necessary, but this makes nodes smaller and only the
-     * document needs to be marked as changed.
+     * Note: This counter is global to the document. Additionally every
+     * {@link ParentNode} carries the value of this counter at the time of the last
+     * change of its subtree; this way a live NodeList only has to be rebuilt if its
+     * own subtree was modified. Walking up the tree to mark the branch costs time,
+     * therefore this is only done after the first subtree stamp was requested (see
+     * {@link #subtreeChangesTracked_}).
      */
     protected int changes = 0;
 
+    /** True as soon as some live object uses the changes of a subtree. */
+    boolean subtreeChangesTracked_;
+
     // experimental
 
     /** Bypass error checking. */
@@ -772,6 +776,7 @@ public Node renameNode(final Node n, final String namespaceURI, final String nam
                 if (el instanceof ElementNSImpl impl) {
                     if (canRenameElements(namespaceURI, name, el)) {
                         impl.rename(namespaceURI, name);
+                        el.changed();
                     }
                     else {
                         el = replaceRenameElement(el, namespaceURI, name);
@@ -780,6 +785,7 @@ public Node renameNode(final Node n, final String namespaceURI, final String nam
                 else {
                     if (namespaceURI == null && canRenameElements(null, name, el)) {
                         el.rename(name);
+                        el.changed();
                     }
                     else {
                         el = replaceRenameElement(el, namespaceURI, name);
@@ -1383,6 +1389,20 @@ public Element getElementById(final String elementId) {
         return getIdentifier(elementId);
     }
 
+    /**
+     * Returns the index of all elements of this document by tag name. The index
+     * is created on first use and updated on every mutation of the tree
+     * afterwards.
+     *
+     * @return the tag name index
+     */
+    public TagNameIndex getTagNameIndex() {
+        if (tagNameIndex_ == null) {
+            tagNameIndex_ = new TagNameIndex(this);
+        }
+        return tagNameIndex_;
+    }
+
     /**
      * Remove all identifiers from the ID table.
      */
@@ -1801,12 +1821,18 @@ void insertingNode(final NodeImpl node, final boolean replace) {
      * A method to be called when a node has been inserted in the tree.
      */
     void insertedNode(final NodeImpl node, final NodeImpl newInternal, final boolean replace) {
+        if (tagNameIndex_ != null) {
+            tagNameIndex_.insertedNode(node, newInternal);
+        }
     }
 
     /**
      * A method to be called when a node is about to be removed from the tree.
      */
     void removingNode(final NodeImpl node, final NodeImpl oldChild, final boolean replace) {
+        if (tagNameIndex_ != null) {
+            tagNameIndex_.removingNode(node, oldChild);
+        }
     }
 
     /**
@@ -1867,5 +1893,8 @@ void renamedAttrNode(final Attr oldAt, final Attr newAt) {
      * A method to be called when an element has been renamed
      */
     void renamedElement(final Element oldEl, final Element newEl) {
+        if (tagNameIndex_ != null) {
+            tagNameIndex_.renamedElement();
+        }
     }
 }
@@ -200,6 +200,7 @@ void insertingNode(final NodeImpl node, final boolean replace) {
      */
     @Override
     void insertedNode(final NodeImpl node, final NodeImpl newInternal, final boolean replace) {
+        super.insertedNode(node, newInternal, replace);
     }
 
     /**
@@ -209,6 +210,7 @@ void insertedNode(final NodeImpl node, final NodeImpl newInternal, final boolean
      */
     @Override
     void removingNode(final NodeImpl node, final NodeImpl oldChild, final boolean replace) {
+        super.removingNode(node, oldChild, replace);
     }
 
     /**
@@ -293,5 +295,6 @@ void renamedAttrNode(final Attr oldAt, final Attr newAt) {
     @Override
     void renamedElement(final Element oldEl, final Element newEl) {
         // REVISIT: To be implemented!!!
+        super.renamedElement(oldEl, newEl);
     }
 }
@@ -1452,10 +1452,21 @@ public Object getUserData(final String key) {
      * Denotes that this node has changed.
      */
     protected void changed() {
-        // we do not actually store this information on every node, we only
-        // have a global indicator on the Document. Doing otherwise cost us too
-        // much for little gain.
-        ownerDocument().changed();
+        final CoreDocumentImpl ownerDocument = ownerDocument();
+        ownerDocument.changed();
+
+        if (ownerDocument.subtreeChangesTracked_) {
+            // mark the branch up to the root with the new document wide count,
+            // live lists rooted outside of this branch stay valid
+            final int changes = ownerDocument.changes();
+            NodeImpl node = this;
+            while (node != null && node != ownerDocument) {
+                if (node instanceof ParentNode parent) {
+                    parent.changes_ = changes;
+                }
+                node = node instanceof AttrImpl attr ? (NodeImpl) attr.getOwnerElement() : node.parentNode();
+            }
+        }
     }
 
     /**
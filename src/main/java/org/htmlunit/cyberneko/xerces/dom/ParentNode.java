@@ -70,6 +70,9 @@ public abstract class ParentNode extends ChildNode {
     /** NodeList cache. */
     protected NodeListCache fNodeListCache = null;
 
+    /** The document wide change count at the last change of this subtree. */
+    int changes_;
+
     /**
      * No public constructor; only subclasses of ParentNode should be instantiated,
      * and those normally via a Document's factory methods.
@@ -81,6 +84,18 @@ protected ParentNode(final CoreDocumentImpl ownerDocument) {
         this.ownerDocument = ownerDocument;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Returns the change count of this subtree; only changes of this node and
+     * its descendants are reflected.
+     */
+    @Override
+    protected int changes() {
+        ownerDocument.subtreeChangesTracked_ = true;
+        return changes_;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.xerces.dom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.htmlunit.cyberneko.util.FastHashMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Index of all elements of a document by tag name. The elements are kept in
+ * document order, the tag names are compared case-insensitive (like
+ * {@link DeepNodeListImpl} does).
+ * <p>
+ * The index is created on demand and filled by a single preorder walk of the
+ * document. Afterwards it follows the mutations of the tree. Subtrees appended
+ * at the end of the document (this is the way the parser builds the tree) and
+ * removed subtrees are updated in place; all other mutations mark the index as
+ * invalid and the next lookup does the walk again. Mutations of nodes not
+ * connected to the document are ignored.
+ * <p>
+ * Every indexed element has a position reflecting the document order; this
+ * allows to merge the entries of different tag names without comparing the
+ * tree positions of the elements.
+ * <p>
+ * Only the tag names used in the document have an entry; the entry is dropped
+ * if the last element having this name is removed. The list returned for a tag
+ * name without an entry (and a list whose entry was dropped) uses the entry
+ * created for the next element having this name.
+ *
+ * @see CoreDocumentImpl#getTagNameIndex()
+ */
+public final class TagNameIndex {
+
+    /** The number of tag names converted to upper case until the cache is cleared. */
+    private static final int MAX_KEYS = 512;
+
+    private final CoreDocumentImpl document_;
+
+    /** The entries by upper case tag name. */
+    private final FastHashMap<String, Entry> entries_ = new FastHashMap<>(64, 0.5f);
+
+    /** The upper case version of the tag names seen so far. */
+    private final FastHashMap<String, String> keys_ = new FastHashMap<>(64, 0.5f);
+
+    /** All elements of the document. */
+    private final Entry all_ = new Entry(null);
+
+    /** The entries touched by the current removal. */
+    private final ArrayList<Entry> removals_ = new ArrayList<>();
+
+    /** The position of the next element added. */
+    private int position_;
+
+    private boolean valid_;
+
+    TagNameIndex(final CoreDocumentImpl document) {
+        document_ = document;
+    }
+
+    /**
+     * Returns a live list of all elements of the document having the given tag
+     * name. The list is updated if the document changes.
+     *
+     * @param tagName the tag name (case-insensitive) or "*" for all elements
+     * @return the live list of elements in document order
+     */
+    public Entry getElementsByTagName(final String tagName) {
+        if ("*".equals(tagName)) {
+            return all_;
+        }
+
+        final String key = key(tagName);
+        final Entry entry = entries_.get(key);
+        if (entry == null) {
+            // there is no element with this name in the tree (otherwise the
+            // entry would exist already); the empty list is not part of the
+            // index, lookups of arbitrary names do not fill it
+            return new Entry(key);
+        }
+        return entry;
+    }
+
+    private String key(final String tagName) {
+        String key = keys_.get(tagName);
+        if (key == null) {
+            key = tagName.toUpperCase(Locale.ENGLISH);
+            if (keys_.size() >= MAX_KEYS) {
+                keys_.clear();
+            }
+            keys_.put(tagName, key);
+        }
+        return key;
+    }
+
+    private Entry entry(final ElementImpl element) {
+        final String key = key(element.getTagName());
+        Entry entry = entries_.get(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            entry.attached_ = true;
+            entries_.put(key, entry);
+        }
+        return entry;
+    }
+
+    private void drop(final Entry entry) {
+        entry.attached_ = false;
+        entries_.remove(entry.key_);
+    }
+
+    /**
+     * Makes sure the index reflects the current tree.
+     */
+    void validate() {
+        if (valid_) {
+            return;
+        }
+
+        for (final String key : entries_.keys()) {
+            entries_.get(key).clear();
+        }
+        all_.clear();
+        position_ = 0;
+
+        for (ChildNode child = document_.firstChild; child != null; child = child.nextSibling_) {
+            add(child);
+        }
+
+        // drop the tag names no longer used
+        for (final String key : entries_.keys()) {
+            final Entry entry = entries_.get(key);
+            if (entry.size_ == 0) {
+                drop(entry);
+            }
+        }
+        valid_ = true;
+    }
+
+    /**
+     * @return the number of tag names having an entry
+     */
+    int getEntryCount() {
+        return entries_.size();
+    }
+
+    /**
+     * Adds all elements of the subtree in preorder.
+     */
+    private void add(final ChildNode root) {
+        NodeImpl current = root;
+        while (current != null) {
+            if (current instanceof ElementImpl element) {
+                final int position = position_++;
+                all_.add(element, position);
+                entry(element).add(element, position);
+            }
+
+            // down, right or up and right (but not past the root)
+            if (current instanceof ParentNode parent && parent.firstChild != null) {
+                current = parent.firstChild;
+            }
+            else {
+                current = next(current, root);
+            }
+        }
+    }
+
+    /**
+     * Removes all elements of the subtree. The elements of a subtree are
+     * always a continuous run in every entry.
+     */
+    private void remove(final ChildNode root) {
+        int count = 0;
+        ElementImpl first = null;
+
+        NodeImpl current = root;
+        while (current != null) {
+            if (current instanceof ElementImpl element) {
+                if (first == null) {
+                    first = element;
+                }
+                count++;
+
+                final Entry entry = entry(element);
+                if (entry.removeCount_ == 0) {
+                    entry.removeFirst_ = element;
+                    removals_.add(entry);
+                }
+                entry.removeCount_++;
+            }
+
+            if (current instanceof ParentNode parent && parent.firstChild != null) {
+                current = parent.firstChild;
+            }
+            else {
+                current = next(current, root);
+            }
+        }
+
+        if (first != null) {
+            all_.removeRun(first, count);
+        }
+        for (final Entry entry : removals_) {
+            entry.removeRun(entry.removeFirst_, entry.removeCount_);
+            entry.removeFirst_ = null;
+            entry.removeCount_ = 0;
+            if (entry.size_ == 0) {
+                drop(entry);
+            }
+        }
+        removals_.clear();
+    }
+
+    private static NodeImpl next(NodeImpl current, final NodeImpl root) {
+        while (current != root) {
+            final ChildNode next = ((ChildNode) current).nextSibling_;
+            if (next != null) {
+                return next;
+            }
+            current = current.parentNode();
+        }
+        return null;
+    }
+
+    private static boolean containsElements(final NodeImpl node) {
+        return node instanceof ElementImpl
+                || node instanceof ParentNode parent && parent.firstChild != null;
+    }
+
+    /**
+     * Called after the child was inserted into the parent.
+     *
+     * @param parent the parent
+     * @param child the new child
+     */
+    void insertedNode(final NodeImpl parent, final NodeImpl child) {
+        if (!valid_ || !containsElements(child)) {
+            return;
+        }
+
+        boolean atEnd = ((ChildNode) child).nextSibling_ == null;
+        NodeImpl node = parent;
+        while (node != document_) {
+            if (!(node instanceof ChildNode childNode)) {
+                // not connected to the document
+                return;
+            }
+            atEnd = atEnd && childNode.nextSibling_ == null;
+            node = node.parentNode();
+        }
+
+        if (atEnd) {
+            add((ChildNode) child);
+        }
+        else {
+            valid_ = false;
+        }
+    }
+
+    /**
+     * Called before the child is removed from the parent.
+     *
+     * @param parent the parent
+     * @param child the child to be removed
+     */
+    void removingNode(final NodeImpl parent, final NodeImpl child) {
+        if (!valid_ || !containsElements(child)) {
+            return;
+        }
+
+        NodeImpl node = parent;
+        while (node != document_) {
+            if (node == null) {
+                // not connected to the document
+                return;
+            }
+            node = node.parentNode();
+        }
+
+        remove((ChildNode) child);
+    }
+
+    /**
+     * Called if an element was renamed.
+     */
+    void renamedElement() {
+        valid_ = false;
+    }
+
+    /**
+     * The elements having one tag name. This is a live {@link NodeList}, every
+     * access validates the index first. An entry not (or no longer) part of the
+     * index is empty and answers with the entry of the index for its tag name.
+     */
+    public final class Entry implements NodeList {
+        /** The upper case tag name, null for all elements. */
+        private final String key_;
+        private boolean attached_;
+
+        private ElementImpl[] elements_ = new ElementImpl[8];
+        private int[] positions_ = new int[8];
+        private int size_;
+
+        // scratch space used by remove()
+        private ElementImpl removeFirst_;
+        private int removeCount_;
+
+        Entry(final String key) {
+            key_ = key;
+            attached_ = key == null;
+        }
+
+        /**
+         * Validates the index.
+         *
+         * @return the entry holding the elements for this tag name
+         */
+        private Entry current() {
+            validate();
+            if (attached_) {
+                return this;
+            }
+            final Entry entry = entries_.get(key_);
+            return entry == null ? this : entry;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getLength() {
+            return current().size_;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ElementImpl item(final int index) {
+            final Entry entry = current();
+            if (index < 0 || index >= entry.size_) {
+                return null;
+            }
+            return entry.elements_[index];
+        }
+
+        /**
+         * Returns the position of the element at the given index. The positions
+         * are ascending in document order and can be used to merge the elements
+         * of different entries. The positions are only comparable as long as the
+         * document is not modified.
+         *
+         * @param index the index of the element
+         * @return the position
+         */
+        public int getPosition(final int index) {
+            return current().positions_[index];
+        }
+
+        void add(final ElementImpl element, final int position) {
+            if (size_ == elements_.length) {
+                final int newLength = size_ << 1;
+                final ElementImpl[] elements = new ElementImpl[newLength];
+                System.arraycopy(elements_, 0, elements, 0, size_);
+                elements_ = elements;
+
+                final int[] positions = new int[newLength];
+                System.arraycopy(positions_, 0, positions, 0, size_);
+                positions_ = positions;
+            }
+            elements_[size_] = element;
+            positions_[size_] = position;
+            size_++;
+        }
+
+        void clear() {
+            Arrays.fill(elements_, 0, size_, null);
+            size_ = 0;
+        }
+
+        void removeRun(final Node first, final int count) {
+            int start = -1;
+            for (int i = size_ - 1; i >= 0; i--) {
+                if (elements_[i] == first) {
+                    start = i;
+                    break;
+                }
+            }
+            if (start < 0 || start + count > size_) {
+                // should not happen, start from scratch
+                valid_ = false;
+                return;
+            }
+
+            final int tail = size_ - start - count;
+            System.arraycopy(elements_, start + count, elements_, start, tail);
+            System.arraycopy(positions_, start + count, positions_, start, tail);
+            Arrays.fill(elements_, start + tail, size_, null);
+            size_ -= count;
+        }
+    }
+}
@@ -17,11 +17,11 @@
 import java.io.CharConversionException;
 import java.io.IOException;
 import java.util.Stack;
+import java.util.function.Supplier;
 
 import org.htmlunit.cyberneko.xerces.dom.AttrImpl;
 import org.htmlunit.cyberneko.xerces.dom.CoreDocumentImpl;
 import org.htmlunit.cyberneko.xerces.dom.DocumentImpl;
-import org.htmlunit.cyberneko.xerces.dom.TextImpl;
 import org.htmlunit.cyberneko.xerces.util.DOMMessageFormatter;
 import org.htmlunit.cyberneko.xerces.util.ErrorHandlerWrapper;
 import org.htmlunit.cyberneko.xerces.util.SAXMessageFormatter;
@@ -103,6 +103,9 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
     /** The document class to use. */
     protected Class<? extends DocumentImpl> fDocumentClass;
 
+    /** The document factory to use; takes precedence over the document class. */
+    protected Supplier<? extends DocumentImpl> fDocumentFactory;
+
     /** The document type node. */
     protected DocumentType fDocumentType;
 
@@ -110,7 +113,7 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
     protected Node fCurrentNode;
     protected CDATASection fCurrentCDATASection;
 
-    /** Character buffer. */
+    /** Character buffer, collects the characters of the next text node. */
     protected final XMLString fStringBuffer = new XMLString();
 
     protected boolean fNamespaceAware;
@@ -118,7 +121,13 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
     /** True if inside CDATA section. */
     protected boolean fInCDATASection;
 
-    /** True if saw the first chunk of characters. */
+    /**
+     * True if saw the first chunk of characters.
+     *
+     * @deprecated no longer used, the characters are collected in the
+     *             {@link #fStringBuffer} until {@link #setCharacterData()} is called
+     */
+    @Deprecated
     protected boolean fFirstChunk = false;
 
     // data
@@ -161,6 +170,19 @@ protected AbstractDOMParser(final XMLParserConfiguration config, final Class<?
      */
     protected void setDocumentClass(final Class<? extends DocumentImpl> documentClass) {
         fDocumentClass = documentClass;
+        fDocumentFactory = null;
+    }
+
+    /**
+     * Sets the factory used to create the document when parsing starts. Using a
+     * factory (e.g. <code>HTMLDocumentImpl::new</code>) avoids the reflective
+     * construction of the document class.
+     *
+     * @param documentFactory The document factory to use when constructing the
+     *                        DOM tree or null to use the document class.
+     */
+    public void setDocumentFactory(final Supplier<? extends DocumentImpl> documentFactory) {
+        fDocumentFactory = documentFactory;
     }
 
     /**
@@ -218,7 +240,7 @@ public void comment(final XMLString text, final Augmentations augs) throws XNIEx
         }
 
         final Comment comment = fDocument.createComment(text.toString());
-        setCharacterData(false);
+        setCharacterData();
         fCurrentNode.appendChild(comment);
     }
 
@@ -246,7 +268,7 @@ public void processingInstruction(final String target, final XMLString data,
         }
 
         final ProcessingInstruction pi = fDocument.createProcessingInstruction(target, data.toString());
-        setCharacterData(false);
+        setCharacterData();
         fCurrentNode.appendChild(pi);
     }
 
@@ -276,44 +298,41 @@ public void startDocument(final XMLLocator locator, final String encoding,
                     final NamespaceContext namespaceContext, final Augmentations augs) throws XNIException {
 
         fLocator = locator;
-        if (fDocumentClass == null) {
-            fDocument = new DocumentImpl();
-            fDocumentImpl = (CoreDocumentImpl) fDocument;
-            // REVISIT: when DOM Level 3 is REC rely on Document.support
-            // instead of specific class
-            // set DOM error checking off
-            fDocumentImpl.setStrictErrorChecking(false);
-            // set actual encoding
-            fDocumentImpl.setInputEncoding(encoding);
-            // set documentURI
+        fDocumentImpl = createDocument();
+        fDocument = fDocumentImpl;
+
+        // REVISIT: when DOM Level 3 is REC rely on
+        // Document.support instead of specific class
+        // set DOM error checking off
+        fDocumentImpl.setStrictErrorChecking(false);
+        // set actual encoding
+        fDocumentImpl.setInputEncoding(encoding);
+        // set documentURI
+        if (locator != null) {
             fDocumentImpl.setDocumentURI(locator.getSystemId());
         }
-        else {
-            // use specified document class
-            try {
-                fDocument = fDocumentClass.newInstance();
-                fDocumentImpl = (CoreDocumentImpl) fDocument;
-
-                // REVISIT: when DOM Level 3 is REC rely on
-                // Document.support instead of specific class
-                // set DOM error checking off
-                fDocumentImpl.setStrictErrorChecking(false);
-                // set actual encoding
-                fDocumentImpl.setInputEncoding(encoding);
-                // set documentURI
-                if (locator != null) {
-                    fDocumentImpl.setDocumentURI(locator.getSystemId());
-                }
-            }
-            catch (final Exception e) {
-                throw new RuntimeException(
-                        DOMMessageFormatter.formatMessage("CannotCreateDocumentClass",
-                                                new Object[] {fDocumentClass.getSimpleName()}));
-            }
-        }
         fCurrentNode = fDocument;
     }
 
+    private DocumentImpl createDocument() {
+        if (fDocumentFactory != null) {
+            return fDocumentFactory.get();
+        }
+        if (fDocumentClass == null) {
+            return new DocumentImpl();
+        }
+
+        // use specified document class
+        try {
+            return fDocumentClass.getConstructor().newInstance();
+        }
+        catch (final Exception e) {
+            throw new RuntimeException(
+                    DOMMessageFormatter.formatMessage("CannotCreateDocumentClass",
+                                            new Object[] {fDocumentClass.getSimpleName()}));
+        }
+    }
+
     /**
      * Notifies of the presence of an XMLDecl line in the document. If present, this
      * method will be called immediately following the startDocument call.
@@ -358,6 +377,7 @@ public void doctypeDecl(final String rootElement, final String publicId, final S
             final Augmentations augs) throws XNIException {
         if (fDocumentImpl != null) {
             fDocumentType = fDocumentImpl.createDocumentType(rootElement, publicId, systemId);
+            setCharacterData();
             fCurrentNode.appendChild(fDocumentType);
         }
     }
@@ -418,9 +438,19 @@ public void startElement(final QName element, final XMLAttributes attributes,
 
                 attrImpl.setSpecified(specified);
                 // REVISIT: Handle entities in attribute value.
+
+                // maintain the id index of the document; like the browsers
+                // the first element wins if the same id is used more than once
+                if (specified
+                        && fAttrQName.getUri() == null
+                        && "id".equalsIgnoreCase(fAttrQName.getRawname())
+                        && !attrValue.isEmpty()
+                        && fDocumentImpl.getIdentifier(attrValue) == null) {
+                    el.setIdAttributeNode(attr, true);
+                }
             }
         }
-        setCharacterData(false);
+        setCharacterData();
 
         fCurrentNode.appendChild(el);
         fCurrentNode = el;
@@ -468,35 +498,9 @@ public void characters(final XMLString text, final Augmentations augs) throws XN
             }
         }
         else {
-            // if type is union (XML Schema) it is possible that we receive
-            // character call with empty data
-            if (text.length() == 0) {
-                return;
-            }
-
-            final Node child = fCurrentNode.getLastChild();
-            if (child != null && child.getNodeType() == Node.TEXT_NODE) {
-                // collect all the data into the string buffer.
-                if (fFirstChunk) {
-                    if (fDocumentImpl != null) {
-                        fStringBuffer.append(((TextImpl) child).removeData());
-                    }
-                    else {
-                        fStringBuffer.append(((Text) child).getData());
-                        child.setNodeValue(null);
-                    }
-                    fFirstChunk = false;
-                }
-                if (text.length() > 0) {
-                    fStringBuffer.append(text);
-                }
-            }
-            else {
-                fFirstChunk = true;
-                final Text textNode = fDocument.createTextNode(text.toString());
-                fCurrentNode.appendChild(textNode);
-            }
-
+            // collect all the data into the string buffer; the text node
+            // is created by setCharacterData() when the next node starts
+            fStringBuffer.append(text);
         }
     }
 
@@ -513,7 +517,7 @@ public void endElement(final QName element, final Augmentations augs) throws XNI
         if (DEBUG_EVENTS) {
             System.out.println("==>endElement (" + element.getRawname() + ")");
         }
-        setCharacterData(false);
+        setCharacterData();
         fCurrentNode = fCurrentNode.getParentNode();
     }
 
@@ -528,7 +532,7 @@ public void endElement(final QName element, final Augmentations augs) throws XNI
     public void startCDATA(final Augmentations augs) throws XNIException {
         fInCDATASection = true;
         if (fCreateCDATANodes) {
-            setCharacterData(false);
+            setCharacterData();
         }
     }
 
@@ -559,6 +563,10 @@ public void endCDATA(final Augmentations augs) throws XNIException {
      */
     @Override
     public void endDocument(final Augmentations augs) throws XNIException {
+        if (fCurrentNode != null) {
+            setCharacterData();
+        }
+
         // REVISIT: when DOM Level 3 is REC rely on Document.support
         // instead of specific class
         // set the actual encoding and set DOM error checking back on
@@ -656,44 +664,44 @@ protected Attr createAttrNode(final QName attrQName) {
     }
 
     /*
-     * When the first characters() call is received, the data is stored in a new
-     * Text node. If right after the first characters() we receive another chunk of
-     * data, the data from the Text node, following the new characters are appended
-     * to the fStringBuffer and the text node data is set to empty.
-     *
-     * This function is called when the state is changed and the data must be
-     * appended to the current node.
-     *
-     * Note: if DOMFilter is set, you must make sure that if Node is skipped, or
-     * removed fFistChunk must be set to true, otherwise some data can be lost.
-     *
+     * The characters() calls only collect the data in the fStringBuffer. This
+     * function is called when the state is changed (a new node starts or the
+     * current one ends); the collected data is appended to the current node as
+     * one text node, so every text node is created with a single String
+     * allocation no matter how many chunks the scanner delivered.
+     *
+     * If the current node already ends with a text node (there was no node in
+     * between), the data is appended to this one.
      */
-    protected void setCharacterData(final boolean sawChars) {
-
-        // handle character data
-        fFirstChunk = sawChars;
+    protected void setCharacterData() {
+        if (fStringBuffer.length() == 0) {
+            return;
+        }
 
-        // if we have data in the buffer we must have created
-        // a text node already.
+        final String data = fStringBuffer.toString();
+        fStringBuffer.clear();
 
         final Node child = fCurrentNode.getLastChild();
-        if (child != null) {
-            if (fStringBuffer.length() > 0) {
-                // REVISIT: should this check be performed?
-                if (child.getNodeType() == Node.TEXT_NODE) {
-                    if (fDocumentImpl != null) {
-                        ((TextImpl) child).replaceData(fStringBuffer.toString());
-                    }
-                    else {
-                        ((Text) child).setData(fStringBuffer.toString());
-                    }
-                }
-                // reset string buffer
-                fStringBuffer.clear();
-            }
+        if (child != null && child.getNodeType() == Node.TEXT_NODE) {
+            ((Text) child).appendData(data);
+        }
+        else {
+            fCurrentNode.appendChild(fDocument.createTextNode(data));
         }
     }
 
+    /**
+     * Appends the collected character data to the current node.
+     *
+     * @param sawChars stored in {@link #fFirstChunk}
+     * @deprecated use {@link #setCharacterData()}
+     */
+    @Deprecated
+    protected void setCharacterData(final boolean sawChars) {
+        fFirstChunk = sawChars;
+        setCharacterData();
+    }
+
     /**
      * Parses the input source specified by the given system identifier.
      * <p>
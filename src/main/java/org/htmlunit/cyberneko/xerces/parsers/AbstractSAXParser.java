@@ -48,6 +48,20 @@
  * This is the base class of all SAX parsers. It implements both the SAX1 and
  * SAX2 parser functionality, while the actual pipeline is defined in the parser
  * configuration.
+ * <p>
+ * The events are passed to the SAX handlers without copying the data:
+ * <ul>
+ * <li>{@link ContentHandler#characters(char[], int, int)} and
+ * {@link LexicalHandler#comment(char[], int, int)} receive the internal
+ * character array of the {@link XMLString} delivered by the pipeline,
+ * usually a buffer of the scanner that is reused for the following events.</li>
+ * <li>{@link ContentHandler#startElement(String, String, String, org.xml.sax.Attributes)}
+ * receives the {@link XMLAttributes} of the pipeline itself; this object
+ * implements {@link org.xml.sax.ext.Attributes2} and is reused for the
+ * following elements.</li>
+ * </ul>
+ * As required by the SAX api, handlers have to copy the data they like to
+ * keep beyond the callback.
  *
  * @author Arnaud Le Hors, IBM
  * @author Andy Clark, IBM
@@ -232,6 +246,7 @@ public void startElement(final QName element, final XMLAttributes attributes,
 
                 final String uri = element.getUri() != null ? element.getUri() : "";
                 final String localpart = fNamespaces ? element.getLocalpart() : "";
+                // the XMLAttributes are SAX Attributes, no conversion needed
                 fContentHandler.startElement(uri, localpart, element.getRawname(), attributes);
             }
         }
@@ -260,6 +275,7 @@ public void characters(final XMLString text, final Augmentations augs) throws XN
         try {
             // SAX2
             if (fContentHandler != null) {
+                // passes the internal buffer, no copy
                 text.characters(fContentHandler);
             }
         }
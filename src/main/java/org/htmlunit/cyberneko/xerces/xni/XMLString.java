@@ -566,6 +566,22 @@ public char[] getChars() {
         return Arrays.copyOf(data_, length_);
     }
 
+    /**
+     * Copies characters from this buffer into the destination array,
+     * see {@link String#getChars(int, int, char[], int)}.
+     *
+     * @param srcBegin index of the first character to copy
+     * @param srcEnd index after the last character to copy
+     * @param dst the destination array
+     * @param dstBegin the start offset in the destination array
+     */
+    public void getChars(final int srcBegin, final int srcEnd, final char[] dst, final int dstBegin) {
+        if (srcBegin < 0 || srcBegin > srcEnd || srcEnd > length_) {
+            throw new IndexOutOfBoundsException("begin " + srcBegin + ", end " + srcEnd + ", length " + length_);
+        }
+        System.arraycopy(data_, srcBegin, dst, dstBegin, srcEnd - srcBegin);
+    }
+
     /**
      * Returns a string representation of this buffer. This will be a copy
      * operation. If the buffer is empty, we get a constant empty String back
@@ -1107,17 +1123,35 @@ public boolean contains(final XMLString s) {
         return s != null && indexOf(data_, 0, length_, s.data_, 0, s.length_, 0) > -1;
     }
 
-    // this stuff is here for performance reasons to avoid a copy
-    // it has been taken from the old XMLString and because there was no JavaDoc
-    // we still don't have any, legacy code
+    /**
+     * Passes the internal character array to
+     * {@link ContentHandler#characters(char[], int, int)}; the chars are not copied.
+     *
+     * @param contentHandler the handler
+     * @throws SAXException in case of error
+     */
     public void characters(final ContentHandler contentHandler) throws SAXException {
         contentHandler.characters(data_, 0, length_);
     }
 
+    /**
+     * Passes the internal character array to
+     * {@link ContentHandler#ignorableWhitespace(char[], int, int)}; the chars are not copied.
+     *
+     * @param contentHandler the handler
+     * @throws SAXException in case of error
+     */
     public void ignorableWhitespace(final ContentHandler contentHandler) throws SAXException {
         contentHandler.ignorableWhitespace(data_, 0, length_);
     }
 
+    /**
+     * Passes the internal character array to
+     * {@link LexicalHandler#comment(char[], int, int)}; the chars are not copied.
+     *
+     * @param lexicalHandler the handler
+     * @throws SAXException in case of error
+     */
     public void comment(final LexicalHandler lexicalHandler) throws SAXException {
         lexicalHandler.comment(data_, 0, length_);
     }
@@ -55,6 +55,17 @@ public XNIException(final String message, final Exception exception) {
         super(message, exception);
     }
 
+    /**
+     * Constructs an XNI exception with a message and optionally without a stack trace,
+     * for exceptions that are only created to report something (and usually not thrown).
+     *
+     * @param message            The exception message.
+     * @param writableStackTrace False to skip filling in the (expensive) stack trace.
+     */
+    protected XNIException(final String message, final boolean writableStackTrace) {
+        super(message, null, true, writableStackTrace);
+    }
+
     /**
      * @return the wrapped exception.
      */
@@ -50,20 +50,30 @@ public class XMLParseException extends XNIException {
     // Constructs a parse exception.
     public XMLParseException(final XMLLocator locator, final String message) {
         super(message);
-        if (locator != null) {
-            publicId_ = locator.getPublicId();
-            literalSystemId_ = locator.getLiteralSystemId();
-            systemId_ = locator.getSystemId();
-            baseSystemId_ = locator.getBaseSystemId();
-            lineNumber_ = locator.getLineNumber();
-            columnNumber_ = locator.getColumnNumber();
-            characterOffset_ = locator.getCharacterOffset();
-        }
+        setLocation(locator);
     }
 
     // Constructs a parse exception.
     public XMLParseException(final XMLLocator locator, final String message, final Exception exception) {
         super(message, exception);
+        setLocation(locator);
+    }
+
+    /**
+     * Constructs a parse exception without a stack trace; for exceptions that
+     * are only created to be passed to an error handler. Subclasses may provide
+     * the message lazily by overriding {@link #getMessage()}.
+     *
+     * @param locator the locator to take the location from
+     * @param message the message, may be null
+     * @param writableStackTrace false to skip filling in the stack trace
+     */
+    protected XMLParseException(final XMLLocator locator, final String message, final boolean writableStackTrace) {
+        super(message, writableStackTrace);
+        setLocation(locator);
+    }
+
+    private void setLocation(final XMLLocator locator) {
         if (locator != null) {
             publicId_ = locator.getPublicId();
             literalSystemId_ = locator.getLiteralSystemId();
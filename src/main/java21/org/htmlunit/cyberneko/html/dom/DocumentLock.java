@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.html.dom;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Guards the methods of an {@link HTMLDocumentImpl} creating or moving the
+ * implied html, head and body elements. The actions are non-capturing method
+ * references of the document, they get the document (and the argument) passed.
+ * <p>
+ * This is the Java 21 version using a {@link ReentrantLock} instead of the
+ * monitor of the document; a virtual thread blocked on a monitor pins its
+ * carrier thread, a virtual thread waiting for a {@link ReentrantLock} does not.
+ * Code synchronizing on the document does not exclude the guarded methods.
+ *
+ * @author Ronald Brill
+ */
+final class DocumentLock {
+
+    private final ReentrantLock lock_ = new ReentrantLock();
+
+    /**
+     * @param <T> the result type
+     * @param document the document
+     * @param action the action to run while holding the lock
+     * @return the result of the action
+     */
+    <T> T call(final HTMLDocumentImpl document, final Function<HTMLDocumentImpl, T> action) {
+        lock_.lock();
+        try {
+            return action.apply(document);
+        }
+        finally {
+            lock_.unlock();
+        }
+    }
+
+    /**
+     * @param <A> the argument type
+     * @param <T> the result type
+     * @param document the document
+     * @param arg the argument of the action
+     * @param action the action to run while holding the lock
+     * @return the result of the action
+     */
+    <A, T> T call(final HTMLDocumentImpl document, final A arg, final BiFunction<HTMLDocumentImpl, A, T> action) {
+        lock_.lock();
+        try {
+            return action.apply(document, arg);
+        }
+        finally {
+            lock_.unlock();
+        }
+    }
+
+    /**
+     * @param <A> the argument type
+     * @param document the document
+     * @param arg the argument of the action
+     * @param action the action to run while holding the lock
+     */
+    <A> void run(final HTMLDocumentImpl document, final A arg, final BiConsumer<HTMLDocumentImpl, A> action) {
+        lock_.lock();
+        try {
+            action.accept(document, arg);
+        }
+        finally {
+            lock_.unlock();
+        }
+    }
+
+    /**
+     * Runs the action holding the lock; in contrast to the Java 17 version
+     * the monitor of the argument is not taken, the lock already excludes
+     * the other guarded methods.
+     *
+     * @param <A> the argument type
+     * @param document the document
+     * @param arg the argument of the action
+     * @param action the action to run while holding the lock
+     */
+    <A> void runExclusive(final HTMLDocumentImpl document, final A arg, final BiConsumer<HTMLDocumentImpl, A> action) {
+        lock_.lock();
+        try {
+            action.accept(document, arg);
+        }
+        finally {
+            lock_.unlock();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Provides the executor for the parser threads, e.g. for the scanner of a
+ * pipelined parse ({@link org.htmlunit.cyberneko.HTMLConfiguration#PIPELINE_EXECUTOR})
+ * or the chunks of the {@link org.htmlunit.cyberneko.HTMLParallelTokenizer}.
+ * <p>
+ * This is the Java 21 version using virtual threads; the scanner of a
+ * pipelined parse spends much of its time waiting for free token buffers,
+ * which costs no platform thread here.
+ *
+ * @author Ronald Brill
+ */
+public final class ParserThreads {
+
+    /** The prefix of the thread names. */
+    public static final String THREAD_NAME_PREFIX = "neko-parser-";
+
+    private static final Executor EXECUTOR =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(THREAD_NAME_PREFIX, 0).factory());
+
+    private ParserThreads() {
+        // utility class
+    }
+
+    /**
+     * @return the shared executor starting a new virtual thread per task
+     */
+    public static Executor executor() {
+        return EXECUTOR;
+    }
+}
@@ -20,6 +20,7 @@
 module org.htmlunit.cyberneko {
     requires java.xml;
     requires jdk.xml.dom;
+    requires static jdk.jfr;
 
     exports org.htmlunit.cyberneko;
     exports org.htmlunit.cyberneko.filters;
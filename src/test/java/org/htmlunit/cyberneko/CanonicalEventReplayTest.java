@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.htmlunit.cyberneko.filters.EventRecorderFilter;
+import org.htmlunit.cyberneko.filters.EventReplayer;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * This test records the event stream of every test file using the
+ * {@link EventRecorderFilter}, replays it with the {@link EventReplayer}
+ * and compares the canonical output of both.
+ *
+ * @author Ronald Brill
+ */
+public class CanonicalEventReplayTest extends AbstractCanonicalTest {
+
+    @ParameterizedTest
+    @MethodSource("testFiles")
+    public void runTest(final File dataFile) throws Exception {
+        final StringWriter parsed = new StringWriter();
+        final EventRecorderFilter recorder = new EventRecorderFilter();
+        final Writer parsedWriter = new Writer(parsed);
+
+        final HTMLConfiguration htmlConfiguration = new HTMLConfiguration();
+        htmlConfiguration.setProperty(HTMLConfiguration.FILTERS,
+                new XMLDocumentFilter[] {recorder, parsedWriter});
+        htmlConfiguration.parse(new XMLInputSource(null, null, null,
+                new StringReader(getCanonical(dataFile)), StandardCharsets.UTF_8.name()));
+
+        final byte[] recording = recorder.getRecording();
+        assertNotNull(recording, dataFile.toString());
+
+        // replay twice to make sure the replayer does not keep state
+        final EventReplayer replayer = new EventReplayer(recording);
+        for (int i = 0; i < 2; i++) {
+            final StringWriter replayed = new StringWriter();
+            replayer.setDocumentHandler(new Writer(replayed));
+            replayer.replay();
+
+            assertEquals(parsed.toString(), replayed.toString(), dataFile.toString());
+        }
+    }
+}
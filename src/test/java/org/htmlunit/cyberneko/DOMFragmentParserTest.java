@@ -16,13 +16,22 @@
 package org.htmlunit.cyberneko;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.io.StringReader;
+import java.util.Locale;
 
+import org.htmlunit.cyberneko.filters.DefaultFilter;
 import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
 import org.htmlunit.cyberneko.parsers.DOMFragmentParser;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLParserConfiguration;
 import org.junit.jupiter.api.Test;
 import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.bootstrap.DOMImplementationRegistry;
 import org.w3c.dom.html.HTMLDocument;
@@ -128,5 +137,136 @@ public void instanceReuse() throws Exception {
         final String str2 = writer.writeToString(fragment2);
         assertEquals(str1, str2);
     }
-}
 
+    /**
+     * @throws Exception on error
+     */
+    @Test
+    public void fragmentCache() throws Exception {
+        final DOMFragmentParser parser = new DOMFragmentParser();
+        parser.setFragmentCacheSize(2);
+
+        final String s = "<b class='x'>one<i>two</b><!--c-->";
+        final HTMLDocument document1 = new HTMLDocumentImpl();
+        final DocumentFragment fragment1 = document1.createDocumentFragment();
+        parser.parseContent(s, fragment1);
+        assertEquals(0, parser.getFragmentCacheHits());
+        assertEquals(1, parser.getFragmentCacheMisses());
+
+        // a hit in a different document
+        final HTMLDocument document2 = new HTMLDocumentImpl();
+        final DocumentFragment fragment2 = document2.createDocumentFragment();
+        parser.parseContent(s, fragment2);
+        assertEquals(1, parser.getFragmentCacheHits());
+        assertEquals(1, parser.getFragmentCacheMisses());
+        assertSame(document2, fragment2.getFirstChild().getOwnerDocument());
+
+        final DOMImplementationRegistry registry = DOMImplementationRegistry.newInstance();
+        final DOMImplementationLS impl = (DOMImplementationLS) registry.getDOMImplementation("LS");
+        final LSSerializer writer = impl.createLSSerializer();
+        assertEquals(writer.writeToString(fragment1), writer.writeToString(fragment2));
+
+        // the context is part of the key
+        parser.setProperty(HTMLTagBalancer.FRAGMENT_CONTEXT_STACK, new QName[] {new QName(null, "td", "td", null)});
+        parser.parseContent(s, document2.createDocumentFragment());
+        assertEquals(1, parser.getFragmentCacheHits());
+        assertEquals(2, parser.getFragmentCacheMisses());
+        assertEquals(2, parser.getFragmentCacheEntries());
+
+        // least recently used is evicted
+        parser.setProperty(HTMLTagBalancer.FRAGMENT_CONTEXT_STACK, null);
+        parser.parseContent("<p>other", document2.createDocumentFragment());
+        assertEquals(2, parser.getFragmentCacheEntries());
+        parser.parseContent(s, document2.createDocumentFragment());
+        assertEquals(1, parser.getFragmentCacheHits());
+        assertEquals(4, parser.getFragmentCacheMisses());
+
+        // features invalidate the cache
+        parser.setFeature("http://cyberneko.org/html/features/scanner/cdata-sections", true);
+        assertEquals(0, parser.getFragmentCacheEntries());
+    }
+
+    /**
+     * @throws Exception on error
+     */
+    @Test
+    public void fragmentCacheContextNamespace() throws Exception {
+        final DOMFragmentParser parser = new DOMFragmentParser();
+        parser.setFragmentCacheSize(2);
+        final HTMLDocument document = new HTMLDocumentImpl();
+
+        parser.setProperty(HTMLTagBalancer.FRAGMENT_CONTEXT_STACK, new QName[] {new QName(null, "a", "a", null)});
+        parser.parseContent("<b>one</b>", document.createDocumentFragment());
+        parser.setProperty(HTMLTagBalancer.FRAGMENT_CONTEXT_STACK,
+                new QName[] {new QName(null, "a", "a", "http://www.w3.org/2000/svg")});
+        parser.parseContent("<b>one</b>", document.createDocumentFragment());
+        assertEquals(0, parser.getFragmentCacheHits());
+        assertEquals(2, parser.getFragmentCacheMisses());
+        assertEquals(2, parser.getFragmentCacheEntries());
+    }
+
+    /**
+     * @throws Exception on error
+     */
+    @Test
+    public void fragmentCacheFilters() throws Exception {
+        final StringBuilder seen = new StringBuilder();
+        final DOMFragmentParser parser = new DOMFragmentParser();
+        parser.setProperty(HTMLConfiguration.FILTERS, new XMLDocumentFilter[] {new DefaultFilter() {
+            @Override
+            public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs) {
+                seen.append('<').append(element.getLocalpart()).append('>');
+                super.startElement(new QName(null, "i", "i", null), attributes, augs);
+            }
+        }});
+        parser.setFragmentCacheSize(2);
+        final HTMLDocument document = new HTMLDocumentImpl();
+
+        final DocumentFragment fragment1 = document.createDocumentFragment();
+        parser.parseContent("<b>one</b>", fragment1);
+        final DocumentFragment fragment2 = document.createDocumentFragment();
+        parser.parseContent("<b>one</b>", fragment2);
+        assertEquals(1, parser.getFragmentCacheHits());
+
+        // the hit is replayed through the filters once
+        assertEquals("<b><b>", seen.toString());
+        assertEquals("i", fragment2.getFirstChild().getNodeName().toLowerCase(Locale.ROOT));
+        assertEquals(fragment1.getFirstChild().getNodeName(), fragment2.getFirstChild().getNodeName());
+    }
+
+    /**
+     * @throws Exception on error
+     */
+    @Test
+    public void fragmentCacheResetsFilters() throws Exception {
+        final DOMFragmentParser parser = new DOMFragmentParser();
+        // numbers the elements of every parse
+        parser.setProperty(HTMLConfiguration.FILTERS, new XMLDocumentFilter[] {new DefaultFilter() {
+            private int count_;
+
+            @Override
+            public void reset(final XMLParserConfiguration xmlParserConfiguration) {
+                count_ = 0;
+            }
+
+            @Override
+            public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs) {
+                attributes.addAttribute(new QName(null, "id", "id", null), "CDATA", "e" + ++count_);
+                super.startElement(element, attributes, augs);
+            }
+        }});
+        parser.setFragmentCacheSize(2);
+        final HTMLDocument document = new HTMLDocumentImpl();
+
+        final DocumentFragment fragment1 = document.createDocumentFragment();
+        parser.parseContent("<b>one</b><i>two</i>", fragment1);
+        final DocumentFragment fragment2 = document.createDocumentFragment();
+        parser.parseContent("<b>one</b><i>two</i>", fragment2);
+        assertEquals(1, parser.getFragmentCacheHits());
+
+        assertEquals("e1", ((Element) fragment1.getFirstChild()).getAttribute("id"));
+        assertEquals("e2", ((Element) fragment1.getLastChild()).getAttribute("id"));
+        assertEquals("e1", ((Element) fragment2.getFirstChild()).getAttribute("id"));
+        assertEquals("e2", ((Element) fragment2.getLastChild()).getAttribute("id"));
+    }
+}
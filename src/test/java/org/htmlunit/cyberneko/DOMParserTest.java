@@ -15,12 +15,21 @@
  */
 package org.htmlunit.cyberneko;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import java.io.StringReader;
 
 import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
+import org.htmlunit.cyberneko.html.dom.HTMLElementImpl;
 import org.htmlunit.cyberneko.parsers.DOMParser;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
 import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.html.HTMLAnchorElement;
+import org.w3c.dom.html.HTMLTableElement;
+import org.xml.sax.InputSource;
 
 /**
  * Unit tests for {@link DOMParser}.
@@ -71,4 +80,47 @@ public void parse() throws Exception {
         final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
         parser.parse(source);
     }
+
+    /**
+     * @throws Exception inc case of error
+     */
+    @Test
+    public void textCoalescing() throws Exception {
+        final String html = "<html><body>"
+                + "<p>a &amp; b &lt; c<!-- comment -->d</p>"
+                + "<div>x&#65;&#x42;y</div>"
+                + "</body></html>";
+
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.parse(new InputSource(new StringReader(html)));
+        final Document doc = parser.getDocument();
+
+        final Node p = doc.getElementsByTagName("p").item(0);
+        assertEquals(3, p.getChildNodes().getLength());
+        assertEquals("a & b < c", p.getFirstChild().getNodeValue());
+        assertEquals(Node.COMMENT_NODE, p.getChildNodes().item(1).getNodeType());
+        assertEquals("d", p.getLastChild().getNodeValue());
+
+        final Node div = doc.getElementsByTagName("div").item(0);
+        assertEquals(1, div.getChildNodes().getLength());
+        assertEquals("xABy", div.getFirstChild().getNodeValue());
+    }
+
+    /**
+     * @throws Exception inc case of error
+     */
+    @Test
+    public void documentFactory() throws Exception {
+        final String html = "<html><body><a href='#'>a</a><TABLE></TABLE><custom></custom></body></html>";
+
+        final DOMParser parser = new DOMParser(null);
+        parser.setDocumentFactory(HTMLDocumentImpl::new);
+        parser.parse(new InputSource(new StringReader(html)));
+        final Document doc = parser.getDocument();
+
+        assertTrue(doc instanceof HTMLDocumentImpl);
+        assertTrue(doc.getElementsByTagName("a").item(0) instanceof HTMLAnchorElement);
+        assertTrue(doc.getElementsByTagName("table").item(0) instanceof HTMLTableElement);
+        assertEquals(HTMLElementImpl.class, doc.getElementsByTagName("custom").item(0).getClass());
+    }
 }
@@ -16,19 +16,28 @@
 package org.htmlunit.cyberneko;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
 import org.htmlunit.cyberneko.parsers.DOMParser;
+import org.htmlunit.cyberneko.xerces.util.DefaultErrorHandler;
 import org.htmlunit.cyberneko.xerces.xni.QName;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLParseException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.xml.sax.InputSource;
@@ -351,4 +360,246 @@ public void textContentWindows1252ControlMapping() throws Exception {
                 + ")html";
         doTest("FOO&#x0098;ZOO", null, expected);
     }
+
+    @Test
+    public void headOnly() throws Exception {
+        final String expected = "(html" + NL
+                + "(head" + NL
+                + "(title" + NL
+                + "\"foo" + NL
+                + ")title" + NL
+                + "(meta" + NL
+                + "Aname description" + NL
+                + ")meta" + NL
+                + ")head" + NL
+                + ")html";
+        doTest("<html><head><title>foo</title><meta name='description'></head>"
+                + "<body><p>bar</p></body></html>", null, expected, HTMLTagBalancer.HEAD_ONLY);
+
+        // implied body
+        doTest("<title>foo</title><meta name='description'><p>bar</p>", null, expected,
+                HTMLTagBalancer.HEAD_ONLY);
+        doTest("<title>foo</title><meta name='description'>bar", null, expected,
+                HTMLTagBalancer.HEAD_ONLY);
+        doTest("<title>foo</title><meta name='description'><frameset><frame src='a.html'></frameset>",
+                null, expected, HTMLTagBalancer.HEAD_ONLY);
+    }
+
+    @Test
+    public void headOnlyEmpty() throws Exception {
+        final String expected = "(html" + NL
+                + "(head" + NL
+                + ")head" + NL
+                + ")html";
+        doTest("<div>bar</div>", null, expected, HTMLTagBalancer.HEAD_ONLY);
+    }
+
+    @Test
+    public void maxDepth() throws Exception {
+        final String expected = "(html" + NL
+                + "(head" + NL
+                + ")head" + NL
+                + "(body" + NL
+                + "(div" + NL
+                + "\"onetwo" + NL
+                + "(br" + NL
+                + ")br" + NL
+                + "\"three" + NL
+                + ")div" + NL
+                + "(p" + NL
+                + "\"four" + NL
+                + ")p" + NL
+                + ")body" + NL
+                + ")html";
+        doTestWithProperty("<div>one<div>two<br><span>three</span></div></div><p>four</p>", expected,
+                HTMLTagBalancer.MAX_DEPTH, 3);
+
+        // deep nesting does not grow the stack
+        doTestWithProperty("<div>one" + "<div>".repeat(10_000) + "two", "(html" + NL
+                + "(head" + NL
+                + ")head" + NL
+                + "(body" + NL
+                + "(div" + NL
+                + "\"onetwo" + NL
+                + ")div" + NL
+                + ")body" + NL
+                + ")html", HTMLTagBalancer.MAX_DEPTH, 3);
+    }
+
+    @Test
+    public void maxElements() throws Exception {
+        final String expected = "(html" + NL
+                + "(head" + NL
+                + ")head" + NL
+                + "(body" + NL
+                + "(div" + NL
+                + "\"one" + NL
+                + "(p" + NL
+                + "\"two" + NL
+                + ")p" + NL
+                + ")div" + NL
+                + ")body" + NL
+                + ")html";
+        doTestWithProperty("<div>one<p>two</p><p>three</p></div><p>four</p>", expected,
+                HTMLTagBalancer.MAX_ELEMENTS, 5);
+    }
+
+    @Test
+    public void maxAttributes() throws Exception {
+        final String expected = "(html" + NL
+                + "(head" + NL
+                + ")head" + NL
+                + "(body" + NL
+                + "(div" + NL
+                + "Aa 1" + NL
+                + "Ab 2" + NL
+                + "\"text" + NL
+                + ")div" + NL
+                + ")body" + NL
+                + ")html";
+        doTestWithProperty("<div a='1' b=2 c='3' d>text</div>", expected, HTMLScanner.MAX_ATTRIBUTES, 2);
+    }
+
+    @Test
+    public void maxAttributeValueLength() throws Exception {
+        final String expected = "(html" + NL
+                + "(head" + NL
+                + ")head" + NL
+                + "(body" + NL
+                + "(div" + NL
+                + "Aa 1234" + NL
+                + "Ab 12" + NL
+                + "Ac abcd" + NL
+                + "\"text" + NL
+                + ")div" + NL
+                + ")body" + NL
+                + ")html";
+        doTestWithProperty("<div a='123456' b=12 c=abcdef>text</div>", expected,
+                HTMLScanner.MAX_ATTRIBUTE_VALUE_LENGTH, 4);
+
+        // the rest of long values is consumed without keeping it
+        final String expectedLong = "(html" + NL
+                + "(head" + NL
+                + ")head" + NL
+                + "(body" + NL
+                + "(div" + NL
+                + "Aa 1234" + NL
+                + "Ab 12&&" + NL
+                + "Ac xxxx" + NL
+                + "Ad &&&&" + NL
+                + "\"text" + NL
+                + ")div" + NL
+                + ")body" + NL
+                + ")html";
+        doTestWithProperty("<div a='1234  ' b='12&amp;&amp;&amp;x' c='" + "x".repeat(1_000_000)
+                + "' d=" + "&amp;".repeat(100_000) + ">text</div>", expectedLong,
+                HTMLScanner.MAX_ATTRIBUTE_VALUE_LENGTH, 4);
+    }
+
+    @Test
+    public void maxAttributeValueLengthReported() throws Exception {
+        final List<String> warnings = new ArrayList<>();
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setFeature("http://cyberneko.org/html/features/report-errors", true);
+        parser.setProperty(HTMLScanner.MAX_ATTRIBUTE_VALUE_LENGTH, 4);
+        parser.setErrorHandler(new DefaultErrorHandler() {
+            @Override
+            public void warning(final String domain, final String key, final XMLParseException exception) {
+                if ("HTML1019".equals(key)) {
+                    warnings.add(exception.getMessage());
+                }
+            }
+        });
+        parser.parse(new XMLInputSource(null, "foo", null, new StringReader(
+                "<div a='1234' b='1234 5' c=" + "x".repeat(10_000) + ">text</div>"), null));
+
+        assertEquals(2, warnings.size(), warnings.toString());
+        assertTrue(warnings.get(0).contains("b"), warnings.get(0));
+        assertTrue(warnings.get(1).contains("c"), warnings.get(1));
+    }
+
+    @Test
+    public void maxInputLength() throws Exception {
+        final String expected = "(html" + NL
+                + "(head" + NL
+                + ")head" + NL
+                + "(body" + NL
+                + "(div" + NL
+                + "\"some" + NL
+                + ")div" + NL
+                + ")body" + NL
+                + ")html";
+        doTestWithProperty("<div>some text</div>", expected, HTMLScanner.MAX_INPUT_LENGTH, 9);
+        doTestWithProperty("<div>some</div>" + "x".repeat(100_000), expected, HTMLScanner.MAX_INPUT_LENGTH, 15);
+    }
+
+    @Test
+    public void reportedErrors() throws Exception {
+        final List<XMLParseException> exceptions = new ArrayList<>();
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setFeature("http://cyberneko.org/html/features/report-errors", true);
+        parser.setErrorHandler(new DefaultErrorHandler() {
+            @Override
+            public void warning(final String domain, final String key, final XMLParseException exception) {
+                exceptions.add(exception);
+            }
+        });
+        parser.parse(new XMLInputSource(null, "foo", null, new StringReader("<html>\n<div>text"), null));
+
+        final XMLParseException exception = exceptions.get(exceptions.size() - 1);
+        assertEquals(2, exception.getLineNumber());
+        // only reported, no stack trace
+        assertEquals(0, exception.getStackTrace().length);
+
+        // formatted before serialization
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(exceptions.get(0));
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final XMLParseException deserialized = (XMLParseException) in.readObject();
+            assertEquals(exceptions.get(0).getMessage(), deserialized.getMessage());
+            assertEquals(exceptions.get(0).getLineNumber(), deserialized.getLineNumber());
+        }
+
+        // formatted on demand
+        assertEquals("Element <html> not closed properly.", exception.getMessage());
+        assertEquals("Element <html> not closed properly.", exception.getMessage());
+    }
+
+    @Test
+    public void reportedErrorThrown() throws Exception {
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setFeature("http://cyberneko.org/html/features/report-errors", true);
+        parser.setErrorHandler(new DefaultErrorHandler() {
+            @Override
+            public void warning(final String domain, final String key, final XMLParseException exception) {
+                throw exception;
+            }
+        });
+
+        // thrown by the handler, the caller gets the trace
+        final XMLParseException exception = assertThrows(XMLParseException.class,
+                () -> parser.parse(new XMLInputSource(null, "foo", null, new StringReader("<html>\n<div>text"), null)));
+        assertTrue(exception.getStackTrace().length > 0);
+        assertEquals(2, exception.getLineNumber());
+        assertEquals("foo", exception.getLiteralSystemId());
+        assertEquals("Inserting proper parent element <body> for element <div>.", exception.getMessage());
+    }
+
+    private static void doTestWithProperty(final String html, final String expected,
+                                final String property, final Object value) throws Exception {
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.setProperty(property, value);
+
+        final StringWriter out = new StringWriter();
+        final XMLDocumentFilter[] filters = {new Writer(out)};
+        parser.setProperty("http://cyberneko.org/html/properties/filters", filters);
+
+        final StringReader sr = new StringReader(html);
+        final XMLInputSource in = new XMLInputSource(null, "foo", null, sr, null);
+        parser.parse(in);
+
+        assertEquals(expected.trim(), out.toString().trim());
+    }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.util.concurrent.Executor;
+
+import org.htmlunit.cyberneko.util.ParserThreads;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link HTMLErrorCounter}.
+ *
+ * @author Ronald Brill
+ */
+public class HTMLErrorCounterTest {
+
+    @Test
+    public void counts() throws Exception {
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        final HTMLErrorCounter counter = new HTMLErrorCounter(parser, 2);
+        parser.setFeature("http://cyberneko.org/html/features/report-errors", true);
+        parser.setProperty("http://cyberneko.org/html/properties/error-reporter", counter);
+
+        parser.parse(new XMLInputSource(null, "foo", null,
+                new StringReader("<html>\n<div>\n<p>a<p>b</div>"), null));
+
+        // body inserted, <p> closes <p>, </div> closes <p>, html and body not closed
+        assertEquals(1, counter.getCount("HTML2004"));
+        assertEquals(1, counter.getCount("HTML2005"));
+        assertEquals(1, counter.getCount("HTML2007"));
+        assertEquals(2, counter.getCount("HTML2001"));
+        assertEquals(0, counter.getCount("HTML1007"));
+        assertEquals(0, counter.getCount("unknown"));
+        assertEquals(0, counter.getOtherCount());
+        assertEquals(5, counter.getWarningCount());
+        assertEquals(0, counter.getErrorCount());
+
+        assertEquals(2, counter.getLocationCount());
+        assertEquals("HTML2004", counter.getLocationKey(0));
+        assertEquals(2, counter.getLocationLineNumber(0));
+        assertEquals("HTML2005", counter.getLocationKey(1));
+        assertEquals(3, counter.getLocationLineNumber(1));
+        assertEquals(8, counter.getLocationColumnNumber(1));
+        assertEquals(20, counter.getLocationCharacterOffset(1));
+
+        counter.reset();
+        assertEquals(0, counter.getCount("HTML2001"));
+        assertEquals(0, counter.getWarningCount());
+        assertEquals(0, counter.getLocationCount());
+
+        // the messages are still formatted for exceptions thrown by the scanner
+        assertEquals("Element <div> not closed properly.",
+                counter.formatMessage("HTML2001", new Object[] {"div"}));
+        counter.reportError("OTHER", null);
+        assertEquals(1, counter.getOtherCount());
+    }
+
+    @Test
+    public void pipelined() throws Exception {
+        final StringBuilder html = new StringBuilder("<html><body>\n");
+        for (int i = 0; i < 2000; i++) {
+            html.append("<p>a < b & c</><?pi?><!x>&#xzz;<div title='x'a='b'>\n");
+        }
+
+        final HTMLErrorCounter sequential = count(html.toString(), null);
+        final HTMLErrorCounter pipelined = count(html.toString(), ParserThreads.executor());
+
+        assertTrue(sequential.getCount("HTML1009") > 1000);
+        assertTrue(sequential.getCount("HTML1013") > 1000);
+        assertEquals(sequential.getWarningCount(), pipelined.getWarningCount());
+        assertEquals(sequential.getErrorCount(), pipelined.getErrorCount());
+        for (int i = 0; i < 3000; i++) {
+            final String key = String.format("HTML%04d", i);
+            assertEquals(sequential.getCount(key), pipelined.getCount(key), key);
+        }
+
+        // the scanner problems are reported in order with the location the scanner had
+        // (the tag balancer problems get the further location of the scanner)
+        assertEquals(sequential.getLocationCount(), pipelined.getLocationCount());
+        for (int i = 0; i < sequential.getLocationCount(); i++) {
+            assertEquals(sequential.getLocationKey(i), pipelined.getLocationKey(i));
+            if (!sequential.getLocationKey(i).startsWith("HTML1")) {
+                continue;
+            }
+            assertEquals(sequential.getLocationLineNumber(i), pipelined.getLocationLineNumber(i));
+            assertEquals(sequential.getLocationColumnNumber(i), pipelined.getLocationColumnNumber(i));
+            assertEquals(sequential.getLocationCharacterOffset(i), pipelined.getLocationCharacterOffset(i));
+        }
+    }
+
+    private static HTMLErrorCounter count(final String html, final Executor executor) throws Exception {
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        final HTMLErrorCounter counter = new HTMLErrorCounter(parser, 100);
+        parser.setFeature("http://cyberneko.org/html/features/report-errors", true);
+        parser.setProperty("http://cyberneko.org/html/properties/error-reporter", counter);
+        parser.setProperty(HTMLConfiguration.PIPELINE_EXECUTOR, executor);
+
+        parser.parse(new XMLInputSource(null, "foo", null, new StringReader(html), null));
+        return counter;
+    }
+}
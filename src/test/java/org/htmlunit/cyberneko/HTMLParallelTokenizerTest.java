@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.htmlunit.cyberneko.filters.HTMLSerializer;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link HTMLParallelTokenizer}.
+ *
+ * @author Ronald Brill
+ */
+public class HTMLParallelTokenizerTest {
+
+    @Test
+    public void splitPoints() {
+        final char[] text = "<p>a\n<p>b\n<!-- x -->\n<p>c\n< d\n</p>".toCharArray();
+        assertArrayEquals(new int[] {0, 5, 21, 30, text.length}, HTMLParallelTokenizer.splitPoints(text, 1));
+        assertArrayEquals(new int[] {0, 21, text.length}, HTMLParallelTokenizer.splitPoints(text, 12));
+        assertArrayEquals(new int[] {0, text.length}, HTMLParallelTokenizer.splitPoints(text, 100));
+    }
+
+    @Test
+    public void plainDocument() throws Exception {
+        final StringBuilder html = new StringBuilder("<!DOCTYPE html>\n<html><head><title>t</title></head>\n<body>\n");
+        for (int i = 0; i < 200; i++) {
+            html.append("<div class='c").append(i).append("'>line ").append(i).append(" &amp; more\n");
+            html.append("<p>para<b>bold</p>\n</div>\n");
+        }
+        html.append("</body></html>\n");
+
+        final HTMLParallelTokenizer tokenizer = doTest(html.toString());
+        assertFalse(tokenizer.isSequential());
+        assertTrue(tokenizer.getChunkCount() > 10);
+        assertEquals(0, tokenizer.getRescanCount());
+    }
+
+    @Test
+    public void wrongSpeculation() throws Exception {
+        final StringBuilder html = new StringBuilder("<html><body>\n");
+        for (int i = 0; i < 50; i++) {
+            html.append("<div>").append(i).append("</div>\n");
+            if (i % 10 == 3) {
+                html.append("<script>\nvar a = 1;\n<div>no tag</div>\n</script>\n");
+            }
+            if (i % 10 == 5) {
+                html.append("<!--\n<p>no tag\n-->\n");
+            }
+            if (i % 10 == 7) {
+                html.append("<textarea>\n<p>no tag\n</textarea>\n");
+                html.append("<span title='a\n<p>b'>x</span>\n");
+            }
+        }
+        html.append("</body></html>\n");
+
+        final HTMLParallelTokenizer tokenizer = doTest(html.toString());
+        assertFalse(tokenizer.isSequential());
+        assertTrue(tokenizer.getRescanCount() > 0);
+    }
+
+    @Test
+    public void splitInsideAttributeValue() throws Exception {
+        splitInsideMarkup("<a title=\"x\n<b>bar</b> \">link</a>\n");
+    }
+
+    @Test
+    public void splitInsideComment() throws Exception {
+        splitInsideMarkup("<!-- x\n<b>bar</b> -->\n");
+    }
+
+    @Test
+    public void splitInsideDoctype() throws Exception {
+        splitInsideMarkup("<!DOCTYPE html\n<b>bar</b> >\n");
+    }
+
+    private static void splitInsideMarkup(final String markup) throws Exception {
+        final StringBuilder html = new StringBuilder("<html><body>\n");
+        for (int i = 0; i < 50; i++) {
+            html.append("<div>").append(i).append("</div>\n").append(markup);
+        }
+        html.append("</body></html>\n");
+
+        final HTMLParallelTokenizer tokenizer = doTest(html.toString());
+        assertFalse(tokenizer.isSequential());
+        assertTrue(tokenizer.getRescanCount() > 0);
+    }
+
+    @Test
+    public void unclosedComment() throws Exception {
+        final StringBuilder html = new StringBuilder("<html><body>\n<!--\n");
+        for (int i = 0; i < 50; i++) {
+            html.append("<div>").append(i).append("</div>\n");
+        }
+
+        final HTMLParallelTokenizer tokenizer = doTest(html.toString());
+        assertEquals(HTMLParallelTokenizer.MAX_EXTENSIONS + 1, tokenizer.getRescanCount());
+    }
+
+    @Test
+    public void svgTitle() throws Exception {
+        final StringBuilder html = new StringBuilder("<html><body>\n");
+        for (int i = 0; i < 50; i++) {
+            html.append("<div>").append(i).append("</div>\n");
+        }
+        html.append("<svg>\n<title>a <b> c</title>\n</svg>\n");
+
+        final HTMLParallelTokenizer tokenizer = doTest(html.toString());
+        assertTrue(tokenizer.isSequential());
+    }
+
+    @Test
+    public void smallDocument() throws Exception {
+        final HTMLParallelTokenizer tokenizer = doTest("<p>a\n<p>b\n");
+        assertTrue(tokenizer.isSequential());
+        assertEquals(0, tokenizer.getChunkCount());
+    }
+
+    private static HTMLParallelTokenizer doTest(final String html) throws Exception {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final HTMLConfiguration sequential = new HTMLConfiguration();
+        final HTMLSerializer expectedSerializer = new HTMLSerializer(expected);
+        sequential.setDocumentHandler(expectedSerializer);
+        sequential.parse(new XMLInputSource(null, "foo", null, new StringReader(html), null));
+        expectedSerializer.flush();
+
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        final HTMLConfiguration configuration = new HTMLConfiguration();
+        final HTMLSerializer actualSerializer = new HTMLSerializer(actual);
+        configuration.setDocumentHandler(actualSerializer);
+
+        final HTMLParallelTokenizer tokenizer = new HTMLParallelTokenizer(HTMLConfiguration::new);
+        tokenizer.setChunkSize(64);
+        tokenizer.parse(configuration, "foo", html.toCharArray());
+        actualSerializer.flush();
+
+        assertEquals(expected.toString(StandardCharsets.UTF_8), actual.toString(StandardCharsets.UTF_8));
+        return tokenizer;
+    }
+}
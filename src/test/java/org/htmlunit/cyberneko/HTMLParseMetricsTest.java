@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link HTMLParseMetrics}.
+ *
+ * @author Ronald Brill
+ */
+public class HTMLParseMetricsTest {
+
+    @Test
+    public void counters() throws Exception {
+        final List<String> reports = new ArrayList<>();
+        final long[] nanos = new long[2];
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setProperty(HTMLConfiguration.METRICS_LISTENER, (HTMLParseMetricsListener) metrics -> {
+            reports.add("bytes=" + metrics.getBytesRead()
+                    + " chars=" + metrics.getCharsRead()
+                    + " encodingChanges=" + metrics.getEncodingChanges()
+                    + " playback=" + metrics.getPlaybackBytes()
+                    + " elements=" + metrics.getElements()
+                    + " attributes=" + metrics.getAttributes()
+                    + " entities=" + metrics.getEntities()
+                    + " synthesized=" + metrics.getSynthesizedElements()
+                    + " discarded=" + metrics.getDiscardedElements()
+                    + " lostText=" + metrics.getLostTextRefeeds());
+            nanos[0] = metrics.getSetupNanos();
+            nanos[1] = metrics.getParseNanos();
+        });
+
+        // html, head, body synthesized; second body discarded; text before the body refed
+        final String html = "text<p class='a' id=b>x &amp; &#65;</p><body></body></b>";
+        parser.parse(new XMLInputSource(null, "myTest", null, new StringReader(html), "UTF-8"));
+        assertEquals(List.of("bytes=0 chars=" + html.length() + " encodingChanges=0 playback=0"
+                + " elements=2 attributes=2 entities=2 synthesized=3 discarded=2 lostText=1"), reports);
+        assertTrue(nanos[0] > 0);
+        assertTrue(nanos[1] > 0);
+
+        // byte stream with encoding change
+        reports.clear();
+        final String meta = "<html><head><meta charset='UTF-8'></head><body></body></html>";
+        parser.parse(new XMLInputSource(null, "myTest", null,
+                new ByteArrayInputStream(meta.getBytes(StandardCharsets.US_ASCII)), null));
+        final int length = meta.length();
+        assertEquals(List.of("bytes=" + length + " chars=" + (2 * length) + " encodingChanges=1 playback=" + length
+                + " elements=4 attributes=1 entities=0 synthesized=0 discarded=0 lostText=0"), reports);
+    }
+
+    @Test
+    public void noListener() throws Exception {
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.parse(new XMLInputSource(null, "myTest", null, new StringReader("<p>x</p>"), "UTF-8"));
+        assertEquals(null, parser.getMetrics());
+    }
+}
@@ -17,6 +17,7 @@
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
@@ -26,14 +27,17 @@
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.BooleanSupplier;
 
 import org.htmlunit.cyberneko.filters.DefaultFilter;
 import org.htmlunit.cyberneko.xerces.xni.Augmentations;
 import org.htmlunit.cyberneko.xerces.xni.QName;
 import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
 import org.htmlunit.cyberneko.xerces.xni.XNIException;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLParseException;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLParserConfiguration;
 import org.junit.jupiter.api.Test;
 
@@ -394,4 +398,267 @@ public void insertDoctypeUppercase() throws Exception {
             "(HTML", "(HEAD", ")HEAD", "(BODY", ")BODY", ")HTML"};
         assertEquals(Arrays.asList(expected).toString(), filter.getCollectedStrings().toString());
     }
+
+    /**
+     * @throws Exception on error
+     */
+    @Test
+    public void stopParsing() throws Exception {
+        // the tag balancer reports the end of the head when the body starts
+        final String[] expected = {"(html", "(head", "(title", ")title", ")head", "(body", ")body", ")html"};
+        assertEquals(Arrays.asList(expected).toString(), stopAtEndOfHead(true).toString());
+    }
+
+    /**
+     * @throws Exception on error
+     */
+    @Test
+    public void stopParsingWithoutFinish() throws Exception {
+        final String[] expected = {"(html", "(head", "(title", ")title", ")head", "(body"};
+        assertEquals(Arrays.asList(expected).toString(), stopAtEndOfHead(false).toString());
+    }
+
+    private static List<String> stopAtEndOfHead(final boolean finishDocument) throws Exception {
+        final StringBuilder html = new StringBuilder("<html><head><title>foo</title></head><body>");
+        for (int i = 0; i < 10_000; i++) {
+            html.append("<p>paragraph ").append(i).append("</p>");
+        }
+        html.append("</body></html>");
+
+        final int[] read = {0};
+        final StringReader reader = new StringReader(html.toString()) {
+            @Override
+            public int read(final char[] cbuf, final int off, final int len) throws IOException {
+                final int count = super.read(cbuf, off, len);
+                read[0] += Math.max(count, 0);
+                return count;
+            }
+        };
+
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        final EvaluateInputSourceFilter filter = new EvaluateInputSourceFilter(parser) {
+            @Override
+            public void endElement(final QName element, final Augmentations augs) throws XNIException {
+                super.endElement(element, augs);
+                if ("head".equals(element.getLocalpart())) {
+                    parser.stopParsing(finishDocument);
+                }
+            }
+        };
+        parser.setProperty("http://cyberneko.org/html/properties/filters", new XMLDocumentFilter[] {filter});
+        parser.parse(new XMLInputSource(null, "myTest", null, reader, "UTF-8"));
+
+        assertTrue(read[0] < html.length() / 10, "read " + read[0] + " chars");
+        return filter.getCollectedStrings();
+    }
+
+    /**
+     * @throws Exception on error
+     */
+    @Test
+    public void textChunks() throws Exception {
+        final String text = "x".repeat(100_000);
+        final String script = "var s = '" + "<!--".repeat(10_000) + "';";
+        final String html = "<html><head><script>" + script + "</script></head>"
+                + "<body><!--" + text + "--><p>" + text + "</p><textarea>" + text + "</textarea></body></html>";
+
+        final List<String> chunks = new ArrayList<>();
+        final StringBuilder content = new StringBuilder();
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setProperty(HTMLScanner.TEXT_CHUNK_SIZE, 4096);
+        parser.setProperty(HTMLConfiguration.FILTERS, new XMLDocumentFilter[] {new DefaultFilter() {
+            @Override
+            public void characters(final XMLString chars, final Augmentations augs) {
+                assertTrue(chars.length() < 4096 + 1024, "chunk length " + chars.length());
+                chunks.add("\"" + chars.length());
+                content.append(chars);
+            }
+
+            @Override
+            public void comment(final XMLString chars, final Augmentations augs) {
+                assertTrue(chars.length() <= 4096, "chunk length " + chars.length());
+                chunks.add("#" + chars.length());
+                content.append(chars);
+            }
+        }});
+        parser.parse(new XMLInputSource(null, "myTest", null, new StringReader(html), "UTF-8"));
+
+        assertEquals(script + text + text + text, content.toString());
+        assertTrue(chunks.size() > 4 * 20, chunks.toString());
+    }
+
+    /**
+     * The runs of plain text and attribute value chars are consumed at once;
+     * make sure they are correct across buffer boundaries.
+     * @throws Exception on error
+     */
+    @Test
+    public void plainRuns() throws Exception {
+        final String text = "some text \u00e4\u00f6\u00fc ".repeat(5);
+        final String html = "<p a=\"" + text + "&amp;x\" b='" + text + "\"\n  y'>" + text + "&lt;"
+                + text + "\n   <i></i></p>";
+
+        final List<String> events = new ArrayList<>();
+        final StringBuilder content = new StringBuilder();
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setProperty(HTMLScanner.READER_BUFFER_SIZE, 16);
+        parser.setProperty(HTMLConfiguration.FILTERS, new XMLDocumentFilter[] {new DefaultFilter() {
+            @Override
+            public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs) {
+                final HTMLScanner scanner = parser.getDocumentScanner();
+                events.add("(" + element.getRawname() + " " + scanner.getLineNumber() + ":" + scanner.getColumnNumber());
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    events.add(attributes.getQName(i) + "=" + attributes.getValue(i));
+                }
+            }
+
+            @Override
+            public void characters(final XMLString chars, final Augmentations augs) {
+                content.append(chars);
+            }
+        }});
+        parser.parse(new XMLInputSource(null, "myTest", null, new StringReader(html), "UTF-8"));
+
+        assertEquals(Arrays.asList("(html 2:6", "(head 2:6", "(body 2:6",
+                "(p 2:6", "a=" + text + "&x", "b=" + text + "\"\n  y", "(i 3:7"), events);
+        assertEquals(text + "<" + text + "\n   ", content.toString());
+    }
+
+    /**
+     * @throws Exception on error
+     */
+    @Test
+    public void maxTextLength() throws Exception {
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setProperty(HTMLScanner.MAX_TEXT_LENGTH, 1000);
+
+        // below the limit
+        parser.parse(new XMLInputSource(null, "myTest", null,
+                new StringReader("<p>" + "x".repeat(1000) + "</p><!--" + "x".repeat(1000) + "-->"), "UTF-8"));
+
+        final String[] htmls = {
+            "<p>" + "x".repeat(1001),
+            "<!--" + "x".repeat(5000),
+            "<script>" + "x".repeat(1001) + "</script>",
+            "<style>" + "x".repeat(1001) + "</style>"};
+        for (final String html : htmls) {
+            final XMLParseException e = assertThrows(XMLParseException.class,
+                () -> parser.parse(new XMLInputSource(null, "myTest", null, new StringReader(html), "UTF-8")));
+            assertEquals("Text content exceeds the maximum length of 1000 characters.", e.getMessage());
+        }
+
+        // the limit also applies if the text is delivered in chunks
+        parser.setProperty(HTMLScanner.TEXT_CHUNK_SIZE, 100);
+        assertThrows(XMLParseException.class,
+            () -> parser.parse(new XMLInputSource(null, "myTest", null,
+                    new StringReader("<p>" + "x".repeat(1001)), "UTF-8")));
+    }
+
+    /**
+     * @throws Exception on error
+     */
+    @Test
+    public void cancellation() throws Exception {
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        final int[] checks = {0};
+        parser.setProperty(HTMLScanner.CANCELLATION, (BooleanSupplier) () -> ++checks[0] > 3);
+        parser.setProperty(HTMLScanner.READER_BUFFER_SIZE, 16);
+
+        final XMLParseException e = assertThrows(XMLParseException.class,
+            () -> parser.parse(new XMLInputSource(null, "myTest", null,
+                    new StringReader("<p>" + "x".repeat(10_000) + "</p>"), "UTF-8")));
+        assertEquals("Parsing canceled.", e.getMessage());
+        assertEquals(4, checks[0]);
+
+        // not canceled
+        checks[0] = -1_000;
+        parser.parse(new XMLInputSource(null, "myTest", null, new StringReader("<p>some text</p>"), "UTF-8"));
+    }
+
+    /**
+     * @throws Exception on error
+     */
+    @Test
+    public void cancellationOfBufferedInput() throws Exception {
+        assertCanceledWhileScanning("<p>" + "x\n".repeat(100_000) + "</p>");
+        assertCanceledWhileScanning("<!--" + "x".repeat(100_000) + "-->");
+        assertCanceledWhileScanning("<script>" + "x".repeat(100_000) + "</script>");
+        assertCanceledWhileScanning("<br>".repeat(100_000));
+    }
+
+    /**
+     * @throws Exception on error
+     */
+    @Test
+    public void cancellationInsideRawText() throws Exception {
+        assertCanceledWhileScanning("<script>var a = 1;\n" + "a += 1;\n".repeat(100_000) + "</script>");
+        assertCanceledWhileScanning("<style>" + "p { color: red; }\n".repeat(100_000) + "</style>");
+        assertCanceledWhileScanning("<textarea>" + "x\n".repeat(100_000) + "</textarea>");
+        assertCanceledWhileScanning("<plaintext>" + "x\n".repeat(100_000));
+    }
+
+    private static void assertCanceledWhileScanning(final String html) {
+        final List<String> events = new ArrayList<>();
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        // the whole input is read with the first block, then canceled
+        final int[] checks = {0};
+        final int[] elements = {0};
+        parser.setProperty(HTMLScanner.CANCELLATION, (BooleanSupplier) () -> ++checks[0] > 1);
+        parser.setProperty(HTMLScanner.READER_BUFFER_SIZE, html.length() + 1);
+        parser.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void emptyElement(final QName element, final XMLAttributes attributes, final Augmentations augs) {
+                elements[0]++;
+            }
+
+            @Override
+            public void comment(final XMLString text, final Augmentations augs) {
+                events.add("comment");
+            }
+
+            @Override
+            public void characters(final XMLString text, final Augmentations augs) {
+                events.add("characters");
+            }
+
+            @Override
+            public void endDocument(final Augmentations augs) {
+                events.add("endDocument");
+            }
+        });
+
+        assertThrows(XMLParseException.class,
+            () -> parser.parse(new XMLInputSource(null, "myTest", null, new StringReader(html), "UTF-8")));
+        assertEquals(2, checks[0]);
+        assertFalse(events.contains("endDocument"), events.toString());
+        assertFalse(events.contains("comment"), events.toString());
+        assertFalse(events.contains("characters"), events.toString());
+        assertTrue(elements[0] < 10_000, "elements " + elements[0]);
+    }
+
+    /**
+     * @throws Exception on error
+     */
+    @Test
+    public void parseTimeout() throws Exception {
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setProperty(HTMLScanner.PARSE_TIMEOUT, 10);
+        parser.setProperty(HTMLScanner.READER_BUFFER_SIZE, 16);
+
+        final StringReader slowReader = new StringReader("<p>" + "x".repeat(10_000) + "</p>") {
+            @Override
+            public int read(final char[] cbuf, final int off, final int len) throws IOException {
+                try {
+                    Thread.sleep(2);
+                }
+                catch (final InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.read(cbuf, off, len);
+            }
+        };
+        final XMLParseException e = assertThrows(XMLParseException.class,
+            () -> parser.parse(new XMLInputSource(null, "myTest", null, slowReader, "UTF-8")));
+        assertEquals("Parse time limit of 10 ms exceeded.", e.getMessage());
+    }
 }
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import org.htmlunit.cyberneko.filters.DefaultFilter;
+import org.htmlunit.cyberneko.parsers.HTMLStreamReader;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link HTMLStreamReader}.
+ *
+ * @author Ronald Brill
+ */
+public class HTMLStreamReaderTest {
+
+    @Test
+    public void events() throws Exception {
+        final HTMLStreamReader reader = reader("<!DOCTYPE html><!-- c --><p class='x' id=y>a &amp; b<br>c");
+
+        final StringBuilder events = new StringBuilder();
+        assertEquals(XMLStreamConstants.START_DOCUMENT, reader.getEventType());
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.DTD:
+                    events.append(reader.getText());
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    events.append("<!--").append(reader.getText()).append("-->");
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    events.append('<').append(reader.getLocalName());
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        events.append(' ').append(reader.getAttributeLocalName(i))
+                            .append('=').append(reader.getAttributeValue(i));
+                    }
+                    events.append('>');
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    events.append("</").append(reader.getLocalName()).append('>');
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                    events.append('[').append(reader.getTextCharacters(),
+                            reader.getTextStart(), reader.getTextLength()).append(']');
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    events.append("$");
+                    break;
+                default:
+                    break;
+            }
+        }
+        reader.close();
+
+        assertEquals("<!DOCTYPE html><!-- c --><html><head></head><body><p class=x id=y>"
+                + "[a ][&][ b]<br></br>[c]</p></body></html>$", events.toString());
+        assertThrows(NoSuchElementException.class, () -> reader.next());
+    }
+
+    @Test
+    public void elementTextAndSkip() throws Exception {
+        final HTMLStreamReader reader = reader("<html><head><title>The title</title></head>"
+                + "<body><div id='skip'><p>one<div><p>two</div></div><p id='last'>th<!-- x -->ree</body></html>");
+
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.nextTag());
+        assertEquals("html", reader.getLocalName());
+        reader.nextTag();
+        reader.nextTag();
+        reader.require(XMLStreamConstants.START_ELEMENT, null, "title");
+        assertEquals("The title", reader.getElementText());
+
+        reader.nextTag();
+        reader.require(XMLStreamConstants.END_ELEMENT, null, "head");
+        reader.nextTag();
+        reader.nextTag();
+        assertEquals("skip", reader.getAttributeValue(null, "id"));
+        reader.skipElement();
+        reader.require(XMLStreamConstants.END_ELEMENT, null, "div");
+
+        assertEquals(XMLStreamConstants.START_ELEMENT, reader.nextTag());
+        assertEquals("last", reader.getAttributeValue(null, "id"));
+        assertEquals("three", reader.getElementText());
+
+        assertThrows(XMLStreamException.class, () -> reader.require(XMLStreamConstants.START_ELEMENT, null, null));
+        reader.close();
+    }
+
+    @Test
+    public void skipRawText() throws Exception {
+        final StringBuilder scanned = new StringBuilder();
+        final HTMLConfiguration configuration = new HTMLConfiguration();
+        configuration.setProperty(HTMLConfiguration.FILTERS, new XMLDocumentFilter[] {new DefaultFilter() {
+            @Override
+            public void characters(final XMLString text, final Augmentations augs) {
+                scanned.append('[').append(text).append(']');
+                super.characters(text, augs);
+            }
+        }});
+        final HTMLStreamReader reader = new HTMLStreamReader(configuration,
+                new XMLInputSource(null, "test", null, new StringReader(
+                        "<html><head><script>var s = '<p>not scanned</p>';</script>"
+                        + "<style>p { color: red }</style></head>"
+                        + "<body><textarea>a <b>c</textarea><p>text</p></body></html>"), "UTF-8"));
+
+        reader.nextTag();
+        reader.nextTag();
+        reader.nextTag();
+        reader.require(XMLStreamConstants.START_ELEMENT, null, "script");
+        reader.skipElement();
+        reader.require(XMLStreamConstants.END_ELEMENT, null, "script");
+
+        reader.nextTag();
+        reader.require(XMLStreamConstants.START_ELEMENT, null, "style");
+        reader.skipElement();
+        reader.require(XMLStreamConstants.END_ELEMENT, null, "style");
+
+        reader.nextTag();
+        reader.nextTag();
+        reader.nextTag();
+        reader.require(XMLStreamConstants.START_ELEMENT, null, "textarea");
+        reader.skipElement();
+        reader.require(XMLStreamConstants.END_ELEMENT, null, "textarea");
+
+        reader.nextTag();
+        reader.require(XMLStreamConstants.START_ELEMENT, null, "p");
+        assertEquals("text", reader.getElementText());
+        reader.close();
+
+        assertEquals("[text]", scanned.toString());
+    }
+
+    @Test
+    public void pullParsingEndsDocument() throws Exception {
+        final StringBuilder events = new StringBuilder();
+        final HTMLConfiguration configuration = new HTMLConfiguration();
+        configuration.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void endElement(final QName element, final Augmentations augs) {
+                events.append("</").append(element.getLocalpart()).append('>');
+            }
+
+            @Override
+            public void endDocument(final Augmentations augs) {
+                events.append("$");
+            }
+        });
+        configuration.setInputSource(new XMLInputSource(null, "test", null,
+                new StringReader("<html><body><p>text"), "UTF-8"));
+
+        // the end of the main input closes the open elements and ends the document,
+        // in contrast to the end of an input evaluated by evaluateInputSource
+        while (configuration.parse(false)) {
+            // next step
+        }
+        assertEquals("</head></p></body></html>$", events.toString());
+    }
+
+    @Test
+    public void pullsOnlyNeededInput() throws Exception {
+        final StringBuilder html = new StringBuilder("<html><body><p>first</p>");
+        for (int i = 0; i < 10_000; i++) {
+            html.append("<p>paragraph ").append(i).append("</p>");
+        }
+        html.append("</body></html>");
+
+        final CountingReader input = new CountingReader(new StringReader(html.toString()));
+        final HTMLStreamReader reader = new HTMLStreamReader(
+                new XMLInputSource(null, "test", null, input, "UTF-8"));
+        while (!(reader.next() == XMLStreamConstants.CHARACTERS)) {
+            // skip
+        }
+        assertEquals("first", reader.getText());
+        reader.close();
+
+        assertTrue(input.read_ < html.length() / 10, "read " + input.read_);
+    }
+
+    @Test
+    public void stopWithoutEndDocument() throws Exception {
+        final HTMLConfiguration configuration = new HTMLConfiguration();
+        final HTMLStreamReader reader = new HTMLStreamReader(configuration,
+                new XMLInputSource(null, "test", null, new StringReader("<p>one<p>two"), "UTF-8"));
+
+        while (reader.next() != XMLStreamConstants.CHARACTERS) {
+            // skip
+        }
+        configuration.stopParsing(false);
+        while (reader.hasNext()) {
+            reader.next();
+        }
+        assertEquals(XMLStreamConstants.END_DOCUMENT, reader.getEventType());
+        assertFalse(reader.hasNext());
+    }
+
+    private static HTMLStreamReader reader(final String html) throws XMLStreamException {
+        return new HTMLStreamReader(new XMLInputSource(null, "test", null, new StringReader(html), "UTF-8"));
+    }
+
+    private static final class CountingReader extends Reader {
+        private final Reader reader_;
+        private int read_;
+
+        CountingReader(final Reader reader) {
+            reader_ = reader;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+            final int read = reader_.read(cbuf, off, len);
+            if (read > 0) {
+                read_ += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader_.close();
+        }
+    }
+}
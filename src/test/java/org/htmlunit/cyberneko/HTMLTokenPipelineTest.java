@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.htmlunit.cyberneko.filters.DefaultFilter;
+import org.htmlunit.cyberneko.filters.HTMLSerializer;
+import org.htmlunit.cyberneko.util.ParserThreads;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLErrorHandler;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLParseException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the pipelined parsing (see {@link HTMLConfiguration#PIPELINE_EXECUTOR}).
+ *
+ * @author Ronald Brill
+ */
+public class HTMLTokenPipelineTest {
+
+    private static final Executor EXECUTOR = ParserThreads.executor();
+
+    @Test
+    public void largeDocument() throws Exception {
+        final StringBuilder html = new StringBuilder("<!DOCTYPE html>\n<html><head><title>t</title></head>\n<body>\n");
+        for (int i = 0; i < 1000; i++) {
+            html.append("<div class='c").append(i).append("' id=x").append(i).append(">line ").append(i)
+                .append(" &amp; more<!-- c -->\n<p>para<b>bold</p><br/>\n<script>var a = '<p>';</script>\n");
+        }
+        html.append("</body></html>\n");
+
+        doTest(html.toString());
+    }
+
+    @Test
+    public void svgTitle() throws Exception {
+        final String html = "<html><body><svg><title>a <b>c</b></title></svg><title>d <b>e</b></title></body></html>";
+        final String result = doTest(html);
+        assertNotEquals(-1, result.indexOf("<svg><title>a <b>c</b></title>"), result);
+    }
+
+    @Test
+    public void stopParsing() throws Exception {
+        final HTMLConfiguration configuration = new HTMLConfiguration();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final HTMLSerializer serializer = new HTMLSerializer(out);
+        final XMLDocumentFilter stopper = new DefaultFilter() {
+            @Override
+            public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+                    throws XNIException {
+                super.startElement(element, attributes, augs);
+                if ("stop".equals(element.getLocalpart())) {
+                    configuration.stopParsing(true);
+                }
+            }
+        };
+        configuration.setProperty(HTMLConfiguration.FILTERS, new XMLDocumentFilter[] {stopper});
+        configuration.setProperty(HTMLConfiguration.PIPELINE_EXECUTOR, EXECUTOR);
+        configuration.setDocumentHandler(serializer);
+
+        final StringBuilder html = new StringBuilder("<html><body><div><stop>x</stop>");
+        for (int i = 0; i < 5000; i++) {
+            html.append("<p>more</p>");
+        }
+        configuration.parse(new XMLInputSource(null, "foo", null, new StringReader(html.toString()), null));
+        serializer.flush();
+
+        assertEquals("<html><head></head><body><div><stop></stop></div></body></html>",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void errorsOnParsingThread() throws Exception {
+        final String html = "<html><body>" + "<p>a < b</>".repeat(10_000);
+        final List<String> expected = reportedErrors(html, null);
+        assertEquals(30_002, expected.size());
+
+        // scanner and tag balancer problems in document order
+        assertEquals(expected, reportedErrors(html, EXECUTOR));
+    }
+
+    @Test
+    public void handlerFailure() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("test");
+        final HTMLConfiguration configuration = new HTMLConfiguration();
+        configuration.setProperty(HTMLConfiguration.PIPELINE_EXECUTOR, EXECUTOR);
+        configuration.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+                    throws XNIException {
+                if ("fail".equals(element.getLocalpart())) {
+                    throw failure;
+                }
+            }
+        });
+
+        final XMLInputSource source = new XMLInputSource(null, "foo", null,
+                new StringReader("<html><body><fail></fail>" + paragraphs(50_000)), null);
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> configuration.parse(source)));
+
+        // the configuration can be used again
+        assertReusable(configuration);
+    }
+
+    @Test
+    public void interrupted() throws Exception {
+        final HTMLConfiguration configuration = new HTMLConfiguration();
+        configuration.setProperty(HTMLConfiguration.PIPELINE_EXECUTOR, EXECUTOR);
+        configuration.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+                    throws XNIException {
+                if ("stop".equals(element.getLocalpart())) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        final XMLInputSource source = new XMLInputSource(null, "foo", null,
+                new StringReader("<html><body><stop></stop>" + paragraphs(50_000)), null);
+        try {
+            final XNIException e = assertThrows(XNIException.class, () -> configuration.parse(source));
+            assertTrue(e.getException() instanceof InterruptedException, e.toString());
+            assertTrue(Thread.currentThread().isInterrupted());
+        }
+        finally {
+            Thread.interrupted();
+        }
+
+        // the configuration can be used again
+        assertReusable(configuration);
+    }
+
+    @Test
+    public void directExecutor() throws Exception {
+        final String html = "<html><body>" + paragraphs(100_000);
+        final String expected = serialize(html, null);
+        final String actual = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> serialize(html, (Executor) Runnable::run));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void executorNotStarting() throws Exception {
+        final List<Runnable> queued = new ArrayList<>();
+        final String html = "<html><body>" + paragraphs(10_000);
+        final String expected = serialize(html, null);
+        assertEquals(expected, serialize(html, queued::add));
+
+        // started too late, the task does nothing
+        assertEquals(1, queued.size());
+        queued.get(0).run();
+    }
+
+    private static void assertReusable(final HTMLConfiguration configuration) throws Exception {
+        final String html = "<html><body>" + paragraphs(50_000);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final HTMLSerializer serializer = new HTMLSerializer(out);
+        configuration.setDocumentHandler(serializer);
+        configuration.parse(new XMLInputSource(null, "foo", null, new StringReader(html), null));
+        serializer.flush();
+
+        assertEquals(serialize(html, null), out.toString(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> reportedErrors(final String html, final Executor executor) throws Exception {
+        final Thread parsingThread = Thread.currentThread();
+        final List<String> keys = new ArrayList<>();
+        final HTMLConfiguration configuration = new HTMLConfiguration();
+        configuration.setFeature("http://cyberneko.org/html/features/report-errors", true);
+        configuration.setProperty(HTMLConfiguration.PIPELINE_EXECUTOR, executor);
+        configuration.setErrorHandler(new XMLErrorHandler() {
+            @Override
+            public void warning(final String domain, final String key, final XMLParseException exception) {
+                error(domain, key, exception);
+            }
+
+            @Override
+            public void error(final String domain, final String key, final XMLParseException exception) {
+                // the error handler is only called on the parsing thread
+                keys.add(Thread.currentThread() == parsingThread ? key : key + " on " + Thread.currentThread());
+            }
+
+            @Override
+            public void fatalError(final String domain, final String key, final XMLParseException exception) {
+                throw exception;
+            }
+        });
+        configuration.setDocumentHandler(new DefaultFilter());
+
+        configuration.parse(new XMLInputSource(null, "foo", null, new StringReader(html), null));
+        return keys;
+    }
+
+    private static String paragraphs(final int count) {
+        final StringBuilder html = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            html.append("<p>more</p>");
+        }
+        return html.toString();
+    }
+
+    private static String doTest(final String html) throws Exception {
+        final String expected = serialize(html, null);
+        final String actual = serialize(html, EXECUTOR);
+        assertEquals(expected, actual);
+        return actual;
+    }
+
+    private static String serialize(final String html, final Executor executor) throws Exception {
+        final HTMLConfiguration configuration = new HTMLConfiguration();
+        configuration.setFeature("http://cyberneko.org/html/features/augmentations", true);
+        if (executor != null) {
+            configuration.setProperty(HTMLConfiguration.PIPELINE_EXECUTOR, executor);
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final HTMLSerializer serializer = new HTMLSerializer(out);
+        configuration.setDocumentHandler(serializer);
+        configuration.parse(new XMLInputSource(null, "foo", null, new StringReader(html), null));
+        serializer.flush();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
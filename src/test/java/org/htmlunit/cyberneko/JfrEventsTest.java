@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Unit tests for {@link JfrEvents}.
+ *
+ * @author Ronald Brill
+ */
+public class JfrEventsTest {
+
+    @Test
+    public void events() throws Exception {
+        assertTrue(JfrEvents.AVAILABLE);
+
+        final String html = "<html><head><meta charset='UTF-8'></head><body>"
+                + "<div>" + "<span>".repeat(10) + "</div></body></html>";
+
+        final Path file = Files.createTempFile("neko", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable("org.htmlunit.cyberneko.DocumentParsed");
+                recording.enable("org.htmlunit.cyberneko.EncodingChange");
+                recording.enable("org.htmlunit.cyberneko.TagBalancerRecovery");
+                recording.start();
+
+                final HTMLConfiguration parser = new HTMLConfiguration();
+                parser.parse(new XMLInputSource(null, "myTest", null,
+                        new ByteArrayInputStream(html.getBytes(StandardCharsets.US_ASCII)), null));
+
+                recording.stop();
+                recording.dump(file);
+            }
+
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(3, events.size());
+
+            RecordedEvent event = find(events, "org.htmlunit.cyberneko.EncodingChange");
+            assertEquals("windows-1252", event.getString("previousEncoding"));
+            assertEquals("utf-8", event.getString("encoding"));
+            assertTrue(event.getInt("playbackBytes") > 0);
+
+            event = find(events, "org.htmlunit.cyberneko.TagBalancerRecovery");
+            assertEquals("div", event.getString("element"));
+            assertEquals(10, event.getInt("closedElements"));
+
+            event = find(events, "org.htmlunit.cyberneko.DocumentParsed");
+            assertEquals("myTest", event.getString("systemId"));
+            assertEquals(html.length(), event.getInt("characters"));
+            assertEquals(15, event.getInt("elements"));
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    private static RecordedEvent find(final List<RecordedEvent> events, final String name) {
+        for (final RecordedEvent event : events) {
+            if (name.equals(event.getEventType().getName())) {
+                return event;
+            }
+        }
+        throw new AssertionError("event " + name + " not recorded");
+    }
+}
@@ -16,14 +16,18 @@
 package org.htmlunit.cyberneko;
 
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.xml.parsers.SAXParserFactory;
 
 import org.htmlunit.cyberneko.parsers.SAXParser;
 import org.htmlunit.cyberneko.sax.helpers.NekoSAXParserAdapter;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
@@ -103,4 +107,46 @@ public void saxParserFactory() throws Exception {
         Assertions.assertInstanceOf(NekoSAXParserAdapter.class, saxParser);
         saxParser.parse(source, (DefaultHandler) null);
     }
+
+    /**
+     * @throws Exception in case of error
+     */
+    @Test
+    public void charactersAndAttributesWithoutCopy() throws Exception {
+        final String html = "<html><body><p id='a'>first</p><p id='b'>second</p></body></html>";
+
+        final List<char[]> buffers = new ArrayList<>();
+        final List<Attributes> attributes = new ArrayList<>();
+        final StringBuilder text = new StringBuilder();
+
+        final SAXParser parser = new SAXParser();
+        parser.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(final String uri, final String localName, final String qName,
+                    final Attributes atts) {
+                if ("p".equals(qName)) {
+                    attributes.add(atts);
+                    text.append('[').append(atts.getValue("id")).append(']');
+                }
+            }
+
+            @Override
+            public void characters(final char[] ch, final int start, final int length) {
+                buffers.add(ch);
+                text.append(ch, start, length);
+            }
+        });
+        parser.parse(new InputSource(new StringReader(html)));
+
+        Assertions.assertEquals("[a]first[b]second", text.toString());
+
+        // the scanner buffer is passed for all text events
+        Assertions.assertEquals(2, buffers.size());
+        Assertions.assertSame(buffers.get(0), buffers.get(1));
+
+        // the attributes of the pipeline are passed, not a converted copy
+        Assertions.assertEquals(2, attributes.size());
+        Assertions.assertInstanceOf(XMLAttributes.class, attributes.get(0));
+        Assertions.assertSame(attributes.get(0), attributes.get(1));
+    }
 }
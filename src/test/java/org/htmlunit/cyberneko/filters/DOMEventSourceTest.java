@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.filters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.htmlunit.cyberneko.HTMLConfiguration;
+import org.htmlunit.cyberneko.Writer;
+import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
+import org.htmlunit.cyberneko.parsers.DOMParser;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+/**
+ * Unit tests for {@link DOMEventSource}.
+ *
+ * @author Ronald Brill
+ */
+public class DOMEventSourceTest {
+
+    private static final String HTML = "<!DOCTYPE html><html><head><title>a &amp; b</title>"
+            + "<script>if (a < b && c > d) {}</script></head>"
+            + "<body><!-- note --><p class='x' id=\"y\">1 &lt; 2<br>text<img src='a.png'></p>"
+            + "<div></div></body></html>";
+
+    @Test
+    public void sameEventsAsParser() throws Exception {
+        final StringWriter parsed = new StringWriter();
+        final HTMLConfiguration config = new HTMLConfiguration();
+        config.setProperty(HTMLConfiguration.FILTERS, new XMLDocumentFilter[] {new Writer(parsed)});
+        config.parse(new XMLInputSource(null, "test", null, new StringReader(HTML), "UTF-8"));
+
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.parse(new InputSource(new StringReader(HTML)));
+
+        final StringWriter walked = new StringWriter();
+        final DOMEventSource source = new DOMEventSource();
+        source.setDocumentHandler(new Writer(walked));
+        source.walk(parser.getDocument());
+
+        assertEquals(parsed.toString(), walked.toString());
+    }
+
+    @Test
+    public void serialize() throws Exception {
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.parse(new InputSource(new StringReader(HTML)));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final DOMEventSource source = new DOMEventSource();
+        source.setDocumentHandler(new HTMLSerializer(out));
+        source.walk(parser.getDocument().getElementsByTagName("p").item(0));
+
+        assertEquals("<p class=\"x\" id=\"y\">1 &lt; 2<br>text<img src=\"a.png\"></p>",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void deepTree() throws Exception {
+        final Document document = new HTMLDocumentImpl();
+        // build bottom up, appending to a deep node is expensive
+        Element root = document.createElement("div");
+        root.appendChild(document.createTextNode("deep"));
+        for (int i = 0; i < 100_000; i++) {
+            final Element parent = document.createElement("div");
+            parent.appendChild(root);
+            root = parent;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final DOMEventSource source = new DOMEventSource();
+        source.setDocumentHandler(new HTMLSerializer(out));
+        source.walk(root);
+
+        final String result = out.toString(StandardCharsets.UTF_8);
+        assertEquals("<DIV>".length() * 100_001 + "deep".length() + "</DIV>".length() * 100_001,
+                result.length());
+    }
+}
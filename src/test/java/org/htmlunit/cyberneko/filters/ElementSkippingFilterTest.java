@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.filters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.htmlunit.cyberneko.HTMLConfiguration;
+import org.htmlunit.cyberneko.HTMLElements;
+import org.htmlunit.cyberneko.Writer;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link ElementSkippingFilter}.
+ *
+ * @author Ronald Brill
+ */
+public class ElementSkippingFilterTest {
+
+    private static final String NL = System.lineSeparator();
+
+    @Test
+    public void skip() throws Exception {
+        final String html = "<html><head><style>p { color: red }</style><title>t</title></head>"
+                + "<body><p>one</p>"
+                + "<script>var s = '<svg></svg>';</script>"
+                + "<svg><svg><rect/></svg><title>&amp;</title></svg>"
+                + "<p>two</p>"
+                + "<noscript><p>three</p></noscript>"
+                + "<SVG\n width='1'>\n</SVG>"
+                + "<p>four</p></body></html>";
+
+        final String expected = "(html" + NL
+                + "(head" + NL
+                + "(title" + NL
+                + "\"t" + NL
+                + ")title" + NL
+                + ")head" + NL
+                + "(body" + NL
+                + "(p" + NL
+                + "\"one" + NL
+                + ")p" + NL
+                + "(p" + NL
+                + "\"two" + NL
+                + ")p" + NL
+                + "(p" + NL
+                + "\"four" + NL
+                + ")p" + NL
+                + ")body" + NL
+                + ")html";
+
+        // the collector sees everything the scanner delivers
+        final Collector scanned = new Collector();
+        final StringWriter filtered = new StringWriter();
+        parse(html, scanned,
+                new ElementSkippingFilter(HTMLElements.STYLE, HTMLElements.SCRIPT,
+                        HTMLElements.SVG, HTMLElements.NOSCRIPT),
+                new Writer(filtered));
+
+        assertEquals(expected, filtered.toString().trim());
+
+        // the raw text content and the unknown elements were not scanned at all,
+        // the known elements inside (title, p) are scanned and dropped by the filter
+        final String expectedScanned = "(html(head(style)style(title\"t)title)head"
+                + "(body(p\"one)p(script)script(svg(title\"&)title)svg(p\"two)p"
+                + "(noscript(p\"three)p)noscript(SVG)SVG(p\"four)p)body)html";
+        assertEquals(expectedScanned, scanned.events_.toString());
+    }
+
+    @Test
+    public void skipNestedContent() throws Exception {
+        final String sprite = "<svg style='display:none'>"
+                + "<symbol id='a' viewBox='0 0 8 8'><path d=\"M0 0h8v8H0z\"/><g><circle r='1'></circle></g></symbol>"
+                + "<svg><use href='#a'/></svg>"
+                + "<symbol id='b'>\n<path\n d='M1 1 > 2'/>\n</symbol>"
+                + "</svg>";
+        final String html = "<p>one</p>" + sprite + "<p>two</p>"
+                + "<x-card><x-title>t</x-title><svg><rect/></svg></x-card>"
+                + "<svg><g><foreignObject><div>three</div></foreignObject></g></svg>"
+                + "<svg><g></svg>four";
+
+        final Collector scanned = new Collector();
+        final Collector filtered = new Collector();
+        parse(html, scanned, new ElementSkippingFilter(HTMLElements.SVG, HTMLElements.UNKNOWN), filtered);
+
+        // the div closes the svg
+        assertEquals("(html(head)head(body(p\"one)p(p\"two)p(div\"three)div\"four)body)html",
+                filtered.events_.toString());
+
+        // the content of unknown elements is skipped; at the first known element
+        // the scanning continues, the elements still open are reported before
+        assertEquals("(html(head)head(body(p\"one)p(svg)svg(p\"two)p(x-card(svg(rect)rect)svg)x-card"
+                + "(svg(g(foreignObject)foreignObject)g)svg(div\"three)div(svg)svg\"four)body)html",
+                scanned.events_.toString());
+    }
+
+    @Test
+    public void skipUnclosed() throws Exception {
+        final String expected = "(html" + NL
+                + "(head" + NL
+                + ")head" + NL
+                + "(body" + NL
+                + "(p" + NL
+                + "\"one" + NL
+                + ")p" + NL
+                + ")body" + NL
+                + ")html";
+
+        final StringWriter filtered = new StringWriter();
+        parse("<p>one</p><template><p>two</p>", new ElementSkippingFilter(HTMLElements.TEMPLATE),
+                new Writer(filtered));
+        assertEquals(expected, filtered.toString().trim());
+    }
+
+    @Test
+    public void impliedEndTags() throws Exception {
+        assertSkipped("(html(head)head(body(ul)ul(p\"after)p)body)html",
+                "<ul><li>one<li>two</ul><p>after</p>", HTMLElements.LI);
+        assertSkipped("(html(head)head(body(div\"after)div)body)html",
+                "<p>one<p>two<div>after</div>", HTMLElements.P);
+        assertSkipped("(html(head)head(body(select)select(p\"after)p)body)html",
+                "<select><option>a<option>b</select><p>after</p>", HTMLElements.OPTION);
+        assertSkipped("(html(head)head(body(table(tbody(tr)tr)tbody)table(p\"after)p)body)html",
+                "<table><tr><td>a<td>b</tr></table><p>after</p>", HTMLElements.TD);
+        assertSkipped("(html(head)head(body(table(tbody(tr(td)td)tr)tbody)table(p\"after)p)body)html",
+                "<table><tr><td><div>a</td></tr></table><p>after</p>", HTMLElements.DIV);
+    }
+
+    @Test
+    public void customElement() throws Exception {
+        final short code = (short) (HTMLElements.UNKNOWN + 1);
+        final HTMLElements elements = new HTMLElements();
+        elements.setElement(new HTMLElements.Element(code, "X-CUSTOM",
+                HTMLElements.Element.CONTAINER, HTMLElements.BODY, null));
+
+        final Collector filtered = new Collector();
+        final HTMLConfiguration parser = new HTMLConfiguration(elements);
+        parser.setProperty(HTMLConfiguration.FILTERS, new XMLDocumentFilter[] {new ElementSkippingFilter(code), filtered});
+        parser.parse(new XMLInputSource(null, "test", null,
+                new StringReader("<p>one</p><x-custom><p>two</p></x-custom><p>three</p>"), "UTF-8"));
+        assertEquals("(html(head)head(body(p\"one)p(p\"three)p)body)html", filtered.events_.toString());
+    }
+
+    private static void assertSkipped(final String expected, final String html, final short code) throws Exception {
+        final Collector filtered = new Collector();
+        parse(html, new ElementSkippingFilter(code), filtered);
+        assertEquals(expected, filtered.events_.toString());
+    }
+
+    private static final class Collector extends DefaultFilter {
+        private final StringBuilder events_ = new StringBuilder();
+
+        @Override
+        public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs) {
+            events_.append('(').append(element.getRawname());
+            super.startElement(element, attributes, augs);
+        }
+
+        @Override
+        public void characters(final XMLString text, final Augmentations augs) {
+            events_.append('"').append(text);
+            super.characters(text, augs);
+        }
+
+        @Override
+        public void endElement(final QName element, final Augmentations augs) {
+            events_.append(')').append(element.getRawname());
+            super.endElement(element, augs);
+        }
+    }
+
+    private static void parse(final String html, final XMLDocumentFilter... filters) throws Exception {
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setProperty(HTMLConfiguration.FILTERS, filters);
+        parser.parse(new XMLInputSource(null, "test", null, new StringReader(html), "UTF-8"));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2017-2026 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.filters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+
+import org.htmlunit.cyberneko.HTMLConfiguration;
+import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
+import org.htmlunit.cyberneko.parsers.DOMFragmentParser;
+import org.htmlunit.cyberneko.parsers.DOMParser;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+/**
+ * Unit tests for {@link HTMLSerializer}.
+ *
+ * @author Ronald Brill
+ */
+public class HTMLSerializerTest {
+
+    private static final String HTML = "<!DOCTYPE html><html><head><title>a &amp; b</title>"
+            + "<script>if (a < b && c > d) {}</script></head>"
+            + "<body><!-- note --><p class=\"x &quot;y&quot;\" title='&lt;'>1 &lt; 2 &gt; 0 &amp;&nbsp;"
+            + "ä€😀<br>text<img src='a.png'></p></body></html>";
+
+    private static final String EXPECTED = "<!DOCTYPE html><html><head><title>a &amp; b</title>"
+            + "<script>if (a < b && c > d) {}</script></head>"
+            + "<body><!-- note --><p class=\"x &quot;y&quot;\" title=\"<\">1 &lt; 2 &gt; 0 &amp;&nbsp;"
+            + "ä€😀<br>text<img src=\"a.png\"></p></body></html>";
+
+    @Test
+    public void filter() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setProperty(HTMLConfiguration.FILTERS, new XMLDocumentFilter[] {new HTMLSerializer(out)});
+        parser.parse(new XMLInputSource(null, "test", null, new StringReader(HTML), "UTF-8"));
+
+        assertEquals(EXPECTED, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void document() throws Exception {
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.parse(new InputSource(new StringReader(HTML)));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new HTMLSerializer(out).serialize(parser.getDocument());
+        assertEquals(EXPECTED, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void fragment() throws Exception {
+        final DOMFragmentParser parser = new DOMFragmentParser();
+        final Document document = new HTMLDocumentImpl();
+        final DocumentFragment fragment = document.createDocumentFragment();
+        parser.parse(new InputSource(new StringReader("<b>x&amp;y</b><i>z</i>")), fragment);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new HTMLSerializer(out).serialize(fragment);
+        assertEquals("<b>x&amp;y</b><i>z</i>", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void ascii() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setProperty(HTMLConfiguration.FILTERS,
+                new XMLDocumentFilter[] {new HTMLSerializer(out, StandardCharsets.US_ASCII)});
+        parser.parse(new XMLInputSource(null, "test", null,
+                new StringReader("<p title='ä'>ä€😀\ud83d</p>"), "UTF-8"));
+
+        assertEquals("<html><head></head><body><p title=\"&#228;\">&#228;&#8364;&#128512;&#65533;</p></body></html>",
+                out.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void asciiUnmappable() throws Exception {
+        assertUnmappable("<script>'\u00e9'</script>");
+        assertUnmappable("<style>p::after { content: '\u00e9' }</style>");
+        assertUnmappable("<p><!-- \u00e9 --></p>");
+        assertUnmappable("<p><!-- \ud83d\ude00 --></p>");
+    }
+
+    private static void assertUnmappable(final String html) {
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setProperty(HTMLConfiguration.FILTERS, new XMLDocumentFilter[] {
+            new HTMLSerializer(new ByteArrayOutputStream(), StandardCharsets.US_ASCII)});
+
+        final XNIException e = assertThrows(XNIException.class,
+            () -> parser.parse(new XMLInputSource(null, "test", null, new StringReader(html), "UTF-8")));
+        assertTrue(e.getException() instanceof UnmappableCharacterException, html);
+    }
+
+    @Test
+    public void deepTree() throws Exception {
+        final Document document = new HTMLDocumentImpl();
+        // build bottom up, appending to a deep node is expensive
+        Element root = document.createElement("div");
+        root.appendChild(document.createTextNode("<deep>"));
+        for (int i = 0; i < 100_000; i++) {
+            final Element parent = document.createElement("div");
+            parent.appendChild(root);
+            root = parent;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new HTMLSerializer(out).serialize(root);
+
+        final String result = out.toString(StandardCharsets.UTF_8);
+        assertEquals("<DIV>".length() * 100_001 + "&lt;deep&gt;".length() + "</DIV>".length() * 100_001,
+                result.length());
+    }
+
+    @Test
+    public void unsupportedCharset() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new HTMLSerializer(new ByteArrayOutputStream(), StandardCharsets.ISO_8859_1));
+    }
+}
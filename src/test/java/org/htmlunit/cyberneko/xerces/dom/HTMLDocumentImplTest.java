@@ -16,14 +16,20 @@
 package org.htmlunit.cyberneko.xerces.dom;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 import java.io.StringReader;
 
 import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
 import org.htmlunit.cyberneko.parsers.DOMParser;
 import org.junit.jupiter.api.Test;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.html.HTMLCollection;
 import org.xml.sax.InputSource;
 
 /**
@@ -138,4 +144,242 @@ public void tagNameUpper() throws Exception {
         assertEquals(divElem, doc.getElementsByTagName("DIV").item(0));
         assertEquals(divElem, doc.getElementsByTagName("diV").item(0));
     }
+
+    @Test
+    public void elementByIdIndex() throws Exception {
+        final String html = "<html><head></head>"
+                + "<body>"
+                + "<div id='d1'><span id='s1'>abc</span></div>"
+                + "<p id='d1'>duplicate</p>"
+                + "</body></html>";
+
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.parse(new InputSource(new StringReader(html)));
+        final HTMLDocumentImpl doc = (HTMLDocumentImpl) parser.getDocument();
+
+        // filled by the parser, first one wins
+        final Element div = doc.getIdentifier("d1");
+        assertEquals("div", div.getTagName());
+        final Element span = doc.getIdentifier("s1");
+        assertEquals("span", span.getTagName());
+
+        assertEquals(div, doc.getElementById("d1"));
+        assertEquals(span, doc.getElementById("s1"));
+        assertNull(doc.getElementById("unknown"));
+
+        // attribute mutation
+        span.setAttribute("id", "s2");
+        assertNull(doc.getIdentifier("s1"));
+        assertNull(doc.getElementById("s1"));
+        assertEquals(span, doc.getIdentifier("s2"));
+        assertEquals(span, doc.getElementById("s2"));
+
+        final Attr idAttr = doc.createAttribute("id");
+        idAttr.setValue("s3");
+        span.setAttributeNode(idAttr);
+        assertNull(doc.getIdentifier("s2"));
+        assertEquals(span, doc.getIdentifier("s3"));
+
+        span.removeAttribute("id");
+        assertNull(doc.getIdentifier("s3"));
+        assertNull(doc.getElementById("s3"));
+
+        // node removal, the duplicate is found now
+        div.getParentNode().removeChild(div);
+        assertNull(doc.getIdentifier("d1"));
+        assertEquals("p", doc.getElementById("d1").getTagName());
+
+        // id added using the dom api
+        final Element added = doc.createElement("div");
+        added.setAttribute("id", "added");
+        doc.getBody().appendChild(added);
+        assertEquals(added, doc.getElementById("added"));
+    }
+
+    @Test
+    public void tagNameIndex() throws Exception {
+        final String html = "<html><head></head>"
+                + "<body>"
+                + "<div id='d1'><img id='i1'><a id='a1' name='n1' href='#'>a</a></div>"
+                + "<form id='f1'><img id='i2'></form>"
+                + "<map><area id='r1' href='#'></map>"
+                + "</body></html>";
+
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.parse(new InputSource(new StringReader(html)));
+        final HTMLDocumentImpl doc = (HTMLDocumentImpl) parser.getDocument();
+
+        final NodeList images = doc.getElementsByTagName("img");
+        assertEquals(2, images.getLength());
+        assertEquals("i1", ((Element) images.item(0)).getAttribute("id"));
+        assertEquals("i2", ((Element) images.item(1)).getAttribute("id"));
+        assertEquals(2, doc.getImages().getLength());
+        assertEquals(1, doc.getForms().getLength());
+        assertEquals(1, doc.getAnchors().getLength());
+
+        // document order of the different tag names
+        final HTMLCollection links = doc.getLinks();
+        assertEquals(2, links.getLength());
+        assertEquals("a1", ((Element) links.item(0)).getAttribute("id"));
+        assertEquals("r1", ((Element) links.item(1)).getAttribute("id"));
+        assertEquals("r1", ((Element) links.namedItem("r1")).getAttribute("id"));
+
+        // append at the end
+        final Element appended = doc.createElement("img");
+        doc.getBody().appendChild(appended);
+        assertEquals(3, images.getLength());
+        assertEquals(appended, images.item(2));
+        assertEquals(3, doc.getImages().getLength());
+
+        // insert in the middle
+        final Element inserted = doc.createElement("IMG");
+        doc.getBody().insertBefore(inserted, doc.getBody().getFirstChild());
+        assertEquals(4, images.getLength());
+        assertEquals(inserted, images.item(0));
+        assertEquals(appended, images.item(3));
+
+        // remove a subtree
+        final Element div = doc.getElementById("d1");
+        div.getParentNode().removeChild(div);
+        assertEquals(3, images.getLength());
+        assertEquals(inserted, images.item(0));
+        assertEquals("i2", ((Element) images.item(1)).getAttribute("id"));
+        assertEquals(0, doc.getAnchors().getLength());
+        assertEquals(1, links.getLength());
+
+        // detached trees are not part of the index
+        final int all = doc.getElementsByTagName("*").getLength();
+        final Element detached = doc.createElement("div");
+        detached.appendChild(doc.createElement("img"));
+        assertEquals(3, images.getLength());
+        assertEquals(all, doc.getElementsByTagName("*").getLength());
+    }
+
+    @Test
+    public void subtreeChanges() throws Exception {
+        final String html = "<html><head></head>"
+                + "<body>"
+                + "<div id='d1'><span>1</span><span>2</span></div>"
+                + "<div id='d2'><span>3</span></div>"
+                + "</body></html>";
+
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.parse(new InputSource(new StringReader(html)));
+        final HTMLDocumentImpl doc = (HTMLDocumentImpl) parser.getDocument();
+
+        final ElementImpl d1 = (ElementImpl) doc.getElementById("d1");
+        final ElementImpl d2 = (ElementImpl) doc.getElementById("d2");
+        final ElementImpl body = (ElementImpl) doc.getBody();
+
+        final NodeList spans = d1.getElementsByTagName("span");
+        assertEquals(2, spans.getLength());
+
+        final int d1Changes = d1.changes();
+        final int bodyChanges = body.changes();
+
+        // changes of another subtree do not touch this one
+        d2.appendChild(doc.createElement("span"));
+        d2.setAttribute("title", "x");
+        assertEquals(d1Changes, d1.changes());
+        assertNotEquals(bodyChanges, body.changes());
+        assertEquals(2, spans.getLength());
+
+        // changes of the own subtree
+        final Node first = spans.item(0);
+        first.appendChild(doc.createElement("span"));
+        assertNotEquals(d1Changes, d1.changes());
+        assertEquals(3, spans.getLength());
+
+        // moving a subtree does not change the subtree itself
+        final int d2Changes = d2.changes();
+        d1.appendChild(d2);
+        assertEquals(d2Changes, d2.changes());
+        assertEquals(5, spans.getLength());
+    }
+
+    @Test
+    public void tagNameIndexEntries() throws Exception {
+        final String html = "<html><head></head>"
+                + "<body><div id='d1'><p>1</p><p>2</p></div><span>3</span></body></html>";
+
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.parse(new InputSource(new StringReader(html)));
+        final HTMLDocumentImpl doc = (HTMLDocumentImpl) parser.getDocument();
+        final TagNameIndex index = doc.getTagNameIndex();
+
+        final NodeList paragraphs = doc.getElementsByTagName("p");
+        assertEquals(2, paragraphs.getLength());
+        final int entries = index.getEntryCount();
+
+        // lookups of names not used do not add entries
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, doc.getElementsByTagName("x" + i).getLength());
+        }
+        assertEquals(entries, index.getEntryCount());
+
+        // the entry is dropped with the last element, the list stays live
+        final Element div = doc.getElementById("d1");
+        div.getParentNode().removeChild(div);
+        assertEquals(0, paragraphs.getLength());
+        assertEquals(entries - 2, index.getEntryCount());
+
+        final Element added = doc.createElement("p");
+        doc.getBody().appendChild(added);
+        assertEquals(1, paragraphs.getLength());
+        assertEquals(added, paragraphs.item(0));
+
+        // a list created before the first element is added
+        final NodeList tables = doc.getElementsByTagName("table");
+        final Element table = doc.createElement("table");
+        doc.getBody().insertBefore(table, doc.getBody().getFirstChild());
+        assertEquals(1, tables.getLength());
+        assertEquals(table, tables.item(0));
+    }
+
+    @Test
+    public void collectionItemSequential() throws Exception {
+        final StringBuilder html = new StringBuilder("<html><head></head><body>");
+        for (int i = 0; i < 10; i++) {
+            html.append("<form id='f").append(i).append("'></form><div></div>");
+        }
+        html.append("</body></html>");
+
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.parse(new InputSource(new StringReader(html.toString())));
+        final HTMLDocumentImpl doc = (HTMLDocumentImpl) parser.getDocument();
+
+        final HTMLCollection forms = doc.getForms();
+        for (int i = 0; i < 10; i++) {
+            assertEquals("f" + i, ((Element) forms.item(i)).getAttribute("id"));
+        }
+        assertNull(forms.item(10));
+
+        // remove one in the middle while iterating
+        final Element removed = doc.getElementById("f4");
+        removed.getParentNode().removeChild(removed);
+        assertEquals("f5", ((Element) forms.item(4)).getAttribute("id"));
+        assertEquals("f6", ((Element) forms.item(5)).getAttribute("id"));
+
+        // insert one in front
+        final Element inserted = doc.createElement("form");
+        inserted.setAttribute("id", "new");
+        doc.getBody().insertBefore(inserted, doc.getBody().getFirstChild());
+        assertEquals("f5", ((Element) forms.item(5)).getAttribute("id"));
+        assertEquals("new", ((Element) forms.item(0)).getAttribute("id"));
+        assertEquals("f0", ((Element) forms.item(1)).getAttribute("id"));
+
+        // attribute changes update the anchors
+        final HTMLCollection anchors = doc.getAnchors();
+        final Element a1 = doc.createElement("a");
+        a1.setAttribute("name", "a1");
+        final Element a2 = doc.createElement("a");
+        a2.setAttribute("name", "a2");
+        doc.getBody().appendChild(a1);
+        doc.getBody().appendChild(a2);
+        assertEquals(a1, anchors.item(0));
+        assertEquals(a2, anchors.item(1));
+        a1.removeAttribute("name");
+        assertEquals(a2, anchors.item(0));
+        assertNull(anchors.item(1));
+    }
 }